@@ -4,6 +4,10 @@ import lombok.Data;
 import org.springframework.boot.context.properties.ConfigurationProperties;
 import org.springframework.context.annotation.Configuration;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
 @Configuration
 @ConfigurationProperties(prefix = "showmaker")
 @Data
@@ -15,6 +19,104 @@ public class AppConfiguration {
 
     String attachmentsFolder = "attachments";
 
+    int recentShowsCapacity = 1000;
+
+    int maxNewShows = 100;
+
+    int showTombstoneRetentionDays = 7;
+
+    String tokenSecret;
+
+    int tokenValidityMinutes = 15;
+
+    int userCacheSize = 10000;
+
+    int userCacheTtlSeconds = 300;
+
+    int usernameFilterExpectedInsertions = 100000;
+
+    double usernameFilterFalsePositiveRate = 0.01;
+
+    int passwordHashThreads = Math.max(1, Runtime.getRuntime().availableProcessors() / 2);
+
+    int passwordHashQueueCapacity = 64;
+
+    long passwordHashTargetMillis = 100;
+
+    long maxAttachmentSize = 20 * 1024 * 1024;
+
+    long maxUploadBytesInFlight = 200 * 1024 * 1024;
+
+    String uploadSessionsFolder = "sessions";
+
+    long uploadSessionTimeoutMinutes = 24 * 60;
+
+    int maxUploadSessionsPerUser = 4;
+
+    long maxUploadSessionBytesPerUser = 100 * 1024 * 1024;
+
+    long maxProfileImageSize = 5 * 1024 * 1024;
+
+    List<Integer> renditionWidths = new ArrayList<>(Arrays.asList(160, 320, 640));
+
+    int renditionThreads = 2;
+
+    int renditionQueueCapacity = 200;
+
+    long renditionMaxPixels = 40 * 1000 * 1000;
+
+    long renditionLookupCacheSize = 10000;
+
+    long renditionLookupCacheMinutes = 10;
+
+    int placeholderBackfillBatchSize = 100;
+
+    int cleanupBatchSize = 500;
+
+    int cleanupThreads = 4;
+
+    String reconcileMode = "report";
+
+    int reconcileBatchSize = 500;
+
+    int reconcileFilesPerSecond = 500;
+
+    long reconcileGraceMinutes = 60;
+
+    String quarantineFolder = "quarantine";
+
+    long imageCacheMaxBytes = 64 * 1024 * 1024;
+
+    long imageCacheMaxEntryBytes = 512 * 1024;
+
+    long largeTransferBytes = 1024 * 1024;
+
+    int maxLargeTransfers = 16;
+
+    boolean volumeStorage = false;
+
+    String volumesFolder = "volumes";
+
+    long volumeMaxBytes = 1024 * 1024 * 1024;
+
+    long volumeBlobMaxBytes = 1024 * 1024;
+
+    double volumeCompactionRatio = 0.5;
+
+    String storageBackend = "local";
+
+    String s3Endpoint;
+
+    String s3Region = "us-east-1";
+
+    String s3Bucket;
+
+    String s3Prefix = "";
+
+    String s3AccessKey;
+
+    String s3SecretKey;
+
     public String getFullProfileImagesPath() {
         return this.uploadPath + "/" + this.profileImagesFolder;
     }
@@ -1,6 +1,7 @@
 package com.showmaker.showmaker.configuration;
 
 import com.showmaker.showmaker.user.User;
+import com.showmaker.showmaker.user.UserCache;
 import com.showmaker.showmaker.user.UserRepository;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.security.core.userdetails.UserDetails;
@@ -14,9 +15,12 @@ public class AuthUserService implements UserDetailsService {
     @Autowired
     UserRepository userRepository;
 
+    @Autowired
+    UserCache userCache;
+
     @Override
     public UserDetails loadUserByUsername(String s) throws UsernameNotFoundException {
-        User user = userRepository.findByUsername(s);
+        User user = userCache.getByUsername(s, userRepository::findByUsername);
         if (user == null) {
             throw new UsernameNotFoundException("User not found");
         }
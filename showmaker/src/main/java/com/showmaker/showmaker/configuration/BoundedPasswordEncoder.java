@@ -0,0 +1,140 @@
+package com.showmaker.showmaker.configuration;
+
+import com.showmaker.showmaker.error.ServiceUnavailableException;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.security.authentication.AuthenticationServiceException;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PreDestroy;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+@Component
+public class BoundedPasswordEncoder implements PasswordEncoder {
+
+    static final int MIN_STRENGTH = 10;
+
+    static final int MAX_STRENGTH = 16;
+
+    private final int strength;
+
+    private final BCryptPasswordEncoder delegate;
+
+    private final ThreadPoolExecutor executor;
+
+    private final Timer encodeTimer;
+
+    private final Timer matchesTimer;
+
+    private final Counter rejected;
+
+    public BoundedPasswordEncoder(AppConfiguration appConfiguration, MeterRegistry meterRegistry) {
+        super();
+        this.strength = calibrate(appConfiguration.getPasswordHashTargetMillis());
+        this.delegate = new BCryptPasswordEncoder(strength);
+        int threads = Math.max(1, appConfiguration.getPasswordHashThreads());
+        AtomicInteger threadCount = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(Math.max(1, appConfiguration.getPasswordHashQueueCapacity())),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "password-hash-" + threadCount.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                },
+                new ThreadPoolExecutor.AbortPolicy());
+
+        this.encodeTimer = Timer.builder("showmaker.password.hash").tag("operation", "encode")
+                .description("Time spent hashing passwords, excluding queueing")
+                .register(meterRegistry);
+        this.matchesTimer = Timer.builder("showmaker.password.hash").tag("operation", "matches")
+                .description("Time spent hashing passwords, excluding queueing")
+                .register(meterRegistry);
+        this.rejected = Counter.builder("showmaker.password.hash.rejected")
+                .description("Password hashing requests rejected because the queue was full")
+                .register(meterRegistry);
+        Gauge.builder("showmaker.password.hash.queue", executor, e -> e.getQueue().size())
+                .register(meterRegistry);
+        Gauge.builder("showmaker.password.hash.active", executor, ThreadPoolExecutor::getActiveCount)
+                .register(meterRegistry);
+        Gauge.builder("showmaker.password.hash.strength", this, BoundedPasswordEncoder::getStrength)
+                .register(meterRegistry);
+    }
+
+    @Override
+    public String encode(CharSequence rawPassword) {
+        try {
+            return run(() -> encodeTimer.record(() -> delegate.encode(rawPassword)));
+        } catch (RejectedExecutionException e) {
+            throw new ServiceUnavailableException("Too many password requests, try again later");
+        }
+    }
+
+    @Override
+    public boolean matches(CharSequence rawPassword, String encodedPassword) {
+        try {
+            return run(() -> matchesTimer.record(() -> delegate.matches(rawPassword, encodedPassword)));
+        } catch (RejectedExecutionException e) {
+            throw new AuthenticationServiceException("Too many login requests, try again later", e);
+        }
+    }
+
+    @Override
+    public boolean upgradeEncoding(String encodedPassword) {
+        return delegate.upgradeEncoding(encodedPassword);
+    }
+
+    public int getStrength() {
+        return strength;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    private <T> T run(Callable<T> task) {
+        try {
+            return executor.submit(task).get();
+        } catch (RejectedExecutionException e) {
+            rejected.increment();
+            throw e;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException(e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw new IllegalStateException(cause);
+        }
+    }
+
+    static int calibrate(long targetMillis) {
+        int strength = MIN_STRENGTH;
+        long elapsed = measure(strength);
+        while (strength < MAX_STRENGTH && elapsed * 2 <= targetMillis) {
+            strength++;
+            elapsed *= 2;
+        }
+        return strength;
+    }
+
+    private static long measure(int strength) {
+        BCryptPasswordEncoder encoder = new BCryptPasswordEncoder(strength);
+        String hash = encoder.encode("calibration");
+        long start = System.nanoTime();
+        encoder.matches("calibration", hash);
+        return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+    }
+}
@@ -1,7 +1,6 @@
 package com.showmaker.showmaker.configuration;
 
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.context.annotation.Bean;
 import org.springframework.http.HttpMethod;
 import org.springframework.http.HttpStatus;
 import org.springframework.security.config.annotation.authentication.builders.AuthenticationManagerBuilder;
@@ -10,9 +9,8 @@ import org.springframework.security.config.annotation.web.builders.HttpSecurity;
 import org.springframework.security.config.annotation.web.configuration.EnableWebSecurity;
 import org.springframework.security.config.annotation.web.configuration.WebSecurityConfigurerAdapter;
 import org.springframework.security.config.http.SessionCreationPolicy;
-import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
-import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.security.web.authentication.HttpStatusEntryPoint;
+import org.springframework.security.web.authentication.www.BasicAuthenticationFilter;
 
 @EnableWebSecurity
 @EnableGlobalMethodSecurity(prePostEnabled = true)
@@ -21,18 +19,31 @@ public class SecurityConfiguration extends WebSecurityConfigurerAdapter {
     @Autowired
     AuthUserService authUserService;
 
+    @Autowired
+    TokenService tokenService;
+
+    @Autowired
+    BoundedPasswordEncoder passwordEncoder;
+
     @Override
     protected void configure(HttpSecurity http) throws Exception {
         http.csrf().disable();
 
         http.headers().disable();
 
-        http.httpBasic().authenticationEntryPoint(new BasicAuthenticationEntryPoint());
+        BasicAuthenticationEntryPoint entryPoint = new BasicAuthenticationEntryPoint();
+        http.httpBasic().authenticationEntryPoint(entryPoint);
+        http.addFilterBefore(new TokenAuthenticationFilter(tokenService, entryPoint),
+                BasicAuthenticationFilter.class);
 
         http.authorizeRequests()
                 .antMatchers(HttpMethod.POST, "/api/1.0/login").authenticated()
+                .antMatchers(HttpMethod.POST, "/api/1.0/login/refresh").authenticated()
+                .antMatchers(HttpMethod.POST, "/api/1.0/logout").authenticated()
                 .antMatchers(HttpMethod.PUT, "/api/1.0/users/{id:[0-9]+}").authenticated()
+                .antMatchers(HttpMethod.PUT, "/api/1.0/users/{id:[0-9]+}/image").authenticated()
                 .antMatchers(HttpMethod.POST, "/api/1.0/shows/**").authenticated()
+                .antMatchers(HttpMethod.GET, "/api/1.0/shows/upload/sessions/**").authenticated()
                 .antMatchers(HttpMethod.DELETE, "/api/1.0/shows/{id:[0-9]+}").authenticated()
                 .and()
                 .authorizeRequests().anyRequest().permitAll();
@@ -42,11 +53,6 @@ public class SecurityConfiguration extends WebSecurityConfigurerAdapter {
 
     @Override
     protected void configure(AuthenticationManagerBuilder auth) throws Exception {
-        auth.userDetailsService(authUserService).passwordEncoder(passwordEncoder());
-    }
-
-    @Bean
-    public PasswordEncoder passwordEncoder() {
-        return new BCryptPasswordEncoder();
+        auth.userDetailsService(authUserService).passwordEncoder(passwordEncoder);
     }
 }
@@ -0,0 +1,134 @@
+package com.showmaker.showmaker.configuration;
+
+import com.showmaker.showmaker.error.NotFoundException;
+import com.showmaker.showmaker.user.User;
+import com.showmaker.showmaker.user.UserCache;
+import com.showmaker.showmaker.user.UserRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.core.env.Environment;
+import org.springframework.core.env.Profiles;
+import org.springframework.stereotype.Service;
+import org.springframework.util.StringUtils;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.time.Instant;
+import java.util.Base64;
+import java.util.concurrent.TimeUnit;
+
+@Service
+public class TokenService {
+
+    private static final Logger log = LoggerFactory.getLogger(TokenService.class);
+
+    private static final String ALGORITHM = "HmacSHA256";
+
+    AppConfiguration appConfiguration;
+
+    UserRepository userRepository;
+
+    UserCache userCache;
+
+    private final SecretKeySpec key;
+
+    private final ThreadLocal<Mac> mac;
+
+    public TokenService(AppConfiguration appConfiguration, UserRepository userRepository, UserCache userCache,
+                        Environment environment) {
+        super();
+        this.appConfiguration = appConfiguration;
+        this.userRepository = userRepository;
+        this.userCache = userCache;
+        this.key = new SecretKeySpec(resolveSecret(appConfiguration.getTokenSecret(), environment), ALGORITHM);
+        this.mac = ThreadLocal.withInitial(this::createMac);
+    }
+
+    public String issue(User user, long expiresAt) {
+        String payload = user.getId() + ":" + user.getTokenVersion() + ":" + expiresAt + ":" + user.getUsername();
+        String encodedPayload = encode(payload.getBytes(StandardCharsets.UTF_8));
+        return encodedPayload + "." + encode(sign(encodedPayload));
+    }
+
+    public long getExpiresAt() {
+        return Instant.now().getEpochSecond()
+                + TimeUnit.MINUTES.toSeconds(appConfiguration.getTokenValidityMinutes());
+    }
+
+    public User verify(String token) {
+        int separator = token.indexOf('.');
+        if (separator <= 0) {
+            return null;
+        }
+        String encodedPayload = token.substring(0, separator);
+        try {
+            byte[] signature = Base64.getUrlDecoder().decode(token.substring(separator + 1));
+            if (!MessageDigest.isEqual(signature, sign(encodedPayload))) {
+                return null;
+            }
+            String payload = new String(Base64.getUrlDecoder().decode(encodedPayload), StandardCharsets.UTF_8);
+            String[] parts = payload.split(":", 4);
+            if (parts.length != 4) {
+                return null;
+            }
+            long userId = Long.parseLong(parts[0]);
+            int tokenVersion = Integer.parseInt(parts[1]);
+            long expiresAt = Long.parseLong(parts[2]);
+            if (expiresAt < Instant.now().getEpochSecond()) {
+                return null;
+            }
+            Integer currentVersion = userRepository.findTokenVersionById(userId);
+            if (currentVersion == null || tokenVersion < currentVersion) {
+                return null;
+            }
+            return userCache.getById(userId, id -> userRepository.findById(id).orElse(null));
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    public User revoke(long userId) {
+        User inDB = userRepository.findById(userId)
+                .orElseThrow(() -> new NotFoundException("user " + userId + " not found"));
+        inDB.setTokenVersion(inDB.getTokenVersion() + 1);
+        return userRepository.save(inDB);
+    }
+
+    private byte[] sign(String encodedPayload) {
+        return mac.get().doFinal(encodedPayload.getBytes(StandardCharsets.US_ASCII));
+    }
+
+    private String encode(byte[] bytes) {
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(bytes);
+    }
+
+    private Mac createMac() {
+        try {
+            Mac instance = Mac.getInstance(ALGORITHM);
+            instance.init(key);
+            return instance;
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static byte[] resolveSecret(String secret, Environment environment) {
+        if (StringUtils.hasText(secret)) {
+            return secret.getBytes(StandardCharsets.UTF_8);
+        }
+        if (environment.acceptsProfiles(Profiles.of("prod"))) {
+            throw new IllegalStateException("showmaker.token-secret must be set in the prod profile");
+        }
+        if (!environment.acceptsProfiles(Profiles.of("dev", "test"))) {
+            log.warn("showmaker.token-secret is not set, using a random key: tokens will not survive a restart "
+                    + "and will not be accepted by other instances");
+        }
+        byte[] random = new byte[32];
+        new SecureRandom().nextBytes(random);
+        return random;
+    }
+}
@@ -0,0 +1,14 @@
+package com.showmaker.showmaker.error;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+@ResponseStatus(HttpStatus.BAD_REQUEST)
+public class BadRequestException extends RuntimeException {
+
+    private static final long serialVersionUID = 4417596021412290875L;
+
+    public BadRequestException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,14 @@
+package com.showmaker.showmaker.error;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+@ResponseStatus(HttpStatus.CONFLICT)
+public class ConflictException extends RuntimeException {
+
+    private static final long serialVersionUID = 6052375409283446541L;
+
+    public ConflictException(String message) {
+        super(message);
+    }
+}
@@ -9,6 +9,6 @@ public class NotFoundException extends RuntimeException {
     private static final long serialVersionUID = -1342102361301015028L;
 
     public NotFoundException(String message) {
-        super(message);
+        super(message, null, false, false);
     }
 }
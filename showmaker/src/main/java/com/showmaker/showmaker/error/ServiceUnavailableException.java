@@ -0,0 +1,14 @@
+package com.showmaker.showmaker.error;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+@ResponseStatus(HttpStatus.SERVICE_UNAVAILABLE)
+public class ServiceUnavailableException extends RuntimeException {
+
+    private static final long serialVersionUID = -4469640812402371839L;
+
+    public ServiceUnavailableException(String message) {
+        super(message);
+    }
+}
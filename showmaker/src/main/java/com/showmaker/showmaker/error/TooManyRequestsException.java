@@ -0,0 +1,14 @@
+package com.showmaker.showmaker.error;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+@ResponseStatus(HttpStatus.TOO_MANY_REQUESTS)
+public class TooManyRequestsException extends RuntimeException {
+
+    private static final long serialVersionUID = -2718370541625389814L;
+
+    public TooManyRequestsException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,201 @@
+package com.showmaker.showmaker.file;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.CRC32;
+
+class BlobVolume implements Closeable {
+
+    static final int MAGIC = 0x53484256;
+
+    static final int HEADER_BYTES = 4 + 8 + 8 + 1 + 2 + 4 + 4;
+
+    private static final byte LIVE = 0;
+
+    private static final byte DELETED = 1;
+
+    final int id;
+
+    final Path path;
+
+    private final FileChannel channel;
+
+    private volatile long size;
+
+    private volatile MappedByteBuffer mapped;
+
+    final AtomicLong deadBytes = new AtomicLong();
+
+    final AtomicLong oldestLiveSequence = new AtomicLong(Long.MAX_VALUE);
+
+    BlobVolume(int id, Path path) throws IOException {
+        this.id = id;
+        this.path = path;
+        this.channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE);
+        this.size = channel.size();
+    }
+
+    long size() {
+        return size;
+    }
+
+    boolean isSealed() {
+        return mapped != null;
+    }
+
+    static int recordBytes(String key, int dataLength) {
+        return HEADER_BYTES + key.getBytes(StandardCharsets.UTF_8).length + dataLength;
+    }
+
+    synchronized long append(long sequence, long timestamp, String key, byte[] data) throws IOException {
+        return write(sequence, timestamp, LIVE, key, data);
+    }
+
+    synchronized long appendTombstone(long sequence, long timestamp, String key) throws IOException {
+        return write(sequence, timestamp, DELETED, key, new byte[0]);
+    }
+
+    private long write(long sequence, long timestamp, byte flags, String key, byte[] data) throws IOException {
+        if (isSealed()) {
+            throw new IllegalStateException("Volume " + id + " is sealed");
+        }
+        byte[] keyBytes = key.getBytes(StandardCharsets.UTF_8);
+        CRC32 crc = new CRC32();
+        crc.update(data);
+        ByteBuffer record = ByteBuffer.allocate(HEADER_BYTES + keyBytes.length + data.length);
+        record.putInt(MAGIC).putLong(sequence).putLong(timestamp).put(flags)
+                .putShort((short) keyBytes.length).putInt(data.length).putInt((int) crc.getValue())
+                .put(keyBytes).put(data);
+        record.flip();
+        if (flags == LIVE) {
+            oldestLiveSequence.accumulateAndGet(sequence, Math::min);
+        }
+        long recordOffset = size;
+        long position = recordOffset;
+        while (record.hasRemaining()) {
+            position += channel.write(record, position);
+        }
+        channel.force(false);
+        size = position;
+        return recordOffset + HEADER_BYTES + keyBytes.length;
+    }
+
+    byte[] read(long dataOffset, int length) throws IOException {
+        byte[] data = new byte[length];
+        MappedByteBuffer readOnly = mapped;
+        if (readOnly != null) {
+            ByteBuffer view = readOnly.duplicate();
+            view.position((int) dataOffset);
+            view.get(data);
+            return data;
+        }
+        ByteBuffer buffer = ByteBuffer.wrap(data);
+        long position = dataOffset;
+        while (buffer.hasRemaining()) {
+            int read = channel.read(buffer, position);
+            if (read < 0) {
+                throw new IOException("Unexpected end of volume " + id);
+            }
+            position += read;
+        }
+        return data;
+    }
+
+    synchronized void seal() throws IOException {
+        if (mapped == null) {
+            channel.force(true);
+            mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+        }
+    }
+
+    void scan(RecordVisitor visitor) throws IOException {
+        long position = 0;
+        ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+        while (position + HEADER_BYTES <= size) {
+            header.clear();
+            readFully(header, position);
+            header.flip();
+            if (header.getInt() != MAGIC) {
+                break;
+            }
+            long sequence = header.getLong();
+            long timestamp = header.getLong();
+            boolean deleted = header.get() == DELETED;
+            int keyLength = header.getShort() & 0xffff;
+            int dataLength = header.getInt();
+            int checksum = header.getInt();
+            long end = position + HEADER_BYTES + keyLength + dataLength;
+            if (dataLength < 0 || end > size) {
+                break;
+            }
+            ByteBuffer keyBuffer = ByteBuffer.allocate(keyLength);
+            readFully(keyBuffer, position + HEADER_BYTES);
+            long dataOffset = position + HEADER_BYTES + keyLength;
+            CRC32 crc = new CRC32();
+            crc.update(read(dataOffset, dataLength));
+            if ((int) crc.getValue() != checksum) {
+                break;
+            }
+            String key = new String(keyBuffer.array(), StandardCharsets.UTF_8);
+            if (!deleted) {
+                oldestLiveSequence.accumulateAndGet(sequence, Math::min);
+            }
+            visitor.visit(new Record(sequence, timestamp, deleted, key, dataOffset, dataLength,
+                    (int) (end - position)));
+            position = end;
+        }
+        if (position < size && !isSealed()) {
+            channel.truncate(position);
+            size = position;
+        }
+    }
+
+    private void readFully(ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            int read = channel.read(buffer, position);
+            if (read < 0) {
+                throw new IOException("Unexpected end of volume " + id);
+            }
+            position += read;
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    interface RecordVisitor {
+        void visit(Record record) throws IOException;
+    }
+
+    static class Record {
+
+        final long sequence;
+        final long timestamp;
+        final boolean deleted;
+        final String key;
+        final long dataOffset;
+        final int length;
+        final int recordBytes;
+
+        Record(long sequence, long timestamp, boolean deleted, String key,
+               long dataOffset, int length, int recordBytes) {
+            this.sequence = sequence;
+            this.timestamp = timestamp;
+            this.deleted = deleted;
+            this.key = key;
+            this.dataOffset = dataOffset;
+            this.length = length;
+            this.recordBytes = recordBytes;
+        }
+    }
+}
@@ -0,0 +1,66 @@
+package com.showmaker.showmaker.file;
+
+import com.showmaker.showmaker.configuration.AppConfiguration;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.stream.Stream;
+
+@Component
+public class BlobVolumeMigration implements ApplicationRunner {
+
+    static final String OPTION = "pack-volumes";
+
+    private static final Logger log = LoggerFactory.getLogger(BlobVolumeMigration.class);
+
+    AppConfiguration appConfiguration;
+
+    BlobVolumeStore blobVolumeStore;
+
+    FileService fileService;
+
+    public BlobVolumeMigration(AppConfiguration appConfiguration, BlobVolumeStore blobVolumeStore,
+                               FileService fileService) {
+        super();
+        this.appConfiguration = appConfiguration;
+        this.blobVolumeStore = blobVolumeStore;
+        this.fileService = fileService;
+    }
+
+    @Override
+    public void run(ApplicationArguments args) throws IOException {
+        if (!args.containsOption(OPTION)) {
+            return;
+        }
+        if (!blobVolumeStore.isEnabled()) {
+            log.warn("--{} ignored because showmaker.volume-storage is disabled", OPTION);
+            return;
+        }
+        int packed = pack(appConfiguration.getProfileImagesFolder())
+                + pack(appConfiguration.getAttachmentsFolder());
+        log.info("Packed {} files into blob volumes", packed);
+    }
+
+    public int pack(String folder) throws IOException {
+        Path directory = Paths.get(appConfiguration.getUploadPath(), folder);
+        if (!Files.isDirectory(directory)) {
+            return 0;
+        }
+        int packed = 0;
+        try (Stream<Path> files = Files.list(directory)) {
+            for (Path file : (Iterable<Path>) files::iterator) {
+                if (fileService.moveToVolume(folder, file.getFileName().toString())) {
+                    packed++;
+                }
+            }
+        }
+        return packed;
+    }
+}
@@ -0,0 +1,347 @@
+package com.showmaker.showmaker.file;
+
+import com.showmaker.showmaker.configuration.AppConfiguration;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+@Component
+public class BlobVolumeStore {
+
+    private static final Logger log = LoggerFactory.getLogger(BlobVolumeStore.class);
+
+    private static final Pattern VOLUME_FILE = Pattern.compile("volume-(\\d+)\\.dat");
+
+    private final AppConfiguration appConfiguration;
+
+    private final boolean enabled;
+
+    private final long maxVolumeBytes;
+
+    private final Map<String, Location> index = new ConcurrentHashMap<>();
+
+    private final ConcurrentSkipListMap<Integer, BlobVolume> volumes = new ConcurrentSkipListMap<>();
+
+    private final AtomicInteger nextVolumeId = new AtomicInteger();
+
+    private final AtomicLong sequence = new AtomicLong();
+
+    private final ReadWriteLock swapLock = new ReentrantReadWriteLock();
+
+    private final Object appendLock = new Object();
+
+    private volatile BlobVolume active;
+
+    public BlobVolumeStore(AppConfiguration appConfiguration, MeterRegistry meterRegistry) {
+        super();
+        this.appConfiguration = appConfiguration;
+        this.enabled = appConfiguration.isVolumeStorage();
+        this.maxVolumeBytes = Math.min(Integer.MAX_VALUE, appConfiguration.getVolumeMaxBytes());
+        Gauge.builder("showmaker.volumes.blobs", index, Map::size).register(meterRegistry);
+        Gauge.builder("showmaker.volumes.count", volumes, Map::size).register(meterRegistry);
+        Gauge.builder("showmaker.volumes.dead.bytes", this, BlobVolumeStore::getDeadBytes)
+                .register(meterRegistry);
+    }
+
+    @PostConstruct
+    public void open() throws IOException {
+        if (!enabled) {
+            return;
+        }
+        Path directory = getDirectory();
+        Files.createDirectories(directory);
+        List<BlobVolume> found = new ArrayList<>();
+        try (Stream<Path> files = Files.list(directory)) {
+            for (Path file : (Iterable<Path>) files::iterator) {
+                Matcher matcher = VOLUME_FILE.matcher(file.getFileName().toString());
+                if (matcher.matches()) {
+                    found.add(new BlobVolume(Integer.parseInt(matcher.group(1)), file));
+                }
+            }
+        }
+        found.sort((a, b) -> Integer.compare(a.id, b.id));
+        for (BlobVolume volume : found) {
+            volumes.put(volume.id, volume);
+            volume.scan(record -> load(volume, record));
+            nextVolumeId.accumulateAndGet(volume.id + 1, Math::max);
+        }
+        for (BlobVolume volume : found) {
+            if (volume != found.get(found.size() - 1) || volume.size() >= maxVolumeBytes) {
+                volume.seal();
+            }
+        }
+        BlobVolume last = found.isEmpty() ? null : found.get(found.size() - 1);
+        active = last != null && !last.isSealed() ? last : createVolume();
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public boolean accepts(long size) {
+        return enabled && size <= appConfiguration.getVolumeBlobMaxBytes();
+    }
+
+    public boolean contains(String folder, String name) {
+        return enabled && index.containsKey(key(folder, name));
+    }
+
+    public void put(String folder, String name, byte[] data) throws IOException {
+        String key = key(folder, name);
+        long timestamp = System.currentTimeMillis();
+        synchronized (appendLock) {
+            BlobVolume volume = writableVolume(BlobVolume.recordBytes(key, data.length));
+            long seq = sequence.incrementAndGet();
+            long dataOffset = volume.append(seq, timestamp, key, data);
+            Location previous = index.put(key,
+                    new Location(volume.id, dataOffset, data.length, timestamp, seq,
+                            BlobVolume.recordBytes(key, data.length)));
+            markDead(previous);
+        }
+    }
+
+    public Optional<Blob> get(String folder, String name) throws IOException {
+        if (!enabled) {
+            return Optional.empty();
+        }
+        swapLock.readLock().lock();
+        try {
+            Location location = index.get(key(folder, name));
+            if (location == null) {
+                return Optional.empty();
+            }
+            BlobVolume volume = volumes.get(location.volumeId);
+            return Optional.of(new Blob(volume.read(location.dataOffset, location.length), location.timestamp));
+        } finally {
+            swapLock.readLock().unlock();
+        }
+    }
+
+    public List<String> list(String folder) {
+        String prefix = key(folder, "");
+        List<String> names = new ArrayList<>();
+        for (String key : index.keySet()) {
+            if (key.startsWith(prefix) && key.indexOf('/', prefix.length()) < 0) {
+                names.add(key.substring(prefix.length()));
+            }
+        }
+        return names;
+    }
+
+    public boolean delete(String folder, String name) throws IOException {
+        if (!enabled) {
+            return false;
+        }
+        String key = key(folder, name);
+        synchronized (appendLock) {
+            Location previous = index.remove(key);
+            if (previous == null) {
+                return false;
+            }
+            BlobVolume volume = writableVolume(BlobVolume.recordBytes(key, 0));
+            volume.appendTombstone(sequence.incrementAndGet(), System.currentTimeMillis(), key);
+            markDead(previous);
+            return true;
+        }
+    }
+
+    @Scheduled(initialDelay = 10 * 60 * 1000, fixedDelay = 60 * 60 * 1000)
+    public int compactVolumes() throws IOException {
+        if (!enabled) {
+            return 0;
+        }
+        int compacted = 0;
+        for (BlobVolume volume : new ArrayList<>(volumes.values())) {
+            if (volume.isSealed() && volume.size() > 0
+                    && volume.deadBytes.get() >= volume.size() * appConfiguration.getVolumeCompactionRatio()) {
+                compact(volume);
+                compacted++;
+            }
+        }
+        return compacted;
+    }
+
+    public long getDeadBytes() {
+        return volumes.values().stream().mapToLong(volume -> volume.deadBytes.get()).sum();
+    }
+
+    public int getVolumeCount() {
+        return volumes.size();
+    }
+
+    @PreDestroy
+    public void close() {
+        for (BlobVolume volume : volumes.values()) {
+            try {
+                volume.close();
+            } catch (IOException e) {
+                log.warn("Could not close blob volume " + volume.path, e);
+            }
+        }
+        volumes.clear();
+        index.clear();
+    }
+
+    private void compact(BlobVolume source) throws IOException {
+        BlobVolume target = createVolume();
+        Map<String, Location[]> moved = new HashMap<>();
+        source.scan(record -> {
+            if (record.deleted) {
+                if (!index.containsKey(record.key) && mayHoldOlderBlob(record.sequence, source, target)) {
+                    target.appendTombstone(record.sequence, record.timestamp, record.key);
+                }
+                return;
+            }
+            Location current = index.get(record.key);
+            if (current == null || current.volumeId != source.id || current.dataOffset != record.dataOffset) {
+                return;
+            }
+            byte[] data = source.read(record.dataOffset, record.length);
+            long dataOffset = target.append(record.sequence, record.timestamp, record.key, data);
+            moved.put(record.key, new Location[]{current, new Location(target.id, dataOffset, record.length,
+                    record.timestamp, record.sequence, record.recordBytes)});
+        });
+        target.seal();
+        swapLock.writeLock().lock();
+        try {
+            for (Map.Entry<String, Location[]> entry : moved.entrySet()) {
+                Location[] locations = entry.getValue();
+                if (!index.replace(entry.getKey(), locations[0], locations[1])) {
+                    target.deadBytes.addAndGet(locations[1].recordBytes);
+                }
+            }
+            volumes.remove(source.id);
+            source.close();
+            Files.deleteIfExists(source.path);
+            if (target.size() == 0) {
+                volumes.remove(target.id);
+                target.close();
+                Files.deleteIfExists(target.path);
+            }
+        } finally {
+            swapLock.writeLock().unlock();
+        }
+    }
+
+    private boolean mayHoldOlderBlob(long sequence, BlobVolume source, BlobVolume target) {
+        for (BlobVolume volume : volumes.values()) {
+            if (volume != source && volume != target && volume.oldestLiveSequence.get() < sequence) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void load(BlobVolume volume, BlobVolume.Record record) {
+        sequence.accumulateAndGet(record.sequence, Math::max);
+        Location current = index.get(record.key);
+        if (current != null && current.sequence >= record.sequence) {
+            if (!record.deleted) {
+                volume.deadBytes.addAndGet(record.recordBytes);
+            }
+            return;
+        }
+        if (record.deleted) {
+            index.remove(record.key);
+        } else {
+            index.put(record.key, new Location(volume.id, record.dataOffset, record.length,
+                    record.timestamp, record.sequence, record.recordBytes));
+        }
+        markDead(current);
+    }
+
+    private BlobVolume writableVolume(int recordBytes) throws IOException {
+        if (active.size() > 0 && active.size() + recordBytes > maxVolumeBytes) {
+            active.seal();
+            active = createVolume();
+        }
+        return active;
+    }
+
+    private BlobVolume createVolume() throws IOException {
+        int id = nextVolumeId.getAndIncrement();
+        BlobVolume volume = new BlobVolume(id, getDirectory().resolve(String.format("volume-%06d.dat", id)));
+        volumes.put(id, volume);
+        return volume;
+    }
+
+    private void markDead(Location location) {
+        if (location != null) {
+            BlobVolume volume = volumes.get(location.volumeId);
+            if (volume != null) {
+                volume.deadBytes.addAndGet(location.recordBytes);
+            }
+        }
+    }
+
+    private Path getDirectory() {
+        return Paths.get(appConfiguration.getUploadPath(), appConfiguration.getVolumesFolder());
+    }
+
+    private String key(String folder, String name) {
+        return folder + "/" + name;
+    }
+
+    public static class Blob {
+
+        private final byte[] data;
+
+        private final long lastModified;
+
+        Blob(byte[] data, long lastModified) {
+            this.data = data;
+            this.lastModified = lastModified;
+        }
+
+        public byte[] getData() {
+            return data;
+        }
+
+        public long getLastModified() {
+            return lastModified;
+        }
+    }
+
+    private static class Location {
+
+        final int volumeId;
+        final long dataOffset;
+        final int length;
+        final long timestamp;
+        final long sequence;
+        final int recordBytes;
+
+        Location(int volumeId, long dataOffset, int length, long timestamp, long sequence, int recordBytes) {
+            this.volumeId = volumeId;
+            this.dataOffset = dataOffset;
+            this.length = length;
+            this.timestamp = timestamp;
+            this.sequence = sequence;
+            this.recordBytes = recordBytes;
+        }
+    }
+}
@@ -0,0 +1,121 @@
+package com.showmaker.showmaker.file;
+
+import java.awt.image.BufferedImage;
+
+public final class BlurHash {
+
+    private static final String CHARACTERS =
+            "0123456789ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz#$%*+,-.:;=?@[]^_{|}~";
+
+    private BlurHash() {
+    }
+
+    public static String encode(BufferedImage image, int xComponents, int yComponents) {
+        if (xComponents < 1 || xComponents > 9 || yComponents < 1 || yComponents > 9) {
+            throw new IllegalArgumentException("BlurHash components must be between 1 and 9");
+        }
+        int width = image.getWidth();
+        int height = image.getHeight();
+        double[][] linear = toLinear(image);
+
+        double[][] factors = new double[xComponents * yComponents][];
+        for (int j = 0; j < yComponents; j++) {
+            for (int i = 0; i < xComponents; i++) {
+                factors[j * xComponents + i] = basis(linear, width, height, i, j);
+            }
+        }
+
+        StringBuilder hash = new StringBuilder();
+        encode83((xComponents - 1) + (yComponents - 1) * 9, 1, hash);
+        double maximum = 1;
+        if (factors.length > 1) {
+            double actualMaximum = 0;
+            for (int i = 1; i < factors.length; i++) {
+                for (double component : factors[i]) {
+                    actualMaximum = Math.max(actualMaximum, Math.abs(component));
+                }
+            }
+            int quantisedMaximum = (int) Math.max(0, Math.min(82, Math.floor(actualMaximum * 166 - 0.5)));
+            maximum = (quantisedMaximum + 1) / 166.0;
+            encode83(quantisedMaximum, 1, hash);
+        } else {
+            encode83(0, 1, hash);
+        }
+        encode83(encodeDc(factors[0]), 4, hash);
+        for (int i = 1; i < factors.length; i++) {
+            encode83(encodeAc(factors[i], maximum), 2, hash);
+        }
+        return hash.toString();
+    }
+
+    public static String averageColor(BufferedImage image) {
+        double[] dc = basis(toLinear(image), image.getWidth(), image.getHeight(), 0, 0);
+        return String.format("#%02x%02x%02x", toSrgb(dc[0]), toSrgb(dc[1]), toSrgb(dc[2]));
+    }
+
+    private static double[][] toLinear(BufferedImage image) {
+        int[] pixels = image.getRGB(0, 0, image.getWidth(), image.getHeight(), null, 0, image.getWidth());
+        double[][] linear = new double[pixels.length][3];
+        for (int i = 0; i < pixels.length; i++) {
+            linear[i][0] = toLinear((pixels[i] >> 16) & 0xff);
+            linear[i][1] = toLinear((pixels[i] >> 8) & 0xff);
+            linear[i][2] = toLinear(pixels[i] & 0xff);
+        }
+        return linear;
+    }
+
+    private static double[] basis(double[][] linear, int width, int height, int i, int j) {
+        double r = 0;
+        double g = 0;
+        double b = 0;
+        double normalisation = i == 0 && j == 0 ? 1 : 2;
+        for (int y = 0; y < height; y++) {
+            double cosY = Math.cos(Math.PI * j * y / height);
+            for (int x = 0; x < width; x++) {
+                double basis = normalisation * Math.cos(Math.PI * i * x / width) * cosY;
+                double[] pixel = linear[y * width + x];
+                r += basis * pixel[0];
+                g += basis * pixel[1];
+                b += basis * pixel[2];
+            }
+        }
+        double scale = 1.0 / (width * height);
+        return new double[]{r * scale, g * scale, b * scale};
+    }
+
+    private static int encodeDc(double[] value) {
+        return (toSrgb(value[0]) << 16) + (toSrgb(value[1]) << 8) + toSrgb(value[2]);
+    }
+
+    private static int encodeAc(double[] value, double maximum) {
+        int r = quantise(value[0] / maximum);
+        int g = quantise(value[1] / maximum);
+        int b = quantise(value[2] / maximum);
+        return r * 19 * 19 + g * 19 + b;
+    }
+
+    private static int quantise(double value) {
+        double signedRoot = Math.copySign(Math.sqrt(Math.abs(value)), value);
+        return (int) Math.max(0, Math.min(18, Math.floor(signedRoot * 9 + 9.5)));
+    }
+
+    private static double toLinear(int value) {
+        double v = value / 255.0;
+        return v <= 0.04045 ? v / 12.92 : Math.pow((v + 0.055) / 1.055, 2.4);
+    }
+
+    private static int toSrgb(double value) {
+        double v = Math.max(0, Math.min(1, value));
+        if (v <= 0.0031308) {
+            return (int) (v * 12.92 * 255 + 0.5);
+        }
+        return (int) ((1.055 * Math.pow(v, 1 / 2.4) - 0.055) * 255 + 0.5);
+    }
+
+    private static void encode83(int value, int length, StringBuilder hash) {
+        for (int i = 1; i <= length; i++) {
+            int digit = (value / (int) Math.pow(83, length - i)) % 83;
+            hash.append(CHARACTERS.charAt(digit));
+        }
+    }
+}
@@ -3,6 +3,7 @@ package com.showmaker.showmaker.file;
 import com.showmaker.showmaker.show.Show;
 import lombok.Data;
 
+import javax.persistence.Embedded;
 import javax.persistence.Entity;
 import javax.persistence.GeneratedValue;
 import javax.persistence.Id;
@@ -23,6 +24,11 @@ public class FileAttachment {
 
     private String fileType;
 
+    private String renditions;
+
+    @Embedded
+    private ImagePlaceholder placeholder;
+
     @OneToOne
     private Show show;
 
@@ -1,11 +1,44 @@
 package com.showmaker.showmaker.file;
 
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
 
 import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
+import java.util.Optional;
 
 public interface FileAttachmentRepository extends JpaRepository<FileAttachment, Long> {
 
     List<FileAttachment> findByDateBeforeAndShowIsNull(LocalDateTime date);
+
+    List<FileAttachment> findByIdGreaterThanAndDateBeforeAndShowIsNullOrderById(
+            long id, LocalDateTime date, Pageable pageable);
+
+    @Modifying
+    @Transactional
+    @Query("delete from FileAttachment f where f.id in :ids and f.show is null")
+    int deleteOrphansByIdIn(@Param("ids") Collection<Long> ids);
+
+    Optional<FileAttachment> findFirstByName(String name);
+
+    @Query("select distinct f.name from FileAttachment f where f.name in :names")
+    List<String> findNamesIn(@Param("names") Collection<String> names);
+
+    List<FileAttachment> findByIdGreaterThanAndFileTypeStartingWithAndPlaceholderBlurHashIsNullOrderById(
+            long id, String fileTypePrefix, Pageable pageable);
+
+    @Modifying
+    @Transactional
+    @Query("update FileAttachment f set f.renditions = :renditions, "
+            + "f.placeholder.width = :width, f.placeholder.height = :height, "
+            + "f.placeholder.color = :color, f.placeholder.blurHash = :blurHash "
+            + "where f.name = :name")
+    int updateImage(@Param("name") String name, @Param("renditions") String renditions,
+                    @Param("width") Integer width, @Param("height") Integer height,
+                    @Param("color") String color, @Param("blurHash") String blurHash);
 }
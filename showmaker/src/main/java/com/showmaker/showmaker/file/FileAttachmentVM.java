@@ -3,15 +3,26 @@ package com.showmaker.showmaker.file;
 import lombok.Data;
 import lombok.NoArgsConstructor;
 
+import java.util.List;
+
 @Data
 @NoArgsConstructor
 public class FileAttachmentVM {
 
     private String name;
     private String fileType;
+    private List<Integer> variants;
+    private ImagePlaceholder placeholder;
 
     public FileAttachmentVM(FileAttachment fileAttachment) {
-        this.setName(fileAttachment.getName());
-        this.setFileType(fileAttachment.getFileType());
+        this(fileAttachment.getName(), fileAttachment.getFileType(), fileAttachment.getRenditions(),
+                ImagePlaceholder.of(fileAttachment.getPlaceholder()));
+    }
+
+    public FileAttachmentVM(String name, String fileType, String renditions, ImagePlaceholder placeholder) {
+        this.setName(name);
+        this.setFileType(fileType);
+        this.setVariants(ImageRenditionService.fromColumn(renditions));
+        this.setPlaceholder(placeholder);
     }
 }
@@ -0,0 +1,161 @@
+package com.showmaker.showmaker.file;
+
+import com.showmaker.showmaker.configuration.AppConfiguration;
+import com.showmaker.showmaker.error.ServiceUnavailableException;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
+import org.springframework.stereotype.Component;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.Semaphore;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+@Component
+public class FileSender {
+
+    static final String SENDFILE_SUPPORT = "org.apache.tomcat.sendfile.support";
+
+    static final String SENDFILE_FILENAME = "org.apache.tomcat.sendfile.filename";
+
+    static final String SENDFILE_START = "org.apache.tomcat.sendfile.start";
+
+    static final String SENDFILE_END = "org.apache.tomcat.sendfile.end";
+
+    private static final Pattern RANGE = Pattern.compile("bytes=(\\d*)-(\\d*)");
+
+    AppConfiguration appConfiguration;
+
+    private final int maxLargeTransfers;
+
+    private final Semaphore largeTransfers;
+
+    private final Counter sendfile;
+
+    private final Counter copied;
+
+    private final Counter rejected;
+
+    public FileSender(AppConfiguration appConfiguration, MeterRegistry meterRegistry) {
+        super();
+        this.appConfiguration = appConfiguration;
+        this.maxLargeTransfers = Math.max(1, appConfiguration.getMaxLargeTransfers());
+        this.largeTransfers = new Semaphore(maxLargeTransfers);
+        this.sendfile = meterRegistry.counter("showmaker.images.transfers", "mode", "sendfile");
+        this.copied = meterRegistry.counter("showmaker.images.transfers", "mode", "copy");
+        this.rejected = Counter.builder("showmaker.images.transfers.rejected")
+                .description("Large downloads turned away because too many were already running")
+                .register(meterRegistry);
+        Gauge.builder("showmaker.images.transfers.active", largeTransfers,
+                semaphore -> maxLargeTransfers - semaphore.availablePermits())
+                .description("Large downloads currently holding a transfer slot")
+                .register(meterRegistry);
+    }
+
+    public long send(Path file, String etag, String contentType, CacheControl cacheControl,
+                     HttpServletRequest request, HttpServletResponse response) throws IOException {
+        long length = Files.size(file);
+        long lastModified = Files.getLastModifiedTime(file).toMillis();
+        long start = 0;
+        long end = length;
+        String contentRange = null;
+        String range = request.getHeader(HttpHeaders.RANGE);
+        Matcher matcher = range == null ? null : RANGE.matcher(range.trim());
+        if (matcher != null && matcher.matches() && ifRangeMatches(request, etag, lastModified)) {
+            String first = matcher.group(1);
+            String last = matcher.group(2);
+            boolean satisfiable = !first.isEmpty() || !last.isEmpty();
+            try {
+                if (first.isEmpty() && !last.isEmpty()) {
+                    start = Math.max(0, length - Long.parseLong(last));
+                } else if (!first.isEmpty()) {
+                    start = Long.parseLong(first);
+                    if (!last.isEmpty()) {
+                        end = Math.min(length - 1, Long.parseLong(last)) + 1;
+                    }
+                }
+            } catch (NumberFormatException e) {
+                satisfiable = false;
+            }
+            if (!satisfiable || start >= length || start >= end) {
+                response.setHeader(HttpHeaders.CONTENT_RANGE, "bytes */" + length);
+                response.setStatus(HttpServletResponse.SC_REQUESTED_RANGE_NOT_SATISFIABLE);
+                return 0;
+            }
+            contentRange = "bytes " + start + "-" + (end - 1) + "/" + length;
+        }
+        long count = end - start;
+        boolean sendfileSupported = Boolean.TRUE.equals(request.getAttribute(SENDFILE_SUPPORT));
+        boolean large = !sendfileSupported && count >= appConfiguration.getLargeTransferBytes();
+        if (large && !largeTransfers.tryAcquire()) {
+            rejected.increment();
+            response.setHeader(HttpHeaders.RETRY_AFTER, "1");
+            throw new ServiceUnavailableException("Too many downloads in progress, try again later");
+        }
+        try {
+            if (contentRange != null) {
+                response.setStatus(HttpServletResponse.SC_PARTIAL_CONTENT);
+                response.setHeader(HttpHeaders.CONTENT_RANGE, contentRange);
+            }
+            response.setHeader(HttpHeaders.ACCEPT_RANGES, "bytes");
+            response.setHeader(HttpHeaders.ETAG, etag);
+            response.setDateHeader(HttpHeaders.LAST_MODIFIED, lastModified);
+            response.setHeader(HttpHeaders.CACHE_CONTROL, cacheControl.getHeaderValue());
+            response.setContentType(contentType);
+            response.setContentLengthLong(count);
+            if (request.getMethod().equals("HEAD")) {
+                return 0;
+            }
+            if (sendfileSupported) {
+                request.setAttribute(SENDFILE_FILENAME, file.toAbsolutePath().toString());
+                request.setAttribute(SENDFILE_START, start);
+                request.setAttribute(SENDFILE_END, end);
+                sendfile.increment();
+                return count;
+            }
+            try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+                WritableByteChannel target = Channels.newChannel(response.getOutputStream());
+                long position = start;
+                while (position < end) {
+                    long written = channel.transferTo(position, end - position, target);
+                    if (written <= 0) {
+                        break;
+                    }
+                    position += written;
+                }
+                copied.increment();
+                return position - start;
+            }
+        } finally {
+            if (large) {
+                largeTransfers.release();
+            }
+        }
+    }
+
+    private boolean ifRangeMatches(HttpServletRequest request, String etag, long lastModified) {
+        String ifRange = request.getHeader(HttpHeaders.IF_RANGE);
+        if (ifRange == null) {
+            return true;
+        }
+        if (ifRange.startsWith("\"")) {
+            return ifRange.equals(etag);
+        }
+        try {
+            return request.getDateHeader(HttpHeaders.IF_RANGE) / 1000 == lastModified / 1000;
+        } catch (IllegalArgumentException e) {
+            return false;
+        }
+    }
+}
@@ -1,97 +1,450 @@
 package com.showmaker.showmaker.file;
 
 import com.showmaker.showmaker.configuration.AppConfiguration;
-import org.apache.commons.io.FileUtils;
+import com.showmaker.showmaker.error.BadRequestException;
+import com.showmaker.showmaker.error.PayloadTooLargeException;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
 import org.apache.tika.Tika;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.scheduling.annotation.EnableScheduling;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
 import org.springframework.web.multipart.MultipartFile;
 
-import java.io.File;
+import javax.annotation.PreDestroy;
 import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
 import java.nio.file.Files;
+import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.time.LocalDateTime;
-import java.util.Base64;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
+import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+import java.util.stream.Collectors;
 
 @Service
 @EnableScheduling
 public class FileService {
 
+    private static final Logger log = LoggerFactory.getLogger(FileService.class);
+
+    private static final int SNIFF_BYTES = 8 * 1024;
+
+    private static final int COPY_BUFFER_BYTES = 64 * 1024;
+
+    private static final String TEMP_SUFFIX = ".tmp";
+
+    private final Object[] locks = new Object[64];
+
     AppConfiguration appConfiguration;
 
     Tika tika;
 
     FileAttachmentRepository fileAttachmentRepository;
 
+    ImageRenditionService imageRenditionService;
+
+    StoredFileRepository storedFileRepository;
+
+    StorageBackend storageBackend;
+
+    ImageCache imageCache;
+
+    private final ExecutorService cleanupExecutor;
+
+    private final Timer cleanupTimer;
+
+    private final Counter cleanupRemoved;
+
+    private final Counter cleanupFailed;
+
     public FileService(AppConfiguration appConfiguration,
-                       FileAttachmentRepository fileAttachmentRepository) {
+                       FileAttachmentRepository fileAttachmentRepository,
+                       ImageRenditionService imageRenditionService,
+                       StoredFileRepository storedFileRepository,
+                       StorageBackend storageBackend,
+                       ImageCache imageCache,
+                       MeterRegistry meterRegistry) {
         super();
         this.appConfiguration = appConfiguration;
         this.fileAttachmentRepository = fileAttachmentRepository;
+        this.imageRenditionService = imageRenditionService;
+        this.storedFileRepository = storedFileRepository;
+        this.storageBackend = storageBackend;
+        this.imageCache = imageCache;
         tika = new Tika();
+        for (int i = 0; i < locks.length; i++) {
+            locks[i] = new Object();
+        }
+        AtomicInteger threadCount = new AtomicInteger();
+        this.cleanupExecutor = Executors.newFixedThreadPool(Math.max(1, appConfiguration.getCleanupThreads()),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "storage-cleanup-" + threadCount.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                });
+        this.cleanupTimer = Timer.builder("showmaker.cleanup.duration")
+                .description("Time spent removing orphaned attachments")
+                .register(meterRegistry);
+        this.cleanupRemoved = Counter.builder("showmaker.cleanup.removed")
+                .description("Orphaned attachments removed by the cleanup job")
+                .register(meterRegistry);
+        this.cleanupFailed = Counter.builder("showmaker.cleanup.failed")
+                .description("Orphaned attachment files the cleanup job could not remove")
+                .register(meterRegistry);
     }
 
-    public String saveProfileImage(String base64Image) throws IOException {
-        String imageName = getRandomName();
-        byte[] decodedBytes = Base64.getDecoder().decode(base64Image);
-        File target = new File(appConfiguration.getFullProfileImagesPath() + "/" + imageName);
-        FileUtils.writeByteArrayToFile(target, decodedBytes);
+    public String saveProfileImage(byte[] image) throws IOException {
+        String folder = appConfiguration.getProfileImagesFolder();
+        Path temp = getTempPath(appConfiguration.getFullProfileImagesPath());
+        Files.write(temp, image, StandardOpenOption.CREATE_NEW);
+        String imageName = toHex(newDigest().digest(image));
+        if (store(temp, folder, imageName)) {
+            imageRenditionService.scheduleProfileImage(imageName);
+        }
+        return imageName;
+    }
 
+    public String saveProfileImage(InputStream content, long maxBytes) throws IOException {
+        Path temp = getTempPath(appConfiguration.getFullProfileImagesPath());
+        String imageName;
+        try {
+            imageName = copy(content, temp, maxBytes);
+            if (!isSupportedProfileImageType(detectType(temp))) {
+                throw new BadRequestException("Only PNG and JPG images are allowed");
+            }
+        } catch (IOException | RuntimeException e) {
+            Files.deleteIfExists(temp);
+            throw e;
+        }
+        if (store(temp, appConfiguration.getProfileImagesFolder(), imageName)) {
+            imageRenditionService.scheduleProfileImage(imageName);
+        }
         return imageName;
     }
 
+    public boolean isSupportedProfileImageType(String fileType) {
+        return fileType.equalsIgnoreCase(ImageTypeDetector.IMAGE_PNG)
+                || fileType.equalsIgnoreCase(ImageTypeDetector.IMAGE_JPEG);
+    }
+
     private String getRandomName() {
         return UUID.randomUUID().toString().replaceAll("-", "");
     }
 
+    private Path getTempPath(String directory) {
+        return Paths.get(directory, getRandomName() + TEMP_SUFFIX);
+    }
+
     public String detectType(byte[] fileArr) {
-        return tika.detect(fileArr);
+        String fileType = ImageTypeDetector.detect(fileArr);
+        return fileType != null ? fileType : tika.detect(fileArr);
+    }
+
+    public String detectType(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            ByteBuffer signature = read(channel, ByteBuffer.allocate(ImageTypeDetector.SIGNATURE_BYTES));
+            String fileType = ImageTypeDetector.detect(signature.array(), signature.position());
+            if (fileType != null) {
+                return fileType;
+            }
+            ByteBuffer head = ByteBuffer.allocate(SNIFF_BYTES);
+            signature.flip();
+            head.put(signature);
+            read(channel, head);
+            return tika.detect(Arrays.copyOf(head.array(), head.position()));
+        }
+    }
+
+    private ByteBuffer read(FileChannel channel, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining() && channel.read(buffer) > 0) {
+            // keep reading until the buffer is full or the file ends
+        }
+        return buffer;
     }
 
     public void deleteProfileImage(String image) {
+        if (image == null) {
+            return;
+        }
         try {
-            Files.deleteIfExists(Paths.get(appConfiguration.getFullProfileImagesPath() + "/" + image));
+            release(appConfiguration.getProfileImagesFolder(), image);
         } catch (IOException e) {
             e.printStackTrace();
         }
     }
 
-    public FileAttachment saveAttachment(MultipartFile file) {
+    public FileAttachment saveAttachment(MultipartFile file) throws IOException {
+        try (InputStream content = file.getInputStream()) {
+            return saveAttachment(content, appConfiguration.getMaxAttachmentSize());
+        }
+    }
+
+    public FileAttachment saveAttachment(InputStream content, long maxBytes) throws IOException {
         FileAttachment fileAttachment = new FileAttachment();
         fileAttachment.setDate(LocalDateTime.now());
-        String randomName = getRandomName();
-        fileAttachment.setName(randomName);
 
-        File target = new File(appConfiguration.getFullAttachmentsPath() + "/" + randomName);
+        Path temp = getTempPath(appConfiguration.getFullAttachmentsPath());
         try {
-            byte[] fileAsByte = file.getBytes();
-            FileUtils.writeByteArrayToFile(target, fileAsByte);
-            fileAttachment.setFileType(detectType(fileAsByte));
-        } catch (IOException e) {
-            e.printStackTrace();
+            fileAttachment.setName(copy(content, temp, maxBytes));
+            fileAttachment.setFileType(detectType(temp));
+        } catch (IOException | RuntimeException e) {
+            Files.deleteIfExists(temp);
+            throw e;
         }
+        boolean created = store(temp, appConfiguration.getAttachmentsFolder(), fileAttachment.getName());
+        return saveAndRender(fileAttachment, created);
+    }
 
-        return fileAttachmentRepository.save(fileAttachment);
+    public FileAttachment saveAttachment(Path upload) throws IOException {
+        FileAttachment fileAttachment = new FileAttachment();
+        fileAttachment.setDate(LocalDateTime.now());
+        fileAttachment.setFileType(detectType(upload));
+        fileAttachment.setName(hash(upload));
+        boolean created = store(upload, appConfiguration.getAttachmentsFolder(), fileAttachment.getName());
+        return saveAndRender(fileAttachment, created);
+    }
+
+    private String copy(InputStream content, Path target, long maxBytes) throws IOException {
+        MessageDigest digest = newDigest();
+        ReadableByteChannel source = Channels.newChannel(content);
+        ByteBuffer buffer = ByteBuffer.allocateDirect(COPY_BUFFER_BYTES);
+        long written = 0;
+        try (FileChannel channel = FileChannel.open(target, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE)) {
+            while (source.read(buffer) >= 0 || buffer.position() > 0) {
+                buffer.flip();
+                written += buffer.remaining();
+                if (written > maxBytes) {
+                    throw new PayloadTooLargeException("Upload is larger than " + maxBytes + " bytes");
+                }
+                buffer.mark();
+                digest.update(buffer);
+                buffer.reset();
+                channel.write(buffer);
+                buffer.compact();
+            }
+        }
+        return toHex(digest.digest());
+    }
+
+    private String hash(Path file) throws IOException {
+        MessageDigest digest = newDigest();
+        ByteBuffer buffer = ByteBuffer.allocateDirect(COPY_BUFFER_BYTES);
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            while (channel.read(buffer) >= 0) {
+                buffer.flip();
+                digest.update(buffer);
+                buffer.clear();
+            }
+        }
+        return toHex(digest.digest());
+    }
+
+    private boolean store(Path temp, String folder, String name) throws IOException {
+        synchronized (lockFor(name)) {
+            boolean created = !storageBackend.exists(folder, name);
+            if (created) {
+                try {
+                    storageBackend.put(folder, name, temp);
+                } catch (IOException | RuntimeException e) {
+                    Files.deleteIfExists(temp);
+                    throw e;
+                }
+            } else {
+                Files.delete(temp);
+            }
+            addReference(folder + "/" + name);
+            return created;
+        }
+    }
+
+    private void addReference(String path) {
+        if (storedFileRepository.incrementRefCount(path) > 0) {
+            return;
+        }
+        try {
+            storedFileRepository.insertFirstReference(path);
+        } catch (DataIntegrityViolationException e) {
+            storedFileRepository.incrementRefCount(path);
+        }
+    }
+
+    public boolean moveToVolume(String folder, String name) throws IOException {
+        if (name.endsWith(TEMP_SUFFIX) || !(storageBackend instanceof LocalStorageBackend)) {
+            return false;
+        }
+        synchronized (lockFor(name)) {
+            return ((LocalStorageBackend) storageBackend).packIntoVolume(folder, name);
+        }
+    }
+
+    private void release(String folder, String name) throws IOException {
+        synchronized (lockFor(name)) {
+            String path = folder + "/" + name;
+            boolean counted = storedFileRepository.decrementRefCount(path) > 0;
+            if (counted && storedFileRepository.deleteUnreferenced(path) == 0) {
+                return;
+            }
+            storageBackend.delete(folder, name);
+            imageRenditionService.deleteRenditions(folder, name);
+            imageCache.invalidate(name);
+        }
+    }
+
+    public boolean removeStray(String folder, String name, boolean quarantine, BooleanSupplier referenced)
+            throws IOException {
+        synchronized (lockFor(name)) {
+            String path = folder + "/" + name;
+            if (storedFileRepository.findById(path).filter(stored -> stored.getRefCount() > 0).isPresent()
+                    || referenced.getAsBoolean()) {
+                return false;
+            }
+            if (quarantine) {
+                String quarantineFolder = appConfiguration.getQuarantineFolder() + "/" + folder;
+                storageBackend.move(folder, name, quarantineFolder);
+            } else {
+                storageBackend.delete(folder, name);
+            }
+            storedFileRepository.deleteUnreferenced(path);
+            imageRenditionService.deleteRenditions(folder, name);
+            imageCache.invalidate(name);
+            return true;
+        }
+    }
+
+    private Object lockFor(String name) {
+        return locks[(name.hashCode() & Integer.MAX_VALUE) % locks.length];
+    }
+
+    private MessageDigest newDigest() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private String toHex(byte[] bytes) {
+        StringBuilder hex = new StringBuilder(bytes.length * 2);
+        for (byte b : bytes) {
+            hex.append(Character.forDigit((b >> 4) & 0xf, 16)).append(Character.forDigit(b & 0xf, 16));
+        }
+        return hex.toString();
+    }
+
+    private FileAttachment saveAndRender(FileAttachment fileAttachment, boolean created) {
+        if (!created && fileAttachment.getName() != null) {
+            fileAttachmentRepository.findFirstByName(fileAttachment.getName()).ifPresent(existing -> {
+                fileAttachment.setRenditions(existing.getRenditions());
+                fileAttachment.setPlaceholder(existing.getPlaceholder());
+            });
+        }
+        FileAttachment saved = fileAttachmentRepository.save(fileAttachment);
+        if (created && saved.getFileType() != null && saved.getFileType().startsWith("image/")) {
+            imageRenditionService.scheduleAttachment(saved.getName());
+        }
+        return saved;
     }
 
     @Scheduled(fixedRate = 60 * 60 * 1000)
-    public void cleanupStorage() {
+    public int cleanupStorage() {
+        long start = System.nanoTime();
         LocalDateTime oneHourAgo = LocalDateTime.now().minusHours(1);
-        List<FileAttachment> oldFiles =
-                fileAttachmentRepository.findByDateBeforeAndShowIsNull(oneHourAgo);
-        for (FileAttachment file: oldFiles) {
-            deleteAttachmentImage(file.getName());
-            fileAttachmentRepository.deleteById(file.getId());
+        int batchSize = Math.max(1, appConfiguration.getCleanupBatchSize());
+        int processed = 0;
+        int failed = 0;
+        long lastId = 0;
+        List<FileAttachment> batch;
+        do {
+            batch = fileAttachmentRepository.findByIdGreaterThanAndDateBeforeAndShowIsNullOrderById(
+                    lastId, oneHourAgo, PageRequest.of(0, batchSize));
+            if (batch.isEmpty()) {
+                break;
+            }
+            failed += deleteOrphans(batch);
+            processed += batch.size();
+            lastId = batch.get(batch.size() - 1).getId();
+        } while (batch.size() == batchSize);
+        long elapsed = System.nanoTime() - start;
+        cleanupTimer.record(elapsed, TimeUnit.NANOSECONDS);
+        cleanupRemoved.increment(processed);
+        cleanupFailed.increment(failed);
+        if (processed > 0) {
+            log.info("Removed {} orphaned attachments in {} ms, {} files could not be deleted",
+                    processed, TimeUnit.NANOSECONDS.toMillis(elapsed), failed);
+        }
+        return processed;
+    }
+
+    private int deleteOrphans(List<FileAttachment> batch) {
+        List<Long> ids = batch.stream().map(FileAttachment::getId).collect(Collectors.toList());
+        List<FileAttachment> removed = batch;
+        if (fileAttachmentRepository.deleteOrphansByIdIn(ids) < ids.size()) {
+            Set<Long> kept = fileAttachmentRepository.findAllById(ids).stream()
+                    .map(FileAttachment::getId)
+                    .collect(Collectors.toSet());
+            removed = batch.stream()
+                    .filter(attachment -> !kept.contains(attachment.getId()))
+                    .collect(Collectors.toList());
+        }
+        List<CompletableFuture<Boolean>> releases = new ArrayList<>();
+        for (FileAttachment attachment : removed) {
+            releases.add(CompletableFuture.supplyAsync(() -> releaseOrphan(attachment.getName()), cleanupExecutor));
+        }
+        int failed = 0;
+        for (CompletableFuture<Boolean> release : releases) {
+            if (!release.join()) {
+                failed++;
+            }
         }
+        return failed;
+    }
+
+    private boolean releaseOrphan(String name) {
+        if (name == null) {
+            return true;
+        }
+        try {
+            release(appConfiguration.getAttachmentsFolder(), name);
+            return true;
+        } catch (IOException | RuntimeException e) {
+            log.warn("Could not delete orphaned attachment " + name, e);
+            return false;
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        cleanupExecutor.shutdown();
     }
 
     public void deleteAttachmentImage(String name) {
+        if (name == null) {
+            return;
+        }
         try {
-            Files.deleteIfExists(Paths.get(appConfiguration.getFullAttachmentsPath() + "/" + name));
+            release(appConfiguration.getAttachmentsFolder(), name);
         } catch (IOException e) {
             e.printStackTrace();
         }
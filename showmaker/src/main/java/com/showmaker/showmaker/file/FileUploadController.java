@@ -1,13 +1,22 @@
 package com.showmaker.showmaker.file;
 
+import com.showmaker.showmaker.configuration.AppConfiguration;
+import com.showmaker.showmaker.error.BadRequestException;
+import com.showmaker.showmaker.shared.CurrentUser;
+import com.showmaker.showmaker.user.User;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.MediaType;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.multipart.MultipartHttpServletRequest;
 
-import java.time.LocalDateTime;
-import java.util.UUID;
+import javax.servlet.http.HttpServletRequest;
+import java.io.IOException;
 
 @RestController
 @RequestMapping("/api/1.0")
@@ -16,8 +25,56 @@ public class FileUploadController {
     @Autowired
     FileService fileService;
 
-    @PostMapping("/shows/upload")
-    FileAttachment uploadForShow(MultipartFile file) {
-        return fileService.saveAttachment(file);
+    @Autowired
+    UploadLimiter uploadLimiter;
+
+    @Autowired
+    UploadSessionService uploadSessionService;
+
+    @Autowired
+    AppConfiguration appConfiguration;
+
+    @PostMapping(value = "/shows/upload", consumes = MediaType.MULTIPART_FORM_DATA_VALUE)
+    FileAttachment uploadForShow(MultipartHttpServletRequest request) throws IOException {
+        try (UploadLimiter.Reservation reservation = uploadLimiter.reserve(request.getContentLengthLong())) {
+            MultipartFile file = request.getFile("file");
+            if (file == null) {
+                throw new BadRequestException("Missing file part");
+            }
+            return fileService.saveAttachment(file);
+        }
+    }
+
+    @PostMapping(value = "/shows/upload", consumes = MediaType.APPLICATION_OCTET_STREAM_VALUE)
+    FileAttachment uploadStreamForShow(HttpServletRequest request) throws IOException {
+        try (UploadLimiter.Reservation reservation = uploadLimiter.reserve(request.getContentLengthLong())) {
+            return fileService.saveAttachment(request.getInputStream(), appConfiguration.getMaxAttachmentSize());
+        }
+    }
+
+    @PostMapping("/shows/upload/sessions")
+    UploadSessionVM createUploadSession(@RequestParam long size, @CurrentUser User loggedInUser) throws IOException {
+        return new UploadSessionVM(uploadSessionService.create(loggedInUser.getId(), size));
+    }
+
+    @GetMapping("/shows/upload/sessions/{id:[0-9a-f]+}")
+    UploadSessionVM getUploadSession(@PathVariable String id, @CurrentUser User loggedInUser) {
+        return new UploadSessionVM(uploadSessionService.find(loggedInUser.getId(), id));
+    }
+
+    @PostMapping(value = "/shows/upload/sessions/{id:[0-9a-f]+}", consumes = MediaType.APPLICATION_OCTET_STREAM_VALUE)
+    UploadSessionVM appendToUploadSession(@PathVariable String id, @RequestParam long offset,
+                                          @CurrentUser User loggedInUser, HttpServletRequest request)
+            throws IOException {
+        try (UploadLimiter.Reservation reservation = uploadLimiter.reserve(request.getContentLengthLong())) {
+            return new UploadSessionVM(uploadSessionService.append(loggedInUser.getId(), id, offset,
+                    request.getInputStream()));
+        }
+    }
+
+    @PostMapping("/shows/upload/sessions/{id:[0-9a-f]+}/complete")
+    FileAttachment completeUploadSession(@PathVariable String id, @CurrentUser User loggedInUser)
+            throws IOException {
+        return uploadSessionService.complete(loggedInUser.getId(), id);
     }
 }
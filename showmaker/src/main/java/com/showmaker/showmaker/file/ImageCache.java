@@ -0,0 +1,102 @@
+package com.showmaker.showmaker.file;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.showmaker.showmaker.configuration.AppConfiguration;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+
+@Component
+public class ImageCache {
+
+    AppConfiguration appConfiguration;
+
+    private final Cache<String, CachedImage> cache;
+
+    public ImageCache(AppConfiguration appConfiguration, MeterRegistry meterRegistry) {
+        super();
+        this.appConfiguration = appConfiguration;
+        this.cache = CaffeineCacheMetrics.monitor(meterRegistry, Caffeine.newBuilder()
+                .maximumWeight(Math.max(0, appConfiguration.getImageCacheMaxBytes()))
+                .weigher((String key, CachedImage image) -> image.getLength())
+                .executor(Runnable::run)
+                .recordStats()
+                .build(), "images");
+        Gauge.builder("showmaker.images.cache.bytes", this, ImageCache::getWeightedSize)
+                .description("Image bytes held in the in-memory cache")
+                .baseUnit("bytes")
+                .register(meterRegistry);
+    }
+
+    public boolean accepts(long length) {
+        return length <= appConfiguration.getImageCacheMaxEntryBytes();
+    }
+
+    public CachedImage get(String folder, String name, StorageBackend.IoSupplier<CachedImage> loader)
+            throws IOException {
+        try {
+            return cache.get(key(folder, name), key -> {
+                try {
+                    return loader.get();
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    public boolean contains(String folder, String name) {
+        return cache.getIfPresent(key(folder, name)) != null;
+    }
+
+    public void invalidate(String name) {
+        String suffix = "/" + name;
+        cache.asMap().keySet().removeIf(key -> key.endsWith(suffix));
+    }
+
+    public void clear() {
+        cache.invalidateAll();
+    }
+
+    public long getWeightedSize() {
+        return cache.policy().eviction().map(eviction -> eviction.weightedSize().orElse(0L)).orElse(0L);
+    }
+
+    private String key(String folder, String name) {
+        return folder + "/" + name;
+    }
+
+    public static class CachedImage {
+
+        private final ByteBuffer data;
+
+        private final String contentType;
+
+        public CachedImage(byte[] data, String contentType) {
+            ByteBuffer buffer = ByteBuffer.allocateDirect(data.length);
+            buffer.put(data).flip();
+            this.data = buffer.asReadOnlyBuffer();
+            this.contentType = contentType;
+        }
+
+        public int getLength() {
+            return data.capacity();
+        }
+
+        public String getContentType() {
+            return contentType;
+        }
+
+        public ByteBufferResource getResource(String filename) {
+            return new ByteBufferResource(data, filename);
+        }
+    }
+}
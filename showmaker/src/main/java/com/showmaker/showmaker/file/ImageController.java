@@ -0,0 +1,183 @@
+package com.showmaker.showmaker.file;
+
+import com.showmaker.showmaker.configuration.AppConfiguration;
+import com.showmaker.showmaker.error.NotFoundException;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.core.io.InputStreamResource;
+import org.springframework.core.io.Resource;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.WebRequest;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+@RestController
+public class ImageController {
+
+    private static final int SNIFF_BYTES = 8 * 1024;
+
+    private static final CacheControl IMMUTABLE = CacheControl.maxAge(365, TimeUnit.DAYS);
+
+    @Autowired
+    AppConfiguration appConfiguration;
+
+    @Autowired
+    ImageRenditionService imageRenditionService;
+
+    @Autowired
+    FileService fileService;
+
+    @Autowired
+    StorageBackend storageBackend;
+
+    @Autowired
+    ImageCache imageCache;
+
+    @Autowired
+    FileSender fileSender;
+
+    @Autowired
+    MeterRegistry meterRegistry;
+
+    @GetMapping("/images/{folder}/{name:[A-Za-z0-9_.-]+}")
+    ResponseEntity<Resource> getImage(@PathVariable String folder, @PathVariable String name,
+                                      WebRequest webRequest, HttpServletRequest request,
+                                      HttpServletResponse response) throws IOException {
+        checkImage(folder, name);
+        return serve(folder, name, name, IMMUTABLE, webRequest, request, response);
+    }
+
+    @GetMapping("/images/{folder}/{width:[0-9]{1,5}}/{name:[A-Za-z0-9_.-]+}")
+    ResponseEntity<Resource> getImage(@PathVariable String folder, @PathVariable int width,
+                                      @PathVariable String name, WebRequest webRequest, HttpServletRequest request,
+                                      HttpServletResponse response) throws IOException {
+        checkImage(folder, name);
+        String resolvedFolder = imageRenditionService.resolveFolder(folder, name, width);
+        if (resolvedFolder.equals(folder)) {
+            return serve(folder, name, name, CacheControl.maxAge(1, TimeUnit.MINUTES), webRequest, request,
+                    response);
+        }
+        String renditionWidth = resolvedFolder.substring(resolvedFolder.lastIndexOf('/') + 1);
+        return serve(resolvedFolder, name, name + "-" + renditionWidth, IMMUTABLE, webRequest, request, response);
+    }
+
+    @GetMapping("/images/" + ImageRenditionService.RENDITIONS_FOLDER
+            + "/{folder}/{width:[0-9]{1,5}}/{name:[A-Za-z0-9_.-]+}")
+    ResponseEntity<Resource> getRendition(@PathVariable String folder, @PathVariable int width,
+                                          @PathVariable String name, WebRequest webRequest,
+                                          HttpServletRequest request, HttpServletResponse response)
+            throws IOException {
+        checkImage(folder, name);
+        return serve(ImageRenditionService.getRenditionFolder(folder, width), name, name + "-" + width,
+                IMMUTABLE, webRequest, request, response);
+    }
+
+    private ResponseEntity<Resource> serve(String folder, String name, String tag, CacheControl cacheControl,
+                                           WebRequest webRequest, HttpServletRequest request,
+                                           HttpServletResponse response) throws IOException {
+        if (!imageCache.contains(folder, name) && !storageBackend.exists(folder, name)) {
+            throw new NotFoundException(name + " not found");
+        }
+        // stored names are content hashes, and legacy random names are never rewritten, so the name is the version
+        String etag = "\"" + tag + "\"";
+        if (webRequest.checkNotModified(etag)) {
+            return null;
+        }
+        boolean ranged = request.getHeader(HttpHeaders.RANGE) != null
+                && storageBackend.getLocalFile(folder, name).isPresent();
+        ImageCache.CachedImage cached = ranged ? null : imageCache.get(folder, name, () -> load(folder, name));
+        if (cached != null) {
+            served("cache", cached.getLength());
+            return ResponseEntity.ok()
+                    .cacheControl(cacheControl)
+                    .eTag(etag)
+                    .contentType(MediaType.parseMediaType(cached.getContentType()))
+                    .body(cached.getResource(name));
+        }
+        Optional<Path> localFile = storageBackend.getLocalFile(folder, name);
+        if (localFile.isPresent()) {
+            served("storage", fileSender.send(localFile.get(), etag, fileService.detectType(localFile.get()),
+                    cacheControl, request, response));
+            return null;
+        }
+        StoredObjectStream image = storageBackend.get(folder, name)
+                .orElseThrow(() -> new NotFoundException(name + " not found"));
+        InputStream content = new BufferedInputStream(image.getContent(), SNIFF_BYTES);
+        served("storage", image.getLength());
+        return ResponseEntity.ok()
+                .cacheControl(cacheControl)
+                .eTag(etag)
+                .contentType(MediaType.parseMediaType(sniffType(content)))
+                .contentLength(image.getLength())
+                .body(new InputStreamResource(content));
+    }
+
+    private ImageCache.CachedImage load(String folder, String name) throws IOException {
+        Optional<StoredObject> stored = storageBackend.stat(folder, name);
+        if (!stored.isPresent()) {
+            throw new NotFoundException(name + " not found");
+        }
+        if (!imageCache.accepts(stored.get().getLength())) {
+            return null;
+        }
+        Optional<StoredObjectStream> image = storageBackend.get(folder, name);
+        if (!image.isPresent()) {
+            throw new NotFoundException(name + " not found");
+        }
+        try (StoredObjectStream content = image.get()) {
+            byte[] data = readFully(content.getContent(), content.getLength());
+            return new ImageCache.CachedImage(data, fileService.detectType(data));
+        }
+    }
+
+    private byte[] readFully(InputStream content, long length) throws IOException {
+        byte[] data = new byte[(int) length];
+        int read = 0;
+        int count;
+        while (read < data.length && (count = content.read(data, read, data.length - read)) > 0) {
+            read += count;
+        }
+        return read == data.length ? data : Arrays.copyOf(data, read);
+    }
+
+    private String sniffType(InputStream content) throws IOException {
+        content.mark(SNIFF_BYTES);
+        byte[] head = new byte[SNIFF_BYTES];
+        int read = 0;
+        int count;
+        while (read < head.length && (count = content.read(head, read, head.length - read)) > 0) {
+            read += count;
+        }
+        content.reset();
+        return fileService.detectType(Arrays.copyOf(head, read));
+    }
+
+    private void served(String source, long bytes) {
+        meterRegistry.counter("showmaker.images.served.bytes", "source", source).increment(bytes);
+    }
+
+    private void checkImage(String folder, String name) {
+        if (!isImageFolder(folder) || name.contains("..")) {
+            throw new NotFoundException(name + " not found");
+        }
+    }
+
+    private boolean isImageFolder(String folder) {
+        return folder.equals(appConfiguration.getAttachmentsFolder())
+                || folder.equals(appConfiguration.getProfileImagesFolder());
+    }
+}
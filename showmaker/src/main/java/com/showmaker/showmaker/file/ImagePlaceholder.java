@@ -0,0 +1,39 @@
+package com.showmaker.showmaker.file;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import javax.persistence.Embeddable;
+
+@Data
+@Embeddable
+@NoArgsConstructor
+@AllArgsConstructor
+public class ImagePlaceholder {
+
+    // stored instead of a blur hash when the image cannot be decoded, so the backfill does not retry it
+    public static final String UNREADABLE = "";
+
+    private Integer width;
+
+    private Integer height;
+
+    private String color;
+
+    private String blurHash;
+
+    public static ImagePlaceholder of(ImagePlaceholder placeholder) {
+        if (placeholder == null) {
+            return null;
+        }
+        return of(placeholder.getWidth(), placeholder.getHeight(), placeholder.getColor(), placeholder.getBlurHash());
+    }
+
+    public static ImagePlaceholder of(Integer width, Integer height, String color, String blurHash) {
+        if (width == null || height == null) {
+            return null;
+        }
+        return new ImagePlaceholder(width, height, color, blurHash);
+    }
+}
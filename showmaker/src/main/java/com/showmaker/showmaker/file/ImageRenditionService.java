@@ -0,0 +1,368 @@
+package com.showmaker.showmaker.file;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.showmaker.showmaker.configuration.AppConfiguration;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PreDestroy;
+import javax.imageio.IIOException;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReader;
+import javax.imageio.stream.ImageInputStream;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+
+@Service
+public class ImageRenditionService {
+
+    private static final Logger log = LoggerFactory.getLogger(ImageRenditionService.class);
+
+    public static final String RENDITIONS_FOLDER = "renditions";
+
+    private static final int PLACEHOLDER_SAMPLE_WIDTH = 32;
+
+    AppConfiguration appConfiguration;
+
+    FileAttachmentRepository fileAttachmentRepository;
+
+    StorageBackend storageBackend;
+
+    private final ThreadPoolExecutor executor;
+
+    private final ExecutorService backfillRunner = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "placeholder-backfill");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final AtomicBoolean backfilling = new AtomicBoolean();
+
+    private final Timer renderTimer;
+
+    private final Counter dropped;
+
+    private final Cache<String, List<Integer>> availableWidths;
+
+    public ImageRenditionService(AppConfiguration appConfiguration,
+                                 FileAttachmentRepository fileAttachmentRepository,
+                                 StorageBackend storageBackend,
+                                 MeterRegistry meterRegistry) {
+        super();
+        this.appConfiguration = appConfiguration;
+        this.fileAttachmentRepository = fileAttachmentRepository;
+        this.storageBackend = storageBackend;
+        int threads = Math.max(1, appConfiguration.getRenditionThreads());
+        AtomicInteger threadCount = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(Math.max(1, appConfiguration.getRenditionQueueCapacity())),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "image-rendition-" + threadCount.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                },
+                new ThreadPoolExecutor.AbortPolicy());
+        this.renderTimer = Timer.builder("showmaker.renditions.render")
+                .description("Time spent generating all renditions of one image")
+                .register(meterRegistry);
+        this.dropped = Counter.builder("showmaker.renditions.dropped")
+                .description("Rendition jobs dropped because the queue was full")
+                .register(meterRegistry);
+        Gauge.builder("showmaker.renditions.queue", executor, e -> e.getQueue().size())
+                .register(meterRegistry);
+        this.availableWidths = CaffeineCacheMetrics.monitor(meterRegistry, Caffeine.newBuilder()
+                .maximumSize(Math.max(0, appConfiguration.getRenditionLookupCacheSize()))
+                .expireAfterWrite(appConfiguration.getRenditionLookupCacheMinutes(), TimeUnit.MINUTES)
+                .executor(Runnable::run)
+                .recordStats()
+                .build(), "renditions");
+    }
+
+    public void scheduleAttachment(String name) {
+        schedule(() -> renderAttachment(name));
+    }
+
+    public void scheduleProfileImage(String name) {
+        schedule(() -> render(appConfiguration.getProfileImagesFolder(), name));
+    }
+
+    public List<Integer> renderAttachment(String name) {
+        Rendering rendering = renderImage(appConfiguration.getAttachmentsFolder(), name);
+        ImagePlaceholder placeholder = rendering.placeholder;
+        if (placeholder != null) {
+            fileAttachmentRepository.updateImage(name, toColumn(rendering.widths),
+                    placeholder.getWidth(), placeholder.getHeight(),
+                    placeholder.getColor(), placeholder.getBlurHash());
+        }
+        return rendering.widths;
+    }
+
+    public List<Integer> render(String folder, String name) {
+        return renderImage(folder, name).widths;
+    }
+
+    @Scheduled(initialDelay = 60 * 1000, fixedDelay = 6 * 60 * 60 * 1000)
+    public void scheduleBackfill() {
+        if (!backfilling.get()) {
+            backfillRunner.execute(this::backfillPlaceholders);
+        }
+    }
+
+    public int backfillPlaceholders() {
+        if (!backfilling.compareAndSet(false, true)) {
+            return 0;
+        }
+        try {
+            return backfillAll();
+        } finally {
+            backfilling.set(false);
+        }
+    }
+
+    private int backfillAll() {
+        int batchSize = Math.max(1, appConfiguration.getPlaceholderBackfillBatchSize());
+        int processed = 0;
+        long lastId = 0;
+        List<FileAttachment> batch;
+        do {
+            batch = fileAttachmentRepository
+                    .findByIdGreaterThanAndFileTypeStartingWithAndPlaceholderBlurHashIsNullOrderById(
+                            lastId, "image/", PageRequest.of(0, batchSize));
+            for (FileAttachment attachment : batch) {
+                renderAttachment(attachment.getName());
+                lastId = attachment.getId();
+                processed++;
+            }
+        } while (batch.size() == batchSize);
+        return processed;
+    }
+
+    public String resolveFolder(String folder, String name, int width) throws IOException {
+        List<Integer> available;
+        try {
+            available = availableWidths.get(folder + "/" + name, key -> findWidths(folder, name));
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+        for (int renditionWidth : available) {
+            if (renditionWidth >= width) {
+                return getRenditionFolder(folder, renditionWidth);
+            }
+        }
+        return folder;
+    }
+
+    public void deleteRenditions(String folder, String name) {
+        if (name == null) {
+            return;
+        }
+        for (int width : getWidths()) {
+            try {
+                storageBackend.delete(getRenditionFolder(folder, width), name);
+            } catch (IOException | RuntimeException e) {
+                log.warn("Could not delete " + width + "px rendition of " + folder + "/" + name, e);
+            }
+        }
+        availableWidths.invalidate(folder + "/" + name);
+    }
+
+    public void clearLookups() {
+        availableWidths.invalidateAll();
+    }
+
+    public static String getRenditionFolder(String folder, int width) {
+        return RENDITIONS_FOLDER + "/" + folder + "/" + width;
+    }
+
+    public static List<Integer> fromColumn(String renditions) {
+        if (renditions == null || renditions.isEmpty()) {
+            return Collections.emptyList();
+        }
+        List<Integer> widths = new ArrayList<>();
+        for (String width : renditions.split(",")) {
+            widths.add(Integer.valueOf(width));
+        }
+        return widths;
+    }
+
+    static String toColumn(List<Integer> widths) {
+        return widths.stream().map(String::valueOf).collect(Collectors.joining(","));
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+        backfillRunner.shutdownNow();
+    }
+
+    private void schedule(Runnable job) {
+        try {
+            executor.execute(job);
+        } catch (RejectedExecutionException e) {
+            dropped.increment();
+        }
+    }
+
+    private Rendering renderImage(String folder, String name) {
+        return renderTimer.record(() -> {
+            try {
+                return renderAll(folder, name);
+            } catch (IOException e) {
+                log.warn("Could not render " + folder + "/" + name, e);
+                return Rendering.NONE;
+            } finally {
+                availableWidths.invalidate(folder + "/" + name);
+            }
+        });
+    }
+
+    private Rendering renderAll(String folder, String name) throws IOException {
+        Optional<StoredObjectStream> original = storageBackend.get(folder, name);
+        if (!original.isPresent()) {
+            return Rendering.UNREADABLE;
+        }
+        BufferedImage source;
+        String format;
+        try (StoredObjectStream content = original.get();
+             ImageInputStream input = ImageIO.createImageInputStream(content.getContent())) {
+            if (input == null) {
+                return Rendering.UNREADABLE;
+            }
+            Iterator<ImageReader> readers = ImageIO.getImageReaders(input);
+            if (!readers.hasNext()) {
+                return Rendering.UNREADABLE;
+            }
+            ImageReader reader = readers.next();
+            try {
+                reader.setInput(input);
+                long pixels = (long) reader.getWidth(0) * reader.getHeight(0);
+                if (pixels > appConfiguration.getRenditionMaxPixels()) {
+                    return Rendering.UNREADABLE;
+                }
+                format = reader.getFormatName();
+                source = reader.read(0);
+            } catch (IIOException | RuntimeException e) {
+                log.info("Could not decode " + folder + "/" + name + ": " + e.getMessage());
+                return Rendering.UNREADABLE;
+            } finally {
+                reader.dispose();
+            }
+        }
+        boolean jpeg = format.equalsIgnoreCase("jpeg");
+        List<Integer> rendered = new ArrayList<>();
+        if (!jpeg && !format.equalsIgnoreCase("png")) {
+            return new Rendering(rendered, createPlaceholder(source));
+        }
+        for (int width : getWidths()) {
+            if (width >= source.getWidth()) {
+                break;
+            }
+            BufferedImage scaled = scale(source, width, jpeg);
+            Path temp = Files.createTempFile("rendition-", ".tmp");
+            try {
+                ImageIO.write(scaled, jpeg ? "jpg" : "png", temp.toFile());
+                storageBackend.put(getRenditionFolder(folder, width), name, temp);
+            } finally {
+                Files.deleteIfExists(temp);
+            }
+            rendered.add(width);
+        }
+        return new Rendering(rendered, createPlaceholder(source));
+    }
+
+    private ImagePlaceholder createPlaceholder(BufferedImage source) {
+        BufferedImage sample = source.getWidth() > PLACEHOLDER_SAMPLE_WIDTH
+                ? scale(source, PLACEHOLDER_SAMPLE_WIDTH, true)
+                : source;
+        int xComponents = source.getWidth() >= source.getHeight() ? 4 : 3;
+        int yComponents = source.getWidth() >= source.getHeight() ? 3 : 4;
+        return new ImagePlaceholder(source.getWidth(), source.getHeight(),
+                BlurHash.averageColor(sample), BlurHash.encode(sample, xComponents, yComponents));
+    }
+
+    private BufferedImage scale(BufferedImage source, int targetWidth, boolean opaque) {
+        int targetHeight = Math.max(1, (int) Math.round((double) source.getHeight() * targetWidth / source.getWidth()));
+        int type = opaque ? BufferedImage.TYPE_INT_RGB : BufferedImage.TYPE_INT_ARGB;
+        BufferedImage current = source;
+        int width = source.getWidth();
+        int height = source.getHeight();
+        do {
+            width = Math.max(targetWidth, width / 2);
+            height = Math.max(targetHeight, height / 2);
+            BufferedImage next = new BufferedImage(width, height, type);
+            Graphics2D graphics = next.createGraphics();
+            try {
+                graphics.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+                graphics.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+                graphics.drawImage(current, 0, 0, width, height, null);
+            } finally {
+                graphics.dispose();
+            }
+            current = next;
+        } while (width != targetWidth || height != targetHeight);
+        return current;
+    }
+
+    private List<Integer> findWidths(String folder, String name) {
+        List<Integer> available = new ArrayList<>();
+        for (int width : getWidths()) {
+            try {
+                if (storageBackend.exists(getRenditionFolder(folder, width), name)) {
+                    available.add(width);
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+        return available;
+    }
+
+    private List<Integer> getWidths() {
+        return appConfiguration.getRenditionWidths().stream().sorted().collect(Collectors.toList());
+    }
+
+    private static class Rendering {
+
+        static final Rendering NONE = new Rendering(Collections.emptyList(), null);
+
+        static final Rendering UNREADABLE = new Rendering(Collections.emptyList(),
+                new ImagePlaceholder(null, null, null, ImagePlaceholder.UNREADABLE));
+
+        final List<Integer> widths;
+
+        final ImagePlaceholder placeholder;
+
+        Rendering(List<Integer> widths, ImagePlaceholder placeholder) {
+            this.widths = widths;
+            this.placeholder = placeholder;
+        }
+    }
+}
@@ -0,0 +1,61 @@
+package com.showmaker.showmaker.file;
+
+public final class ImageTypeDetector {
+
+    public static final String IMAGE_PNG = "image/png";
+
+    public static final String IMAGE_JPEG = "image/jpeg";
+
+    public static final String IMAGE_GIF = "image/gif";
+
+    public static final String IMAGE_WEBP = "image/webp";
+
+    public static final int SIGNATURE_BYTES = 12;
+
+    private static final byte[] PNG = {(byte) 0x89, 'P', 'N', 'G', '\r', '\n', 0x1A, '\n'};
+
+    private static final byte[] JPEG = {(byte) 0xFF, (byte) 0xD8, (byte) 0xFF};
+
+    private static final byte[] GIF87A = {'G', 'I', 'F', '8', '7', 'a'};
+
+    private static final byte[] GIF89A = {'G', 'I', 'F', '8', '9', 'a'};
+
+    private static final byte[] RIFF = {'R', 'I', 'F', 'F'};
+
+    private static final byte[] WEBP = {'W', 'E', 'B', 'P'};
+
+    private ImageTypeDetector() {
+    }
+
+    public static String detect(byte[] head) {
+        return detect(head, head.length);
+    }
+
+    public static String detect(byte[] head, int length) {
+        if (startsWith(head, length, 0, PNG)) {
+            return IMAGE_PNG;
+        }
+        if (startsWith(head, length, 0, JPEG)) {
+            return IMAGE_JPEG;
+        }
+        if (startsWith(head, length, 0, GIF89A) || startsWith(head, length, 0, GIF87A)) {
+            return IMAGE_GIF;
+        }
+        if (startsWith(head, length, 0, RIFF) && startsWith(head, length, 8, WEBP)) {
+            return IMAGE_WEBP;
+        }
+        return null;
+    }
+
+    private static boolean startsWith(byte[] head, int length, int offset, byte[] signature) {
+        if (length < offset + signature.length) {
+            return false;
+        }
+        for (int i = 0; i < signature.length; i++) {
+            if (head[offset + i] != signature[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -0,0 +1,152 @@
+package com.showmaker.showmaker.file;
+
+import com.showmaker.showmaker.configuration.AppConfiguration;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+
+public class LocalStorageBackend implements StorageBackend {
+
+    private final Path root;
+
+    private final BlobVolumeStore blobVolumeStore;
+
+    public LocalStorageBackend(AppConfiguration appConfiguration, BlobVolumeStore blobVolumeStore) {
+        this.root = Paths.get(appConfiguration.getUploadPath()).toAbsolutePath().normalize();
+        this.blobVolumeStore = blobVolumeStore;
+    }
+
+    @Override
+    public void put(String folder, String name, Path content) throws IOException {
+        if (blobVolumeStore.accepts(Files.size(content))) {
+            blobVolumeStore.put(folder, name, Files.readAllBytes(content));
+            Files.delete(content);
+        } else {
+            moveIntoPlace(content, resolve(folder, name));
+        }
+    }
+
+    @Override
+    public Optional<StoredObjectStream> get(String folder, String name) throws IOException {
+        Path file = resolve(folder, name);
+        if (Files.isRegularFile(file)) {
+            return Optional.of(new StoredObjectStream(Files.newInputStream(file), Files.size(file),
+                    Files.getLastModifiedTime(file).toMillis()));
+        }
+        return blobVolumeStore.get(folder, name).map(blob -> new StoredObjectStream(
+                new ByteArrayInputStream(blob.getData()), blob.getData().length, blob.getLastModified()));
+    }
+
+    @Override
+    public Optional<StoredObject> stat(String folder, String name) throws IOException {
+        Path file = resolve(folder, name);
+        if (Files.isRegularFile(file)) {
+            return Optional.of(new StoredObject(Files.size(file), Files.getLastModifiedTime(file).toMillis()));
+        }
+        return blobVolumeStore.get(folder, name)
+                .map(blob -> new StoredObject(blob.getData().length, blob.getLastModified()));
+    }
+
+    @Override
+    public boolean exists(String folder, String name) throws IOException {
+        return Files.isRegularFile(resolve(folder, name)) || blobVolumeStore.contains(folder, name);
+    }
+
+    @Override
+    public boolean delete(String folder, String name) throws IOException {
+        boolean packed = blobVolumeStore.delete(folder, name);
+        return Files.deleteIfExists(resolve(folder, name)) || packed;
+    }
+
+    @Override
+    public void move(String folder, String name, String targetFolder) throws IOException {
+        Path file = resolve(folder, name);
+        Path target = resolve(targetFolder, name);
+        if (Files.isRegularFile(file)) {
+            moveIntoPlace(file, target);
+            return;
+        }
+        Optional<BlobVolumeStore.Blob> blob = blobVolumeStore.get(folder, name);
+        if (!blob.isPresent()) {
+            throw new NoSuchFileException(folder + "/" + name);
+        }
+        Files.createDirectories(target.getParent());
+        Files.write(target, blob.get().getData());
+        blobVolumeStore.delete(folder, name);
+    }
+
+    @Override
+    public void list(String folder, int batchSize, NameBatchConsumer consumer) throws IOException {
+        List<String> batch = new ArrayList<>(batchSize);
+        Path directory = resolve(folder, ".");
+        if (Files.isDirectory(directory)) {
+            try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, Files::isRegularFile)) {
+                for (Path file : files) {
+                    batch.add(file.getFileName().toString());
+                    if (batch.size() == batchSize) {
+                        consumer.accept(batch);
+                        batch = new ArrayList<>(batchSize);
+                    }
+                }
+            }
+        }
+        for (String name : blobVolumeStore.list(folder)) {
+            batch.add(name);
+            if (batch.size() == batchSize) {
+                consumer.accept(batch);
+                batch = new ArrayList<>(batchSize);
+            }
+        }
+        if (!batch.isEmpty()) {
+            consumer.accept(batch);
+        }
+    }
+
+    @Override
+    public Optional<Path> getLocalFile(String folder, String name) {
+        Path file = resolve(folder, name);
+        return Files.isRegularFile(file) ? Optional.of(file) : Optional.empty();
+    }
+
+    public boolean packIntoVolume(String folder, String name) throws IOException {
+        Path file = resolve(folder, name);
+        if (!Files.isRegularFile(file) || !blobVolumeStore.accepts(Files.size(file))) {
+            return false;
+        }
+        if (!blobVolumeStore.contains(folder, name)) {
+            blobVolumeStore.put(folder, name, Files.readAllBytes(file));
+        }
+        Files.delete(file);
+        return true;
+    }
+
+    private Path resolve(String folder, String name) {
+        Path file = root.resolve(folder).resolve(name).normalize();
+        if (!file.startsWith(root) || file.equals(root)) {
+            throw new IllegalArgumentException("Invalid storage path " + folder + "/" + name);
+        }
+        return file;
+    }
+
+    private void moveIntoPlace(Path source, Path target) throws IOException {
+        Files.createDirectories(target.getParent());
+        try {
+            Files.move(source, target, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            Path partial = target.resolveSibling(target.getFileName() + ".part");
+            Files.copy(source, partial, StandardCopyOption.REPLACE_EXISTING);
+            Files.move(partial, target, StandardCopyOption.ATOMIC_MOVE);
+            Files.delete(source);
+        }
+    }
+}
@@ -0,0 +1,48 @@
+package com.showmaker.showmaker.file;
+
+import lombok.Data;
+
+import java.util.ArrayList;
+import java.util.List;
+
+@Data
+public class ReconcileReport {
+
+    static final int SAMPLE_SIZE = 100;
+
+    private String mode;
+
+    private long scanned;
+
+    private long strays;
+
+    private long strayBytes;
+
+    private long removed;
+
+    private long failed;
+
+    private long durationMillis;
+
+    private List<String> sample = new ArrayList<>();
+
+    synchronized void addScanned(int count) {
+        scanned += count;
+    }
+
+    synchronized void addStray(String path, long length) {
+        strays++;
+        strayBytes += length;
+        if (sample.size() < SAMPLE_SIZE) {
+            sample.add(path);
+        }
+    }
+
+    synchronized void addRemoved() {
+        removed++;
+    }
+
+    synchronized void addFailed() {
+        failed++;
+    }
+}
@@ -0,0 +1,265 @@
+package com.showmaker.showmaker.file;
+
+import com.showmaker.showmaker.configuration.AppConfiguration;
+import org.w3c.dom.Document;
+import org.w3c.dom.NodeList;
+import org.xml.sax.SAXException;
+
+import javax.xml.parsers.DocumentBuilderFactory;
+import javax.xml.parsers.ParserConfigurationException;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+public class S3StorageBackend implements StorageBackend {
+
+    private static final int CONNECT_TIMEOUT_MILLIS = 10 * 1000;
+
+    private static final int READ_TIMEOUT_MILLIS = 60 * 1000;
+
+    private static final int COPY_BUFFER_BYTES = 64 * 1024;
+
+    private final String endpoint;
+
+    private final String bucket;
+
+    private final String prefix;
+
+    private final S3RequestSigner signer;
+
+    public S3StorageBackend(AppConfiguration appConfiguration) {
+        this.endpoint = appConfiguration.getS3Endpoint().replaceAll("/+$", "");
+        this.bucket = appConfiguration.getS3Bucket();
+        this.prefix = appConfiguration.getS3Prefix() == null ? "" : appConfiguration.getS3Prefix();
+        this.signer = new S3RequestSigner(appConfiguration.getS3AccessKey(), appConfiguration.getS3SecretKey(),
+                appConfiguration.getS3Region());
+    }
+
+    @Override
+    public void put(String folder, String name, Path content) throws IOException {
+        long length = Files.size(content);
+        HttpURLConnection connection = openObject("PUT", folder, name, sha256Hex(content),
+                Collections.singletonMap("content-type", "application/octet-stream"));
+        connection.setDoOutput(true);
+        connection.setFixedLengthStreamingMode(length);
+        try (OutputStream body = connection.getOutputStream()) {
+            Files.copy(content, body);
+        }
+        expectSuccess(connection, "PUT", folder, name);
+        connection.disconnect();
+        Files.delete(content);
+    }
+
+    @Override
+    public Optional<StoredObjectStream> get(String folder, String name) throws IOException {
+        HttpURLConnection connection = openObject("GET", folder, name, S3RequestSigner.EMPTY_PAYLOAD_HASH,
+                Collections.emptyMap());
+        if (connection.getResponseCode() == HttpURLConnection.HTTP_NOT_FOUND) {
+            connection.disconnect();
+            return Optional.empty();
+        }
+        expectSuccess(connection, "GET", folder, name);
+        InputStream content = new FilterInputStream(connection.getInputStream()) {
+            @Override
+            public void close() throws IOException {
+                try {
+                    super.close();
+                } finally {
+                    connection.disconnect();
+                }
+            }
+        };
+        return Optional.of(new StoredObjectStream(content, connection.getContentLengthLong(),
+                connection.getLastModified()));
+    }
+
+    @Override
+    public Optional<StoredObject> stat(String folder, String name) throws IOException {
+        HttpURLConnection connection = openObject("HEAD", folder, name, S3RequestSigner.EMPTY_PAYLOAD_HASH,
+                Collections.emptyMap());
+        try {
+            if (connection.getResponseCode() == HttpURLConnection.HTTP_NOT_FOUND) {
+                return Optional.empty();
+            }
+            expectSuccess(connection, "HEAD", folder, name);
+            return Optional.of(new StoredObject(connection.getContentLengthLong(), connection.getLastModified()));
+        } finally {
+            connection.disconnect();
+        }
+    }
+
+    @Override
+    public boolean delete(String folder, String name) throws IOException {
+        HttpURLConnection connection = openObject("DELETE", folder, name, S3RequestSigner.EMPTY_PAYLOAD_HASH,
+                Collections.emptyMap());
+        try {
+            expectSuccess(connection, "DELETE", folder, name);
+            return true;
+        } finally {
+            connection.disconnect();
+        }
+    }
+
+    @Override
+    public void move(String folder, String name, String targetFolder) throws IOException {
+        String source = "/" + encode(bucket) + "/" + encodeKey(key(folder, name));
+        HttpURLConnection connection = openObject("PUT", targetFolder, name, S3RequestSigner.EMPTY_PAYLOAD_HASH,
+                Collections.singletonMap("x-amz-copy-source", source));
+        try {
+            expectSuccess(connection, "COPY", folder, name);
+        } finally {
+            connection.disconnect();
+        }
+        delete(folder, name);
+    }
+
+    @Override
+    public void list(String folder, int batchSize, NameBatchConsumer consumer) throws IOException {
+        String listPrefix = key(folder, "");
+        String continuationToken = null;
+        do {
+            SortedMap<String, String> parameters = new TreeMap<>();
+            parameters.put("list-type", "2");
+            parameters.put("max-keys", String.valueOf(batchSize));
+            parameters.put("prefix", listPrefix);
+            if (continuationToken != null) {
+                parameters.put("continuation-token", continuationToken);
+            }
+            StringBuilder query = new StringBuilder();
+            for (Map.Entry<String, String> parameter : parameters.entrySet()) {
+                if (query.length() > 0) {
+                    query.append('&');
+                }
+                query.append(encode(parameter.getKey())).append('=').append(encode(parameter.getValue()));
+            }
+            HttpURLConnection connection = open("GET", "/" + encode(bucket), query.toString(),
+                    S3RequestSigner.EMPTY_PAYLOAD_HASH, Collections.emptyMap());
+            Document result;
+            try {
+                expectSuccess(connection, "LIST", folder, "");
+                try (InputStream body = connection.getInputStream()) {
+                    result = parse(body);
+                }
+            } finally {
+                connection.disconnect();
+            }
+            List<String> names = new ArrayList<>();
+            NodeList keys = result.getElementsByTagName("Key");
+            for (int i = 0; i < keys.getLength(); i++) {
+                String name = keys.item(i).getTextContent().substring(listPrefix.length());
+                if (!name.isEmpty() && name.indexOf('/') < 0) {
+                    names.add(name);
+                }
+            }
+            if (!names.isEmpty()) {
+                consumer.accept(names);
+            }
+            continuationToken = "true".equals(text(result, "IsTruncated"))
+                    ? text(result, "NextContinuationToken")
+                    : null;
+        } while (continuationToken != null);
+    }
+
+    private HttpURLConnection openObject(String method, String folder, String name, String payloadHash,
+                                         Map<String, String> headers) throws IOException {
+        return open(method, "/" + encode(bucket) + "/" + encodeKey(key(folder, name)), "", payloadHash, headers);
+    }
+
+    private HttpURLConnection open(String method, String path, String query, String payloadHash,
+                                   Map<String, String> headers) throws IOException {
+        URL url = new URL(endpoint + path + (query.isEmpty() ? "" : "?" + query));
+        String host = url.getPort() == -1 || url.getPort() == url.getDefaultPort()
+                ? url.getHost()
+                : url.getHost() + ":" + url.getPort();
+        Map<String, String> signed = signer.sign(method, host, path, query, headers, payloadHash,
+                ZonedDateTime.now());
+        HttpURLConnection connection = (HttpURLConnection) url.openConnection();
+        connection.setRequestMethod(method);
+        connection.setConnectTimeout(CONNECT_TIMEOUT_MILLIS);
+        connection.setReadTimeout(READ_TIMEOUT_MILLIS);
+        connection.setUseCaches(false);
+        for (Map.Entry<String, String> header : signed.entrySet()) {
+            if (!header.getKey().equals("host")) {
+                connection.setRequestProperty(header.getKey(), header.getValue());
+            }
+        }
+        return connection;
+    }
+
+    private String key(String folder, String name) {
+        return prefix + folder + "/" + name;
+    }
+
+    private void expectSuccess(HttpURLConnection connection, String method, String folder, String name)
+            throws IOException {
+        int status = connection.getResponseCode();
+        if (status / 100 != 2) {
+            connection.disconnect();
+            throw new IOException("S3 " + method + " " + folder + "/" + name + " failed with status " + status);
+        }
+    }
+
+    private String sha256Hex(Path content) throws IOException {
+        try (InputStream input = new DigestInputStream(Files.newInputStream(content),
+                MessageDigest.getInstance("SHA-256"))) {
+            byte[] buffer = new byte[COPY_BUFFER_BYTES];
+            while (input.read(buffer) >= 0) {
+                // reading updates the digest
+            }
+            return S3RequestSigner.toHex(((DigestInputStream) input).getMessageDigest().digest());
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static Document parse(InputStream body) throws IOException {
+        try {
+            DocumentBuilderFactory factory = DocumentBuilderFactory.newInstance();
+            factory.setFeature("http://apache.org/xml/features/disallow-doctype-decl", true);
+            factory.setExpandEntityReferences(false);
+            return factory.newDocumentBuilder().parse(body);
+        } catch (ParserConfigurationException | SAXException e) {
+            throw new IOException("Could not parse S3 list response", e);
+        }
+    }
+
+    private static String text(Document document, String tag) {
+        NodeList nodes = document.getElementsByTagName(tag);
+        return nodes.getLength() == 0 ? null : nodes.item(0).getTextContent();
+    }
+
+    private static String encodeKey(String key) throws IOException {
+        StringBuilder encoded = new StringBuilder();
+        for (String segment : key.split("/", -1)) {
+            if (encoded.length() > 0) {
+                encoded.append('/');
+            }
+            encoded.append(encode(segment));
+        }
+        return encoded.toString();
+    }
+
+    private static String encode(String value) throws IOException {
+        return URLEncoder.encode(value, StandardCharsets.UTF_8.name())
+                .replace("+", "%20").replace("*", "%2A").replace("%7E", "~");
+    }
+}
@@ -0,0 +1,37 @@
+package com.showmaker.showmaker.file;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Optional;
+
+public interface StorageBackend {
+
+    void put(String folder, String name, Path content) throws IOException;
+
+    Optional<StoredObjectStream> get(String folder, String name) throws IOException;
+
+    Optional<StoredObject> stat(String folder, String name) throws IOException;
+
+    boolean delete(String folder, String name) throws IOException;
+
+    void move(String folder, String name, String targetFolder) throws IOException;
+
+    void list(String folder, int batchSize, NameBatchConsumer consumer) throws IOException;
+
+    default boolean exists(String folder, String name) throws IOException {
+        return stat(folder, name).isPresent();
+    }
+
+    default Optional<Path> getLocalFile(String folder, String name) {
+        return Optional.empty();
+    }
+
+    interface NameBatchConsumer {
+        void accept(List<String> names) throws IOException;
+    }
+
+    interface IoSupplier<T> {
+        T get() throws IOException;
+    }
+}
@@ -0,0 +1,19 @@
+package com.showmaker.showmaker.file;
+
+import com.showmaker.showmaker.configuration.AppConfiguration;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+@Configuration
+public class StorageConfiguration {
+
+    static final String S3 = "s3";
+
+    @Bean
+    StorageBackend storageBackend(AppConfiguration appConfiguration, BlobVolumeStore blobVolumeStore) {
+        if (S3.equalsIgnoreCase(appConfiguration.getStorageBackend())) {
+            return new S3StorageBackend(appConfiguration);
+        }
+        return new LocalStorageBackend(appConfiguration, blobVolumeStore);
+    }
+}
@@ -0,0 +1,236 @@
+package com.showmaker.showmaker.file;
+
+import com.showmaker.showmaker.configuration.AppConfiguration;
+import com.showmaker.showmaker.user.UserRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+@Component
+public class StorageReconciler {
+
+    public static final String MODE_REPORT = "report";
+
+    public static final String MODE_QUARANTINE = "quarantine";
+
+    public static final String MODE_DELETE = "delete";
+
+    private static final Logger log = LoggerFactory.getLogger(StorageReconciler.class);
+
+    AppConfiguration appConfiguration;
+
+    StorageBackend storageBackend;
+
+    FileService fileService;
+
+    FileAttachmentRepository fileAttachmentRepository;
+
+    UserRepository userRepository;
+
+    private final MeterRegistry meterRegistry;
+
+    private final AtomicBoolean running = new AtomicBoolean();
+
+    private final ExecutorService runner = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "storage-reconcile");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final Counter removed;
+
+    private final Counter failed;
+
+    public StorageReconciler(AppConfiguration appConfiguration, StorageBackend storageBackend,
+                             FileService fileService, FileAttachmentRepository fileAttachmentRepository,
+                             UserRepository userRepository, MeterRegistry meterRegistry) {
+        super();
+        this.appConfiguration = appConfiguration;
+        this.storageBackend = storageBackend;
+        this.fileService = fileService;
+        this.fileAttachmentRepository = fileAttachmentRepository;
+        this.userRepository = userRepository;
+        this.meterRegistry = meterRegistry;
+        this.removed = Counter.builder("showmaker.reconcile.removed")
+                .description("Stray files quarantined or deleted by the reconciler")
+                .register(meterRegistry);
+        this.failed = Counter.builder("showmaker.reconcile.failed")
+                .description("Stray files or folders the reconciler could not process")
+                .register(meterRegistry);
+        Gauge.builder("showmaker.reconcile.running", running, r -> r.get() ? 1 : 0)
+                .register(meterRegistry);
+    }
+
+    @Scheduled(initialDelay = 30 * 60 * 1000, fixedDelay = 24 * 60 * 60 * 1000)
+    public void scheduleReconcile() {
+        if (!running.get()) {
+            runner.execute(this::reconcile);
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        runner.shutdownNow();
+    }
+
+    public ReconcileReport reconcile() {
+        if (!running.compareAndSet(false, true)) {
+            log.info("Storage reconciliation is already running");
+            return null;
+        }
+        try {
+            long start = System.nanoTime();
+            ReconcileReport report = new ReconcileReport();
+            report.setMode(getMode());
+            Throttle throttle = new Throttle(appConfiguration.getReconcileFilesPerSecond());
+            List<String> folders = Arrays.asList(appConfiguration.getProfileImagesFolder(),
+                    appConfiguration.getAttachmentsFolder());
+            AtomicInteger threadCount = new AtomicInteger();
+            ExecutorService executor = Executors.newFixedThreadPool(folders.size(), runnable -> {
+                Thread thread = new Thread(runnable, "storage-reconcile-" + threadCount.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            });
+            try {
+                List<CompletableFuture<Void>> walks = new ArrayList<>();
+                for (String folder : folders) {
+                    walks.add(CompletableFuture.runAsync(() -> walk(folder, report, throttle), executor));
+                }
+                CompletableFuture.allOf(walks.toArray(new CompletableFuture[0])).join();
+            } finally {
+                executor.shutdown();
+            }
+            report.setDurationMillis(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+            log.info("Storage reconciliation ({}) scanned {} files in {} ms: {} strays using {} bytes, "
+                            + "{} removed, {} failed, sample {}",
+                    report.getMode(), report.getScanned(), report.getDurationMillis(), report.getStrays(),
+                    report.getStrayBytes(), report.getRemoved(), report.getFailed(), report.getSample());
+            return report;
+        } finally {
+            running.set(false);
+        }
+    }
+
+    private void walk(String folder, ReconcileReport report, Throttle throttle) {
+        Counter scanned = Counter.builder("showmaker.reconcile.scanned").tag("folder", folder)
+                .description("Files checked by the reconciler")
+                .register(meterRegistry);
+        Counter strays = Counter.builder("showmaker.reconcile.strays").tag("folder", folder)
+                .description("Files without a matching database row")
+                .register(meterRegistry);
+        long cutoff = System.currentTimeMillis()
+                - TimeUnit.MINUTES.toMillis(appConfiguration.getReconcileGraceMinutes());
+        try {
+            storageBackend.list(folder, Math.max(1, appConfiguration.getReconcileBatchSize()), names -> {
+                throttle.acquire(names.size());
+                Set<String> referenced = new HashSet<>(findReferenced(folder, names));
+                for (String name : names) {
+                    if (!referenced.contains(name) && isStray(folder, name, cutoff, report)) {
+                        strays.increment();
+                        remove(folder, name, report);
+                    }
+                }
+                scanned.increment(names.size());
+                report.addScanned(names.size());
+            });
+        } catch (IOException | RuntimeException e) {
+            log.warn("Could not reconcile folder " + folder, e);
+            failed.increment();
+            report.addFailed();
+        }
+    }
+
+    private boolean isStray(String folder, String name, long cutoff, ReconcileReport report) throws IOException {
+        Optional<StoredObject> object = storageBackend.stat(folder, name);
+        if (!object.isPresent() || object.get().getLastModified() > cutoff) {
+            return false;
+        }
+        report.addStray(folder + "/" + name, object.get().getLength());
+        return true;
+    }
+
+    private void remove(String folder, String name, ReconcileReport report) {
+        if (MODE_REPORT.equals(report.getMode())) {
+            return;
+        }
+        try {
+            boolean quarantine = MODE_QUARANTINE.equals(report.getMode());
+            if (fileService.removeStray(folder, name, quarantine,
+                    () -> !findReferenced(folder, Collections.singletonList(name)).isEmpty())) {
+                removed.increment();
+                report.addRemoved();
+            }
+        } catch (IOException | RuntimeException e) {
+            log.warn("Could not remove stray file " + folder + "/" + name, e);
+            failed.increment();
+            report.addFailed();
+        }
+    }
+
+    private List<String> findReferenced(String folder, Collection<String> names) {
+        if (folder.equals(appConfiguration.getProfileImagesFolder())) {
+            return userRepository.findImagesIn(names);
+        }
+        return fileAttachmentRepository.findNamesIn(names);
+    }
+
+    private String getMode() {
+        String mode = appConfiguration.getReconcileMode();
+        if (MODE_QUARANTINE.equals(mode) || MODE_DELETE.equals(mode)) {
+            return mode;
+        }
+        if (!MODE_REPORT.equals(mode)) {
+            log.warn("Unknown reconcile mode {}, only reporting strays", mode);
+        }
+        return MODE_REPORT;
+    }
+
+    static class Throttle {
+
+        private final long nanosPerPermit;
+
+        private long next = System.nanoTime();
+
+        Throttle(int permitsPerSecond) {
+            this.nanosPerPermit = permitsPerSecond > 0 ? TimeUnit.SECONDS.toNanos(1) / permitsPerSecond : 0;
+        }
+
+        void acquire(int permits) {
+            long wait;
+            synchronized (this) {
+                long now = System.nanoTime();
+                long start = Math.max(next, now);
+                next = start + permits * nanosPerPermit;
+                wait = start - now;
+            }
+            if (wait > 0) {
+                try {
+                    TimeUnit.NANOSECONDS.sleep(wait);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,30 @@
+package com.showmaker.showmaker.file;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
+
+public interface StoredFileRepository extends JpaRepository<StoredFile, String> {
+
+    @Modifying
+    @Transactional
+    @Query("update StoredFile f set f.refCount = f.refCount + 1 where f.path = :path")
+    int incrementRefCount(@Param("path") String path);
+
+    @Modifying
+    @Transactional
+    @Query(value = "insert into stored_file (path, ref_count) values (:path, 1)", nativeQuery = true)
+    int insertFirstReference(@Param("path") String path);
+
+    @Modifying
+    @Transactional
+    @Query("update StoredFile f set f.refCount = f.refCount - 1 where f.path = :path and f.refCount > 0")
+    int decrementRefCount(@Param("path") String path);
+
+    @Modifying
+    @Transactional
+    @Query("delete from StoredFile f where f.path = :path and f.refCount <= 0")
+    int deleteUnreferenced(@Param("path") String path);
+}
@@ -0,0 +1,21 @@
+package com.showmaker.showmaker.file;
+
+public class StoredObject {
+
+    private final long length;
+
+    private final long lastModified;
+
+    public StoredObject(long length, long lastModified) {
+        this.length = length;
+        this.lastModified = lastModified;
+    }
+
+    public long getLength() {
+        return length;
+    }
+
+    public long getLastModified() {
+        return lastModified;
+    }
+}
@@ -0,0 +1,24 @@
+package com.showmaker.showmaker.file;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+
+public class StoredObjectStream extends StoredObject implements Closeable {
+
+    private final InputStream content;
+
+    public StoredObjectStream(InputStream content, long length, long lastModified) {
+        super(length, lastModified);
+        this.content = content;
+    }
+
+    public InputStream getContent() {
+        return content;
+    }
+
+    @Override
+    public void close() throws IOException {
+        content.close();
+    }
+}
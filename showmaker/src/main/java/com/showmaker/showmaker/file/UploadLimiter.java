@@ -0,0 +1,76 @@
+package com.showmaker.showmaker.file;
+
+import com.showmaker.showmaker.configuration.AppConfiguration;
+import com.showmaker.showmaker.error.PayloadTooLargeException;
+import com.showmaker.showmaker.error.ServiceUnavailableException;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+@Component
+public class UploadLimiter {
+
+    private final AppConfiguration appConfiguration;
+
+    private final AtomicLong inFlight = new AtomicLong();
+
+    private final Counter rejected;
+
+    public UploadLimiter(AppConfiguration appConfiguration, MeterRegistry meterRegistry) {
+        super();
+        this.appConfiguration = appConfiguration;
+        this.rejected = Counter.builder("showmaker.upload.rejected")
+                .description("Uploads turned away because too many bytes were already in flight")
+                .register(meterRegistry);
+        Gauge.builder("showmaker.upload.inflight.bytes", inFlight, AtomicLong::get)
+                .description("Bytes reserved by uploads currently being received")
+                .register(meterRegistry);
+    }
+
+    public Reservation reserve(long contentLength) {
+        return reserve(contentLength, appConfiguration.getMaxAttachmentSize());
+    }
+
+    public Reservation reserve(long contentLength, long maxSize) {
+        if (contentLength > maxSize) {
+            throw new PayloadTooLargeException("Upload is larger than " + maxSize + " bytes");
+        }
+        long bytes = contentLength < 0 ? maxSize : contentLength;
+        long limit = appConfiguration.getMaxUploadBytesInFlight();
+        long current;
+        do {
+            current = inFlight.get();
+            if (current > 0 && current + bytes > limit) {
+                rejected.increment();
+                throw new ServiceUnavailableException("Too many uploads in progress, try again later");
+            }
+        } while (!inFlight.compareAndSet(current, current + bytes));
+        return new Reservation(bytes);
+    }
+
+    public long getInFlightBytes() {
+        return inFlight.get();
+    }
+
+    public class Reservation implements AutoCloseable {
+
+        private final long bytes;
+
+        private boolean released;
+
+        Reservation(long bytes) {
+            this.bytes = bytes;
+        }
+
+        @Override
+        public void close() {
+            if (!released) {
+                released = true;
+                inFlight.addAndGet(-bytes);
+            }
+        }
+    }
+}
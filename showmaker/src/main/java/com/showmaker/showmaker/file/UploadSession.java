@@ -0,0 +1,24 @@
+package com.showmaker.showmaker.file;
+
+import lombok.Data;
+
+import javax.persistence.Entity;
+import javax.persistence.Id;
+import java.time.LocalDateTime;
+
+@Data
+@Entity
+public class UploadSession {
+
+    @Id
+    private String id;
+
+    private long ownerId;
+
+    private long size;
+
+    private long received;
+
+    private LocalDateTime updated;
+
+}
@@ -0,0 +1,27 @@
+package com.showmaker.showmaker.file;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+public interface UploadSessionRepository extends JpaRepository<UploadSession, String> {
+
+    List<UploadSession> findByUpdatedBefore(LocalDateTime date);
+
+    long countByOwnerId(long ownerId);
+
+    @Query("select coalesce(sum(s.size), 0) from UploadSession s where s.ownerId = :ownerId")
+    long sumSizeByOwnerId(@Param("ownerId") long ownerId);
+
+    @Modifying
+    @Transactional
+    @Query("update UploadSession s set s.received = :received, s.updated = :updated "
+            + "where s.id = :id and s.received = :expected")
+    int advance(@Param("id") String id, @Param("expected") long expected, @Param("received") long received,
+                @Param("updated") LocalDateTime updated);
+}
@@ -0,0 +1,221 @@
+package com.showmaker.showmaker.file;
+
+import com.showmaker.showmaker.configuration.AppConfiguration;
+import com.showmaker.showmaker.error.BadRequestException;
+import com.showmaker.showmaker.error.ConflictException;
+import com.showmaker.showmaker.error.NotFoundException;
+import com.showmaker.showmaker.error.PayloadTooLargeException;
+import com.showmaker.showmaker.error.TooManyRequestsException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.List;
+import java.util.UUID;
+
+@Service
+public class UploadSessionService {
+
+    private static final Logger log = LoggerFactory.getLogger(UploadSessionService.class);
+
+    private static final int CHUNK_BUFFER_BYTES = 64 * 1024;
+
+    private static final String PART_SUFFIX = ".part";
+
+    private final Object[] locks = new Object[64];
+
+    AppConfiguration appConfiguration;
+
+    UploadSessionRepository uploadSessionRepository;
+
+    FileService fileService;
+
+    public UploadSessionService(AppConfiguration appConfiguration, UploadSessionRepository uploadSessionRepository,
+                                FileService fileService) {
+        super();
+        this.appConfiguration = appConfiguration;
+        this.uploadSessionRepository = uploadSessionRepository;
+        this.fileService = fileService;
+        for (int i = 0; i < locks.length; i++) {
+            locks[i] = new Object();
+        }
+    }
+
+    public UploadSession create(long ownerId, long size) throws IOException {
+        if (size <= 0) {
+            throw new BadRequestException("Upload size must be positive");
+        }
+        if (size > appConfiguration.getMaxAttachmentSize()) {
+            throw new PayloadTooLargeException("Upload is larger than " + appConfiguration.getMaxAttachmentSize()
+                    + " bytes");
+        }
+        synchronized (lockFor("owner-" + ownerId)) {
+            if (uploadSessionRepository.countByOwnerId(ownerId) >= appConfiguration.getMaxUploadSessionsPerUser()
+                    || uploadSessionRepository.sumSizeByOwnerId(ownerId) + size
+                    > appConfiguration.getMaxUploadSessionBytesPerUser()) {
+                throw new TooManyRequestsException("Too many unfinished uploads, complete or abandon one first");
+            }
+            UploadSession uploadSession = new UploadSession();
+            uploadSession.setId(UUID.randomUUID().toString().replaceAll("-", ""));
+            uploadSession.setOwnerId(ownerId);
+            uploadSession.setSize(size);
+            uploadSession.setUpdated(LocalDateTime.now());
+            Path part = getPartPath(uploadSession.getId());
+            Files.createDirectories(part.getParent());
+            try (RandomAccessFile file = new RandomAccessFile(part.toFile(), "rw")) {
+                file.setLength(size);
+            }
+            return uploadSessionRepository.save(uploadSession);
+        }
+    }
+
+    public UploadSession find(long ownerId, String id) {
+        return uploadSessionRepository.findById(id)
+                .filter(uploadSession -> uploadSession.getOwnerId() == ownerId)
+                .orElseThrow(() -> new NotFoundException("Upload session " + id + " not found"));
+    }
+
+    public UploadSession append(long ownerId, String id, long offset, InputStream content) throws IOException {
+        UploadSession uploadSession;
+        synchronized (lockFor(id)) {
+            uploadSession = find(ownerId, id);
+            checkOffset(uploadSession, offset);
+        }
+        ReadableByteChannel source = Channels.newChannel(content);
+        ByteBuffer buffer = ByteBuffer.allocateDirect(CHUNK_BUFFER_BYTES);
+        long position = offset;
+        try (FileChannel channel = FileChannel.open(getPartPath(id), StandardOpenOption.WRITE)) {
+            while (source.read(buffer) >= 0 || buffer.position() > 0) {
+                buffer.flip();
+                if (position + buffer.remaining() > uploadSession.getSize()) {
+                    throw new BadRequestException("Chunk extends past the declared upload size");
+                }
+                position += channel.write(buffer, position);
+                buffer.compact();
+            }
+        } finally {
+            if (position > offset) {
+                commit(uploadSession, offset, position);
+            }
+        }
+        return uploadSession;
+    }
+
+    public FileAttachment complete(long ownerId, String id) throws IOException {
+        synchronized (lockFor(id)) {
+            UploadSession uploadSession = find(ownerId, id);
+            if (uploadSession.getReceived() != uploadSession.getSize()) {
+                throw new ConflictException("Upload session " + id + " has received " + uploadSession.getReceived()
+                        + " of " + uploadSession.getSize() + " bytes");
+            }
+            Path part = getPartPath(id);
+            FileAttachment saved;
+            try {
+                saved = fileService.saveAttachment(part);
+            } catch (IOException | RuntimeException e) {
+                if (!Files.exists(part)) {
+                    uploadSessionRepository.delete(uploadSession);
+                }
+                throw e;
+            }
+            uploadSessionRepository.delete(uploadSession);
+            return saved;
+        }
+    }
+
+    private void checkOffset(UploadSession uploadSession, long offset) {
+        if (offset != uploadSession.getReceived()) {
+            throw new ConflictException("Upload session " + uploadSession.getId() + " expects offset "
+                    + uploadSession.getReceived());
+        }
+    }
+
+    private void commit(UploadSession uploadSession, long offset, long position) {
+        synchronized (lockFor(uploadSession.getId())) {
+            LocalDateTime now = LocalDateTime.now();
+            if (uploadSessionRepository.advance(uploadSession.getId(), offset, position, now) == 0) {
+                throw new ConflictException("Upload session " + uploadSession.getId()
+                        + " was changed by another request");
+            }
+            uploadSession.setReceived(position);
+            uploadSession.setUpdated(now);
+        }
+    }
+
+    @Scheduled(fixedRate = 60 * 60 * 1000)
+    public int expireSessions() {
+        LocalDateTime cutoff = LocalDateTime.now().minusMinutes(appConfiguration.getUploadSessionTimeoutMinutes());
+        List<UploadSession> expired = uploadSessionRepository.findByUpdatedBefore(cutoff);
+        int removed = 0;
+        for (UploadSession uploadSession : expired) {
+            synchronized (lockFor(uploadSession.getId())) {
+                boolean stillIdle = uploadSessionRepository.findById(uploadSession.getId())
+                        .filter(current -> current.getUpdated().isBefore(cutoff))
+                        .isPresent();
+                if (!stillIdle) {
+                    continue;
+                }
+                try {
+                    Files.deleteIfExists(getPartPath(uploadSession.getId()));
+                    uploadSessionRepository.deleteById(uploadSession.getId());
+                    removed++;
+                } catch (IOException | RuntimeException e) {
+                    log.warn("Could not expire upload session " + uploadSession.getId(), e);
+                }
+            }
+        }
+        removed += removeOrphanedParts(cutoff);
+        if (removed > 0) {
+            log.info("Expired {} abandoned upload sessions", removed);
+        }
+        return removed;
+    }
+
+    private int removeOrphanedParts(LocalDateTime cutoff) {
+        Path folder = Paths.get(appConfiguration.getUploadPath(), appConfiguration.getUploadSessionsFolder());
+        if (!Files.isDirectory(folder)) {
+            return 0;
+        }
+        long cutoffMillis = cutoff.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+        int removed = 0;
+        try (DirectoryStream<Path> parts = Files.newDirectoryStream(folder, "*" + PART_SUFFIX)) {
+            for (Path part : parts) {
+                String name = part.getFileName().toString();
+                String id = name.substring(0, name.length() - PART_SUFFIX.length());
+                synchronized (lockFor(id)) {
+                    if (Files.getLastModifiedTime(part).toMillis() < cutoffMillis
+                            && !uploadSessionRepository.existsById(id) && Files.deleteIfExists(part)) {
+                        removed++;
+                    }
+                }
+            }
+        } catch (IOException e) {
+            log.warn("Could not scan upload sessions folder " + folder, e);
+        }
+        return removed;
+    }
+
+    private Path getPartPath(String id) {
+        return Paths.get(appConfiguration.getUploadPath(), appConfiguration.getUploadSessionsFolder(),
+                id + PART_SUFFIX);
+    }
+
+    private Object lockFor(String id) {
+        return locks[(id.hashCode() & Integer.MAX_VALUE) % locks.length];
+    }
+}
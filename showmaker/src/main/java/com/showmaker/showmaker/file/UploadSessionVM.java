@@ -0,0 +1,19 @@
+package com.showmaker.showmaker.file;
+
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+public class UploadSessionVM {
+
+    private String id;
+    private long size;
+    private long received;
+
+    public UploadSessionVM(UploadSession uploadSession) {
+        this.setId(uploadSession.getId());
+        this.setSize(uploadSession.getSize());
+        this.setReceived(uploadSession.getReceived());
+    }
+}
@@ -0,0 +1,32 @@
+package com.showmaker.showmaker.shared;
+
+import com.showmaker.showmaker.error.BadRequestException;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+public final class CursorCodec {
+
+    private final String prefix;
+
+    public CursorCodec(String prefix) {
+        this.prefix = prefix + ":";
+    }
+
+    public String encode(long id) {
+        byte[] raw = (prefix + id).getBytes(StandardCharsets.US_ASCII);
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw);
+    }
+
+    public long decode(String cursor) {
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.US_ASCII);
+            if (raw.startsWith(prefix)) {
+                return Long.parseLong(raw.substring(prefix.length()));
+            }
+        } catch (IllegalArgumentException e) {
+            // falls through to the bad request below
+        }
+        throw new BadRequestException("Invalid cursor");
+    }
+}
@@ -0,0 +1,25 @@
+package com.showmaker.showmaker.shared;
+
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+public class CursorPage<T> {
+
+    private List<T> content;
+    private int size;
+    private int numberOfElements;
+    private boolean next;
+    private String cursor;
+
+    public CursorPage(List<T> content, int size, boolean next, String cursor) {
+        this.content = content;
+        this.size = size;
+        this.numberOfElements = content.size();
+        this.next = next;
+        this.cursor = cursor;
+    }
+}
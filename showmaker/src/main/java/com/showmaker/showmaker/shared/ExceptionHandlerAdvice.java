@@ -8,6 +8,7 @@ import org.springframework.web.bind.MethodArgumentNotValidException;
 import org.springframework.web.bind.annotation.ExceptionHandler;
 import org.springframework.web.bind.annotation.ResponseStatus;
 import org.springframework.web.bind.annotation.RestControllerAdvice;
+import org.springframework.web.multipart.MaxUploadSizeExceededException;
 
 import javax.servlet.http.HttpServletRequest;
 import java.util.HashMap;
@@ -30,4 +31,11 @@ public class ExceptionHandlerAdvice {
 
         return apiError;
     }
+
+    @ExceptionHandler({MaxUploadSizeExceededException.class})
+    @ResponseStatus(HttpStatus.PAYLOAD_TOO_LARGE)
+    ApiError handleMaxUploadSizeExceededException(MaxUploadSizeExceededException exception,
+                                                  HttpServletRequest request) {
+        return new ApiError(413, "Attachment is too large", request.getServletPath());
+    }
 }
@@ -5,26 +5,18 @@ import org.springframework.beans.factory.annotation.Autowired;
 
 import javax.validation.ConstraintValidator;
 import javax.validation.ConstraintValidatorContext;
-import java.util.Base64;
 
-public class ProfileImageValidator implements ConstraintValidator<ProfileImage, String> {
+public class ProfileImageValidator implements ConstraintValidator<ProfileImage, byte[]> {
 
     @Autowired
     FileService fileService;
 
     @Override
-    public boolean isValid(String s, ConstraintValidatorContext constraintValidatorContext) {
-        if (s == null) {
+    public boolean isValid(byte[] image, ConstraintValidatorContext constraintValidatorContext) {
+        if (image == null) {
             return true;
         }
 
-        byte[] decodedBytes = Base64.getDecoder().decode(s);
-        String fileType = fileService.detectType(decodedBytes);
-        if (fileType.equalsIgnoreCase("image/png")
-                || fileType.equalsIgnoreCase("image/jpeg")) {
-            return true;
-        }
-
-        return false;
+        return fileService.isSupportedProfileImageType(fileService.detectType(image));
     }
 }
@@ -0,0 +1,156 @@
+package com.showmaker.showmaker.show;
+
+import com.showmaker.showmaker.configuration.AppConfiguration;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.Optional;
+import java.util.OptionalLong;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+@Component
+public class RecentShowIndex {
+
+    private final ShowRepository showRepository;
+
+    private final int capacity;
+
+    private final ConcurrentSkipListMap<Long, String> shows = new ConcurrentSkipListMap<>();
+
+    private final ConcurrentMap<String, NavigableSet<Long>> showsByUser = new ConcurrentHashMap<>();
+
+    private final AtomicInteger size = new AtomicInteger();
+
+    private final AtomicLong coveredFrom = new AtomicLong(Long.MAX_VALUE);
+
+    private final Counter hits;
+
+    private final Counter misses;
+
+    public RecentShowIndex(ShowRepository showRepository,
+                           AppConfiguration appConfiguration,
+                           MeterRegistry meterRegistry) {
+        super();
+        this.showRepository = showRepository;
+        this.capacity = Math.max(1, appConfiguration.getRecentShowsCapacity());
+        this.hits = Counter.builder("showmaker.recent.shows.lookups").tag("result", "hit")
+                .description("Relative show queries answered from the in-memory index")
+                .register(meterRegistry);
+        this.misses = Counter.builder("showmaker.recent.shows.lookups").tag("result", "miss")
+                .description("Relative show queries older than the in-memory window")
+                .register(meterRegistry);
+        Gauge.builder("showmaker.recent.shows.size", size, AtomicInteger::get).register(meterRegistry);
+        Gauge.builder("showmaker.recent.shows.window.start", coveredFrom, AtomicLong::get)
+                .register(meterRegistry);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void warmUp() {
+        List<ShowIdProjection> latest = showRepository.findLatestShowIds(PageRequest.of(0, capacity));
+        for (ShowIdProjection show : latest) {
+            add(show.getId(), show.getUsername());
+        }
+        long start = latest.size() < capacity ? 0 : latest.get(latest.size() - 1).getId();
+        coveredFrom.accumulateAndGet(start, Math::min);
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onShowEvent(ShowEvent event) {
+        if (event.getType() == ShowEvent.Type.CREATED) {
+            add(event.getShowId(), event.getUsername());
+        } else {
+            remove(event.getShowId());
+        }
+    }
+
+    public OptionalLong countAfter(long id, String username) {
+        if (!covers(id)) {
+            return OptionalLong.empty();
+        }
+        return OptionalLong.of(idsAfter(id, username).size());
+    }
+
+    public Optional<List<Long>> findIdsAfter(long id, String username) {
+        if (!covers(id)) {
+            return Optional.empty();
+        }
+        return Optional.of(new ArrayList<>(idsAfter(id, username)));
+    }
+
+    private boolean covers(long id) {
+        if (id >= coveredFrom.get()) {
+            hits.increment();
+            return true;
+        }
+        misses.increment();
+        return false;
+    }
+
+    private NavigableSet<Long> idsAfter(long id, String username) {
+        if (username == null) {
+            return shows.keySet().tailSet(id, false);
+        }
+        NavigableSet<Long> ids = showsByUser.get(username);
+        if (ids == null) {
+            return Collections.emptyNavigableSet();
+        }
+        return ids.tailSet(id, false);
+    }
+
+    private void add(long id, String username) {
+        if (shows.putIfAbsent(id, username == null ? "" : username) != null) {
+            return;
+        }
+        if (username != null) {
+            showsByUser.compute(username, (u, ids) -> {
+                NavigableSet<Long> userIds = ids == null ? new ConcurrentSkipListSet<>() : ids;
+                userIds.add(id);
+                return userIds;
+            });
+        }
+        if (size.incrementAndGet() > capacity) {
+            evictOldest();
+        }
+    }
+
+    private void evictOldest() {
+        Map.Entry<Long, String> oldest = shows.pollFirstEntry();
+        if (oldest == null) {
+            return;
+        }
+        size.decrementAndGet();
+        coveredFrom.accumulateAndGet(oldest.getKey(), Math::max);
+        removeFromUser(oldest.getKey(), oldest.getValue());
+    }
+
+    private void remove(long id) {
+        String username = shows.remove(id);
+        if (username != null) {
+            size.decrementAndGet();
+            removeFromUser(id, username);
+        }
+    }
+
+    private void removeFromUser(long id, String username) {
+        showsByUser.computeIfPresent(username, (u, ids) -> {
+            ids.remove(id);
+            return ids.isEmpty() ? null : ids;
+        });
+    }
+}
@@ -1,15 +1,22 @@
 package com.showmaker.showmaker.show;
 
 import com.showmaker.showmaker.shared.CurrentUser;
+import com.showmaker.showmaker.shared.CursorCodec;
+import com.showmaker.showmaker.shared.CursorPage;
 import com.showmaker.showmaker.shared.GenericResponse;
+import com.showmaker.showmaker.show.vm.ShowSyncVM;
 import com.showmaker.showmaker.show.vm.ShowVM;
 import com.showmaker.showmaker.user.User;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.util.StringUtils;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
 import javax.validation.Valid;
 import java.util.Collections;
@@ -20,9 +27,21 @@ import java.util.stream.Collectors;
 @RequestMapping("/api/1.0")
 public class ShowController {
 
+    static final String HAS_MORE_HEADER = "X-Has-More";
+
+    static final String CONTINUATION_ID_HEADER = "X-Continuation-Id";
+
+    private static final CursorCodec SHOW_CURSOR = new CursorCodec("s1");
+
     @Autowired
     ShowService showService;
 
+    @Autowired
+    ShowStreamService showStreamService;
+
+    @Autowired
+    ShowSyncService showSyncService;
+
     @PostMapping("/shows")
     ShowVM createShow(@Valid @RequestBody Show show, @CurrentUser User user) {
         return new ShowVM(showService.save(user, show));
@@ -46,17 +65,51 @@ public class ShowController {
                                                defaultValue = "after") String direction,
                                        @RequestParam(name = "count",
                                                defaultValue = "false",
-                                               required = false) boolean count) {
+                                               required = false) boolean count,
+                                       @RequestParam(name = "cursor", required = false) String cursor) {
         if (!direction.equalsIgnoreCase("after")) {
+            if (cursor != null) {
+                return ResponseEntity.ok(getOldShowsByCursor(id, username, pageable, cursor));
+            }
             return ResponseEntity.ok(showService.getOldShows(id, username, pageable).map(ShowVM::new));
         }
         if (count) {
             long newShowCount = showService.getNewShowsCount(id, username);
             return ResponseEntity.ok(Collections.singletonMap("count", newShowCount));
         }
-        List<ShowVM> newShows = showService.getNewShows(id, username, pageable).stream()
+        Slice<ShowRow> newShows = showService.getNewShows(id, username, pageable);
+        List<ShowVM> content = newShows.getContent().stream()
                 .map(ShowVM::new).collect(Collectors.toList());
-        return ResponseEntity.ok(newShows);
+        HttpHeaders headers = new HttpHeaders();
+        headers.set(HAS_MORE_HEADER, String.valueOf(newShows.hasNext()));
+        if (newShows.hasNext()) {
+            long continuationId = content.stream().mapToLong(ShowVM::getId).max().orElse(id);
+            headers.set(CONTINUATION_ID_HEADER, String.valueOf(continuationId));
+        }
+        return ResponseEntity.ok().headers(headers).body(content);
+    }
+
+    private CursorPage<ShowVM> getOldShowsByCursor(long id, String username, Pageable pageable, String cursor) {
+        long before = cursor.isEmpty() ? id : SHOW_CURSOR.decode(cursor);
+        Slice<ShowRow> slice = showService.getOldShowsSlice(before, username, pageable.getPageSize());
+        List<ShowVM> content = slice.getContent().stream().map(ShowVM::new).collect(Collectors.toList());
+        String nextCursor = slice.hasNext() ? SHOW_CURSOR.encode(content.get(content.size() - 1).getId()) : null;
+        return new CursorPage<>(content, slice.getSize(), slice.hasNext(), nextCursor);
+    }
+
+    @GetMapping("/shows/stream")
+    SseEmitter streamNewShows(@RequestParam(name = "after", defaultValue = "0") long after,
+                              @RequestParam(name = "username", required = false) String username) {
+        String usernameFilter = StringUtils.hasText(username) ? username : null;
+        return showStreamService.subscribe(after, usernameFilter,
+                () -> showService.getNewShowsCount(after, usernameFilter));
+    }
+
+    @GetMapping("/shows/sync")
+    ShowSyncVM syncShows(@RequestParam(name = "since", required = false) String since,
+                         @RequestParam(name = "username", required = false) String username) {
+        return showSyncService.sync(StringUtils.hasText(since) ? since : null,
+                StringUtils.hasText(username) ? username : null);
     }
 
     @DeleteMapping("/shows/{id:[0-9]+}")
@@ -0,0 +1,23 @@
+package com.showmaker.showmaker.show;
+
+import lombok.Data;
+
+@Data
+public class ShowEvent {
+
+    public enum Type {
+        CREATED, DELETED
+    }
+
+    private final Type type;
+    private final long showId;
+    private final String username;
+
+    public static ShowEvent created(Show show) {
+        return new ShowEvent(Type.CREATED, show.getId(), show.getUser().getUsername());
+    }
+
+    public static ShowEvent deleted(long showId, String username) {
+        return new ShowEvent(Type.DELETED, showId, username);
+    }
+}
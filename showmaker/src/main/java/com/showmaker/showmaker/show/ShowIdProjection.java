@@ -0,0 +1,7 @@
+package com.showmaker.showmaker.show;
+
+public interface ShowIdProjection {
+
+    long getId();
+    String getUsername();
+}
@@ -5,9 +5,19 @@ import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.JpaSpecificationExecutor;
+import org.springframework.data.jpa.repository.Query;
 
-public interface ShowRepository extends JpaRepository<Show, Long>, JpaSpecificationExecutor<Show> {
+import java.util.List;
+
+public interface ShowRepository extends JpaRepository<Show, Long>, JpaSpecificationExecutor<Show>,
+        ShowRepositoryCustom {
 
     Page<Show> findByUser(User user, Pageable pageable);
 
+    @Query("select coalesce(max(s.id), 0) from Show s")
+    long findMaxId();
+
+    @Query("select s.id as id, u.username as username from Show s left join s.user u order by s.id desc")
+    List<ShowIdProjection> findLatestShowIds(Pageable pageable);
+
 }
@@ -0,0 +1,18 @@
+package com.showmaker.showmaker.show;
+
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.domain.Specification;
+
+import java.util.List;
+
+public interface ShowRepositoryCustom {
+
+    Page<ShowRow> findRows(Specification<Show> spec, Pageable pageable);
+
+    Slice<ShowRow> findRowSlice(Specification<Show> spec, Pageable pageable);
+
+    List<ShowRow> findRows(Specification<Show> spec, Sort sort);
+}
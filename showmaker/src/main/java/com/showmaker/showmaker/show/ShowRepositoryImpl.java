@@ -0,0 +1,93 @@
+package com.showmaker.showmaker.show;
+
+import com.showmaker.showmaker.file.FileAttachment;
+import com.showmaker.showmaker.user.User;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.SliceImpl;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.domain.Specification;
+import org.springframework.data.jpa.repository.query.QueryUtils;
+import org.springframework.data.repository.support.PageableExecutionUtils;
+
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+import javax.persistence.TypedQuery;
+import javax.persistence.criteria.CriteriaBuilder;
+import javax.persistence.criteria.CriteriaQuery;
+import javax.persistence.criteria.Join;
+import javax.persistence.criteria.JoinType;
+import javax.persistence.criteria.Predicate;
+import javax.persistence.criteria.Root;
+import java.util.List;
+
+public class ShowRepositoryImpl implements ShowRepositoryCustom {
+
+    @PersistenceContext
+    EntityManager entityManager;
+
+    @Override
+    public Page<ShowRow> findRows(Specification<Show> spec, Pageable pageable) {
+        TypedQuery<ShowRow> query = createRowQuery(spec, pageable.getSort());
+        if (pageable.isPaged()) {
+            query.setFirstResult((int) pageable.getOffset());
+            query.setMaxResults(pageable.getPageSize());
+        }
+        return PageableExecutionUtils.getPage(query.getResultList(), pageable, () -> count(spec));
+    }
+
+    @Override
+    public Slice<ShowRow> findRowSlice(Specification<Show> spec, Pageable pageable) {
+        TypedQuery<ShowRow> query = createRowQuery(spec, pageable.getSort());
+        query.setFirstResult((int) pageable.getOffset());
+        query.setMaxResults(pageable.getPageSize() + 1);
+        List<ShowRow> rows = query.getResultList();
+        boolean hasNext = rows.size() > pageable.getPageSize();
+        return new SliceImpl<>(hasNext ? rows.subList(0, pageable.getPageSize()) : rows, pageable, hasNext);
+    }
+
+    @Override
+    public List<ShowRow> findRows(Specification<Show> spec, Sort sort) {
+        return createRowQuery(spec, sort).getResultList();
+    }
+
+    private TypedQuery<ShowRow> createRowQuery(Specification<Show> spec, Sort sort) {
+        CriteriaBuilder criteriaBuilder = entityManager.getCriteriaBuilder();
+        CriteriaQuery<ShowRow> criteriaQuery = criteriaBuilder.createQuery(ShowRow.class);
+        Root<Show> root = criteriaQuery.from(Show.class);
+        Join<Show, User> user = root.join("user");
+        Join<Show, FileAttachment> attachment = root.join("attachment", JoinType.LEFT);
+        criteriaQuery.select(criteriaBuilder.construct(ShowRow.class,
+                root.get("id"), root.get("content"), root.get("timestamp"),
+                user.get("id"), user.get("username"), user.get("displayName"), user.get("image"),
+                attachment.get("name"), attachment.get("fileType"), attachment.get("renditions"),
+                attachment.get("placeholder").get("width"), attachment.get("placeholder").get("height"),
+                attachment.get("placeholder").get("color"), attachment.get("placeholder").get("blurHash")));
+        Predicate predicate = toPredicate(spec, root, criteriaQuery, criteriaBuilder);
+        if (predicate != null) {
+            criteriaQuery.where(predicate);
+        }
+        if (sort.isSorted()) {
+            criteriaQuery.orderBy(QueryUtils.toOrders(sort, root, criteriaBuilder));
+        }
+        return entityManager.createQuery(criteriaQuery);
+    }
+
+    private long count(Specification<Show> spec) {
+        CriteriaBuilder criteriaBuilder = entityManager.getCriteriaBuilder();
+        CriteriaQuery<Long> criteriaQuery = criteriaBuilder.createQuery(Long.class);
+        Root<Show> root = criteriaQuery.from(Show.class);
+        criteriaQuery.select(criteriaBuilder.count(root));
+        Predicate predicate = toPredicate(spec, root, criteriaQuery, criteriaBuilder);
+        if (predicate != null) {
+            criteriaQuery.where(predicate);
+        }
+        return entityManager.createQuery(criteriaQuery).getSingleResult();
+    }
+
+    private Predicate toPredicate(Specification<Show> spec, Root<Show> root,
+                                  CriteriaQuery<?> criteriaQuery, CriteriaBuilder criteriaBuilder) {
+        return spec == null ? null : spec.toPredicate(root, criteriaQuery, criteriaBuilder);
+    }
+}
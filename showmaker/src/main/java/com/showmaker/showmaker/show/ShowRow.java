@@ -0,0 +1,41 @@
+package com.showmaker.showmaker.show;
+
+import com.showmaker.showmaker.file.ImagePlaceholder;
+import lombok.Data;
+
+import java.time.LocalDateTime;
+
+@Data
+public class ShowRow {
+
+    private long id;
+    private String content;
+    private LocalDateTime timestamp;
+    private long userId;
+    private String username;
+    private String displayName;
+    private String image;
+    private String attachmentName;
+    private String attachmentFileType;
+    private String attachmentRenditions;
+    private ImagePlaceholder attachmentPlaceholder;
+
+    public ShowRow(long id, String content, LocalDateTime timestamp,
+                   long userId, String username, String displayName, String image,
+                   String attachmentName, String attachmentFileType, String attachmentRenditions,
+                   Integer attachmentWidth, Integer attachmentHeight,
+                   String attachmentColor, String attachmentBlurHash) {
+        this.id = id;
+        this.content = content;
+        this.timestamp = timestamp;
+        this.userId = userId;
+        this.username = username;
+        this.displayName = displayName;
+        this.image = image;
+        this.attachmentName = attachmentName;
+        this.attachmentFileType = attachmentFileType;
+        this.attachmentRenditions = attachmentRenditions;
+        this.attachmentPlaceholder = ImagePlaceholder.of(attachmentWidth, attachmentHeight,
+                attachmentColor, attachmentBlurHash);
+    }
+}
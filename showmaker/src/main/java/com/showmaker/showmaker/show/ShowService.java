@@ -1,83 +1,141 @@
 package com.showmaker.showmaker.show;
 
+import com.showmaker.showmaker.configuration.AppConfiguration;
+import com.showmaker.showmaker.error.NotFoundException;
 import com.showmaker.showmaker.file.FileAttachment;
 import com.showmaker.showmaker.file.FileAttachmentRepository;
 import com.showmaker.showmaker.file.FileService;
 import com.showmaker.showmaker.user.User;
 import com.showmaker.showmaker.user.UserService;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.SliceImpl;
+import org.springframework.data.domain.Sort;
 import org.springframework.data.jpa.domain.Specification;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 
 import javax.persistence.criteria.CriteriaBuilder;
 import javax.persistence.criteria.CriteriaQuery;
 import javax.persistence.criteria.Predicate;
 import javax.persistence.criteria.Root;
 import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
+import java.util.Optional;
+import java.util.OptionalLong;
 
 @Service
 public class ShowService {
 
+    AppConfiguration appConfiguration;
     ShowRepository showRepository;
     UserService userService;
     FileAttachmentRepository fileAttachmentRepository;
+    ShowTombstoneRepository showTombstoneRepository;
     FileService fileService;
+    ApplicationEventPublisher eventPublisher;
+    RecentShowIndex recentShowIndex;
 
-    public ShowService(ShowRepository showRepository,
+    public ShowService(AppConfiguration appConfiguration,
+                       ShowRepository showRepository,
                        UserService userService,
                        FileAttachmentRepository fileAttachmentRepository,
-                       FileService fileService) {
+                       ShowTombstoneRepository showTombstoneRepository,
+                       FileService fileService,
+                       ApplicationEventPublisher eventPublisher,
+                       RecentShowIndex recentShowIndex) {
         super();
+        this.appConfiguration = appConfiguration;
         this.showRepository = showRepository;
         this.userService = userService;
         this.fileAttachmentRepository = fileAttachmentRepository;
+        this.showTombstoneRepository = showTombstoneRepository;
         this.fileService = fileService;
+        this.eventPublisher = eventPublisher;
+        this.recentShowIndex = recentShowIndex;
     }
 
     public Show save(User user, Show show) {
         show.setTimestamp(LocalDateTime.now());
-        show.setUser(user);
+        show.setUser(userService.getById(user.getId()));
         if (show.getAttachment() != null) {
             FileAttachment inDB = fileAttachmentRepository.findById(show.getAttachment().getId()).get();
             inDB.setShow(show);
             show.setAttachment(inDB);
         }
-        return showRepository.save(show);
+        Show saved = showRepository.save(show);
+        eventPublisher.publishEvent(ShowEvent.created(saved));
+        return saved;
     }
 
-    public Page<Show> getAllShows(Pageable pageable) {
-        return showRepository.findAll(pageable);
+    public Page<ShowRow> getAllShows(Pageable pageable) {
+        return showRepository.findRows(null, pageable);
     }
 
-    public Page<Show> getShowsOfUser(String username, Pageable pageable) {
+    public Page<ShowRow> getShowsOfUser(String username, Pageable pageable) {
         User inDB = userService.getByUsername(username);
-        return showRepository.findByUser(inDB, pageable);
+        return showRepository.findRows(userIs(inDB), pageable);
     }
 
-    public Page<Show> getOldShows(long id, String username, Pageable pageable) {
+    public Page<ShowRow> getOldShows(long id, String username, Pageable pageable) {
         Specification<Show> spec = Specification.where(idLessThan(id));
         if (username != null) {
             User inDB = userService.getByUsername(username);
             spec = spec.and(userIs(inDB));
         }
-        return showRepository.findAll(spec, pageable);
+        return showRepository.findRows(spec, pageable);
     }
 
-    public List<Show> getNewShows(long id, String username, Pageable pageable) {
-        Specification<Show> spec = Specification.where(idGreaterThan(id));
+    public Slice<ShowRow> getOldShowsSlice(long id, String username, int size) {
+        Specification<Show> spec = Specification.where(idLessThan(id));
         if (username != null) {
             User inDB = userService.getByUsername(username);
             spec = spec.and(userIs(inDB));
         }
-        return showRepository.findAll(spec, pageable.getSort());
+        return showRepository.findRowSlice(spec, PageRequest.of(0, size, Sort.by(Sort.Direction.DESC, "id")));
+    }
+
+    public Slice<ShowRow> getNewShows(long id, String username, Pageable pageable) {
+        User inDB = username == null ? null : userService.getByUsername(username);
+        int limit = Math.max(1, appConfiguration.getMaxNewShows());
+        Optional<List<Long>> recentIds = recentShowIndex.findIdsAfter(id, username);
+        if (recentIds.isPresent()) {
+            List<Long> ids = recentIds.get();
+            if (ids.isEmpty()) {
+                return new SliceImpl<>(Collections.emptyList());
+            }
+            boolean hasMore = ids.size() > limit;
+            List<Long> oldestIds = hasMore ? ids.subList(0, limit) : ids;
+            List<ShowRow> rows = showRepository.findRows(idIn(oldestIds), pageable.getSort());
+            return new SliceImpl<>(rows, PageRequest.of(0, limit), hasMore);
+        }
+        Specification<Show> spec = Specification.where(idGreaterThan(id));
+        if (inDB != null) {
+            spec = spec.and(userIs(inDB));
+        }
+        Slice<ShowRow> oldestFirst =
+                showRepository.findRowSlice(spec, PageRequest.of(0, limit, Sort.by(Sort.Direction.ASC, "id")));
+        List<ShowRow> rows = new ArrayList<>(oldestFirst.getContent());
+        Sort.Order idOrder = pageable.getSort().getOrderFor("id");
+        if (idOrder != null && idOrder.isDescending()) {
+            Collections.reverse(rows);
+        }
+        return new SliceImpl<>(rows, oldestFirst.getPageable(), oldestFirst.hasNext());
     }
 
     public long getNewShowsCount(long id, String username) {
+        User inDB = username == null ? null : userService.getByUsername(username);
+        OptionalLong recentCount = recentShowIndex.countAfter(id, username);
+        if (recentCount.isPresent()) {
+            return recentCount.getAsLong();
+        }
         Specification<Show> spec = Specification.where(idGreaterThan(id));
-        if (username != null) {
-            User inDB = userService.getByUsername(username);
+        if (inDB != null) {
             spec = spec.and(userIs(inDB));
         }
         return showRepository.count(spec);
@@ -93,16 +151,26 @@ public class ShowService {
                 criteriaBuilder.lessThan(root.get("id"), id);
     }
 
+    private Specification<Show> idIn(List<Long> ids) {
+        return (Specification<Show>) (root, criteriaQuery, criteriaBuilder) ->
+                root.get("id").in(ids);
+    }
+
     private Specification<Show> idGreaterThan(long id) {
         return (Specification<Show>) (root, criteriaQuery, criteriaBuilder) ->
                 criteriaBuilder.greaterThan(root.get("id"), id);
     }
 
+    @Transactional
     public void deleteShow(long id) {
-        Show show = showRepository.getOne(id);
+        Show show = showRepository.findById(id)
+                .orElseThrow(() -> new NotFoundException("Show " + id + " not found"));
+        String username = show.getUser().getUsername();
         if (show.getAttachment() != null) {
             fileService.deleteAttachmentImage(show.getAttachment().getName());
         }
         showRepository.deleteById(id);
+        showTombstoneRepository.save(new ShowTombstone(id, username, LocalDateTime.now()));
+        eventPublisher.publishEvent(ShowEvent.deleted(id, username));
     }
 }
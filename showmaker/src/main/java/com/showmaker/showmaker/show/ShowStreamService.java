@@ -0,0 +1,139 @@
+package com.showmaker.showmaker.show;
+
+import org.springframework.http.MediaType;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.LongSupplier;
+
+@Service
+public class ShowStreamService {
+
+    static final long EMITTER_TIMEOUT = 30 * 60 * 1000L;
+
+    private final Set<Subscriber> subscribers = ConcurrentHashMap.newKeySet();
+
+    private final ExecutorService fanOutExecutor = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "show-stream-fan-out");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    public SseEmitter subscribe(long after, String username, LongSupplier initialCount) {
+        SseEmitter emitter = new SseEmitter(EMITTER_TIMEOUT);
+        Subscriber subscriber = new Subscriber(emitter, after, username);
+        subscribers.add(subscriber);
+        emitter.onCompletion(() -> subscribers.remove(subscriber));
+        emitter.onTimeout(() -> subscribers.remove(subscriber));
+        emitter.onError(e -> subscribers.remove(subscriber));
+        long count = initialCount.getAsLong();
+        fanOutExecutor.execute(() -> subscriber.start(count));
+        return emitter;
+    }
+
+    public int getSubscriberCount() {
+        return subscribers.size();
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onShowEvent(ShowEvent event) {
+        fanOutExecutor.execute(() -> {
+            for (Subscriber subscriber : subscribers) {
+                subscriber.accept(event);
+            }
+        });
+    }
+
+    @Scheduled(fixedRate = 20 * 1000)
+    public void heartbeat() {
+        for (Subscriber subscriber : subscribers) {
+            subscriber.ping();
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        fanOutExecutor.shutdownNow();
+        for (Subscriber subscriber : subscribers) {
+            subscriber.emitter.complete();
+        }
+        subscribers.clear();
+    }
+
+    private class Subscriber {
+
+        private final SseEmitter emitter;
+        private final long after;
+        private final String username;
+        private long count;
+        private List<ShowEvent> pending = new ArrayList<>();
+
+        Subscriber(SseEmitter emitter, long after, String username) {
+            this.emitter = emitter;
+            this.after = after;
+            this.username = username;
+        }
+
+        // Events queued ahead of start were committed before the count was read, so they are already in it.
+        void start(long initialCount) {
+            count = initialCount;
+            send("count", count, null);
+            for (ShowEvent event : pending) {
+                send(getEventName(event), count, event.getShowId());
+            }
+            pending = null;
+        }
+
+        void accept(ShowEvent event) {
+            if (event.getShowId() <= after) {
+                return;
+            }
+            if (username != null && !username.equals(event.getUsername())) {
+                return;
+            }
+            if (pending != null) {
+                pending.add(event);
+                return;
+            }
+            count = event.getType() == ShowEvent.Type.CREATED ? count + 1 : Math.max(0, count - 1);
+            send(getEventName(event), count, event.getShowId());
+        }
+
+        private String getEventName(ShowEvent event) {
+            return event.getType() == ShowEvent.Type.CREATED ? "show" : "delete";
+        }
+
+        void send(String name, long count, Long showId) {
+            Map<String, Object> data = new HashMap<>();
+            data.put("count", count);
+            if (showId != null) {
+                data.put("id", showId);
+            }
+            try {
+                emitter.send(SseEmitter.event().name(name).data(data, MediaType.APPLICATION_JSON));
+            } catch (IOException | IllegalStateException e) {
+                subscribers.remove(this);
+            }
+        }
+
+        void ping() {
+            try {
+                emitter.send(SseEmitter.event().comment("ping"));
+            } catch (IOException | IllegalStateException e) {
+                subscribers.remove(this);
+            }
+        }
+    }
+}
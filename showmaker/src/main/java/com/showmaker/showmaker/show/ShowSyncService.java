@@ -0,0 +1,98 @@
+package com.showmaker.showmaker.show;
+
+import com.showmaker.showmaker.configuration.AppConfiguration;
+import com.showmaker.showmaker.show.vm.ShowSyncVM;
+import com.showmaker.showmaker.show.vm.ShowVM;
+import com.showmaker.showmaker.user.UserService;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.Sort;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+@Service
+public class ShowSyncService {
+
+    AppConfiguration appConfiguration;
+    ShowService showService;
+    ShowRepository showRepository;
+    ShowTombstoneRepository showTombstoneRepository;
+    UserService userService;
+
+    public ShowSyncService(AppConfiguration appConfiguration,
+                           ShowService showService,
+                           ShowRepository showRepository,
+                           ShowTombstoneRepository showTombstoneRepository,
+                           UserService userService) {
+        super();
+        this.appConfiguration = appConfiguration;
+        this.showService = showService;
+        this.showRepository = showRepository;
+        this.showTombstoneRepository = showTombstoneRepository;
+        this.userService = userService;
+    }
+
+    public ShowSyncVM sync(String since, String username) {
+        long now = System.currentTimeMillis();
+        SyncWatermark watermark = since == null ? null : SyncWatermark.decode(since);
+        if (watermark == null || watermark.getIssuedAt() < now - getRetentionMillis()) {
+            return reset(username, now);
+        }
+
+        int limit = Math.max(1, appConfiguration.getMaxNewShows());
+        Pageable oldestFirst = PageRequest.of(0, limit, Sort.by(Sort.Direction.ASC, "id"));
+        Slice<ShowRow> created = showService.getNewShows(watermark.getShowId(), username, oldestFirst);
+        Slice<ShowTombstone> deleted = username == null
+                ? showTombstoneRepository.findByIdGreaterThan(watermark.getTombstoneId(), oldestFirst)
+                : showTombstoneRepository.findByIdGreaterThanAndUsername(watermark.getTombstoneId(), username, oldestFirst);
+
+        long showId = created.getContent().stream()
+                .mapToLong(ShowRow::getId).max().orElse(watermark.getShowId());
+        long tombstoneId = deleted.getContent().stream()
+                .mapToLong(ShowTombstone::getId).max().orElse(watermark.getTombstoneId());
+        long issuedAt = now;
+        if (deleted.hasNext()) {
+            List<ShowTombstone> tombstones = deleted.getContent();
+            issuedAt = toEpochMillis(tombstones.get(tombstones.size() - 1).getDeletedAt());
+        }
+
+        ShowSyncVM result = new ShowSyncVM();
+        result.setShows(created.getContent().stream().map(ShowVM::new).collect(Collectors.toList()));
+        result.setDeleted(deleted.getContent().stream().map(ShowTombstone::getShowId).collect(Collectors.toList()));
+        result.setHasMore(created.hasNext() || deleted.hasNext());
+        result.setWatermark(new SyncWatermark(showId, tombstoneId, issuedAt).encode());
+        return result;
+    }
+
+    @Scheduled(fixedRate = 60 * 60 * 1000)
+    public void purgeTombstones() {
+        LocalDateTime cutoff = LocalDateTime.now().minusDays(appConfiguration.getShowTombstoneRetentionDays());
+        showTombstoneRepository.deleteByDeletedAtBefore(cutoff);
+    }
+
+    private ShowSyncVM reset(String username, long now) {
+        if (username != null) {
+            userService.getByUsername(username);
+        }
+        ShowSyncVM result = new ShowSyncVM();
+        result.setReset(true);
+        result.setWatermark(new SyncWatermark(showRepository.findMaxId(),
+                showTombstoneRepository.findMaxId(), now).encode());
+        return result;
+    }
+
+    private long getRetentionMillis() {
+        return TimeUnit.DAYS.toMillis(appConfiguration.getShowTombstoneRetentionDays());
+    }
+
+    private long toEpochMillis(LocalDateTime dateTime) {
+        return dateTime.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+    }
+}
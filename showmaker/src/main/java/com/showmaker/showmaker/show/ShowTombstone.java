@@ -0,0 +1,34 @@
+package com.showmaker.showmaker.show;
+
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import javax.persistence.Entity;
+import javax.persistence.GeneratedValue;
+import javax.persistence.Id;
+import javax.persistence.Index;
+import javax.persistence.Table;
+import java.time.LocalDateTime;
+
+@Data
+@NoArgsConstructor
+@Entity
+@Table(indexes = @Index(columnList = "deletedAt"))
+public class ShowTombstone {
+
+    @Id
+    @GeneratedValue
+    private long id;
+
+    private long showId;
+
+    private String username;
+
+    private LocalDateTime deletedAt;
+
+    public ShowTombstone(long showId, String username, LocalDateTime deletedAt) {
+        this.showId = showId;
+        this.username = username;
+        this.deletedAt = deletedAt;
+    }
+}
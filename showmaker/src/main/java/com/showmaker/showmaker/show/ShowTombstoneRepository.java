@@ -0,0 +1,25 @@
+package com.showmaker.showmaker.show;
+
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+
+public interface ShowTombstoneRepository extends JpaRepository<ShowTombstone, Long> {
+
+    Slice<ShowTombstone> findByIdGreaterThan(long id, Pageable pageable);
+
+    Slice<ShowTombstone> findByIdGreaterThanAndUsername(long id, String username, Pageable pageable);
+
+    @Query("select coalesce(max(t.id), 0) from ShowTombstone t")
+    long findMaxId();
+
+    @Modifying
+    @Transactional
+    @Query("delete from ShowTombstone t where t.deletedAt < :cutoff")
+    int deleteByDeletedAtBefore(LocalDateTime cutoff);
+}
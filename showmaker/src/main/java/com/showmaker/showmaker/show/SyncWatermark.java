@@ -0,0 +1,38 @@
+package com.showmaker.showmaker.show;
+
+import com.showmaker.showmaker.error.BadRequestException;
+import lombok.Data;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+@Data
+public class SyncWatermark {
+
+    private static final String PREFIX = "w1:";
+
+    private final long showId;
+    private final long tombstoneId;
+    private final long issuedAt;
+
+    public String encode() {
+        String raw = PREFIX + showId + ":" + tombstoneId + ":" + issuedAt;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.US_ASCII));
+    }
+
+    public static SyncWatermark decode(String watermark) {
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(watermark), StandardCharsets.US_ASCII);
+            if (raw.startsWith(PREFIX)) {
+                String[] parts = raw.substring(PREFIX.length()).split(":");
+                if (parts.length == 3) {
+                    return new SyncWatermark(Long.parseLong(parts[0]), Long.parseLong(parts[1]),
+                            Long.parseLong(parts[2]));
+                }
+            }
+        } catch (IllegalArgumentException e) {
+            // falls through to the bad request below
+        }
+        throw new BadRequestException("Invalid watermark");
+    }
+}
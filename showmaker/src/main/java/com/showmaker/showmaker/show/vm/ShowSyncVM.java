@@ -0,0 +1,18 @@
+package com.showmaker.showmaker.show.vm;
+
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.Collections;
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+public class ShowSyncVM {
+
+    private List<ShowVM> shows = Collections.emptyList();
+    private List<Long> deleted = Collections.emptyList();
+    private String watermark;
+    private boolean hasMore;
+    private boolean reset;
+}
@@ -2,6 +2,7 @@ package com.showmaker.showmaker.show.vm;
 
 import com.showmaker.showmaker.file.FileAttachmentVM;
 import com.showmaker.showmaker.show.Show;
+import com.showmaker.showmaker.show.ShowRow;
 import com.showmaker.showmaker.user.vm.UserVM;
 import lombok.Data;
 import lombok.NoArgsConstructor;
@@ -27,4 +28,15 @@ public class ShowVM {
             this.setAttachment(new FileAttachmentVM(show.getAttachment()));
         }
     }
+
+    public ShowVM(ShowRow row) {
+        this.setId(row.getId());
+        this.setContent(row.getContent());
+        this.setDate(row.getTimestamp());
+        this.setUser(new UserVM(row.getUserId(), row.getUsername(), row.getDisplayName(), row.getImage()));
+        if (row.getAttachmentName() != null) {
+            this.setAttachment(new FileAttachmentVM(row.getAttachmentName(), row.getAttachmentFileType(),
+                    row.getAttachmentRenditions(), row.getAttachmentPlaceholder()));
+        }
+    }
 }
@@ -0,0 +1,30 @@
+package com.showmaker.showmaker.user;
+
+import lombok.Value;
+
+@Value
+public class CachedUser {
+
+    long id;
+    String username;
+    String displayName;
+    String password;
+    String image;
+    int tokenVersion;
+
+    public static CachedUser of(User user) {
+        return new CachedUser(user.getId(), user.getUsername(), user.getDisplayName(),
+                user.getPassword(), user.getImage(), user.getTokenVersion());
+    }
+
+    public User toUser() {
+        User user = new User();
+        user.setId(id);
+        user.setUsername(username);
+        user.setDisplayName(displayName);
+        user.setPassword(password);
+        user.setImage(image);
+        user.setTokenVersion(tokenVersion);
+        return user;
+    }
+}
@@ -1,16 +1,41 @@
 package com.showmaker.showmaker.user;
 
+import com.showmaker.showmaker.configuration.TokenService;
 import com.showmaker.showmaker.shared.CurrentUser;
-import com.showmaker.showmaker.user.vm.UserVM;
+import com.showmaker.showmaker.shared.GenericResponse;
+import com.showmaker.showmaker.user.vm.LoginVM;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RestController;
 
 @RestController
 public class LoginController {
 
+    @Autowired
+    TokenService tokenService;
+
+    @Autowired
+    UserService userService;
+
     @PostMapping("/api/1.0/login")
-    UserVM handleLogin(@CurrentUser User loggedInUser) {
-        return new UserVM(loggedInUser);
+    LoginVM handleLogin(@CurrentUser User loggedInUser) {
+        return issueToken(loggedInUser);
+    }
+
+    @PostMapping("/api/1.0/login/refresh")
+    LoginVM refreshLogin(@CurrentUser User loggedInUser) {
+        return issueToken(userService.getById(loggedInUser.getId()));
+    }
+
+    @PostMapping("/api/1.0/logout")
+    GenericResponse handleLogout(@CurrentUser User loggedInUser) {
+        tokenService.revoke(loggedInUser.getId());
+        return new GenericResponse("Logged out");
+    }
+
+    private LoginVM issueToken(User user) {
+        long expiresAt = tokenService.getExpiresAt();
+        return new LoginVM(user, tokenService.issue(user, expiresAt), expiresAt);
     }
 
 }
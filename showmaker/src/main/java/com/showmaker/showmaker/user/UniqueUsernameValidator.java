@@ -10,11 +10,19 @@ public class UniqueUsernameValidator implements ConstraintValidator<UniqueUserna
     @Autowired
     UserRepository userRepository;
 
+    @Autowired(required = false)
+    UsernameFilter usernameFilter;
+
     @Override
     public boolean isValid(String s, ConstraintValidatorContext constraintValidatorContext) {
-        User inDB = userRepository.findByUsername(s);
-        if (inDB == null)
+        if (usernameFilter != null && !usernameFilter.mightContain(s))
+            return true;
+
+        if (!userRepository.existsByUsername(s)) {
+            if (usernameFilter != null)
+                usernameFilter.recordFalsePositive();
             return true;
+        }
 
         return false;
     }
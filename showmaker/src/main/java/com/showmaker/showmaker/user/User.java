@@ -17,6 +17,7 @@ import java.util.List;
 
 @Data
 @Entity
+@EntityListeners(UserCacheListener.class)
 public class User implements UserDetails {
 
     private static final long serialVersionUID = 7986389567594716265L;
@@ -42,6 +43,10 @@ public class User implements UserDetails {
 
     private String image;
 
+    @JsonIgnore
+    @Column(nullable = false, columnDefinition = "integer default 0")
+    private int tokenVersion;
+
     @OneToMany(mappedBy = "user")
     private List<Show> shows;
 
@@ -0,0 +1,96 @@
+package com.showmaker.showmaker.user;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.showmaker.showmaker.configuration.AppConfiguration;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+@Component
+public class UserCache {
+
+    private final Cache<String, CachedUser> byUsername;
+
+    private final Cache<Long, CachedUser> byId;
+
+    private final AtomicLong invalidations = new AtomicLong();
+
+    public UserCache(AppConfiguration appConfiguration, MeterRegistry meterRegistry) {
+        super();
+        this.byUsername = CaffeineCacheMetrics.monitor(meterRegistry, newCache(appConfiguration), "users.byUsername");
+        this.byId = CaffeineCacheMetrics.monitor(meterRegistry, newCache(appConfiguration), "users.byId");
+    }
+
+    public User getByUsername(String username, Function<String, User> loader) {
+        CachedUser cached = byUsername.get(username, key -> {
+            long seen = invalidations.get();
+            CachedUser loaded = snapshot(loader.apply(key));
+            if (loaded != null) {
+                putIfNotInvalidated(byId, loaded.getId(), loaded, seen);
+            }
+            return loaded;
+        });
+        return cached == null ? null : cached.toUser();
+    }
+
+    public User getById(long id, Function<Long, User> loader) {
+        CachedUser cached = byId.get(id, key -> {
+            long seen = invalidations.get();
+            CachedUser loaded = snapshot(loader.apply(key));
+            if (loaded != null) {
+                putIfNotInvalidated(byUsername, loaded.getUsername(), loaded, seen);
+            }
+            return loaded;
+        });
+        return cached == null ? null : cached.toUser();
+    }
+
+    public void invalidate(User user) {
+        evict(user.getId(), user.getUsername());
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            long id = user.getId();
+            String username = user.getUsername();
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    evict(id, username);
+                }
+            });
+        }
+    }
+
+    private static CachedUser snapshot(User user) {
+        return user == null ? null : CachedUser.of(user);
+    }
+
+    // An invalidation racing the load either sees this entry or is seen by the re-check below.
+    private <K> void putIfNotInvalidated(Cache<K, CachedUser> cache, K key, CachedUser loaded, long seen) {
+        cache.put(key, loaded);
+        if (invalidations.get() != seen) {
+            cache.invalidate(key);
+        }
+    }
+
+    private void evict(long id, String username) {
+        invalidations.incrementAndGet();
+        byId.invalidate(id);
+        if (username != null) {
+            byUsername.invalidate(username);
+        }
+    }
+
+    private static <K> Cache<K, CachedUser> newCache(AppConfiguration appConfiguration) {
+        return Caffeine.newBuilder()
+                .maximumSize(appConfiguration.getUserCacheSize())
+                .expireAfterWrite(Duration.ofSeconds(appConfiguration.getUserCacheTtlSeconds()))
+                .recordStats()
+                .build();
+    }
+}
@@ -0,0 +1,32 @@
+package com.showmaker.showmaker.user;
+
+import org.springframework.beans.factory.annotation.Autowired;
+
+import javax.persistence.PostPersist;
+import javax.persistence.PostRemove;
+import javax.persistence.PostUpdate;
+
+public class UserCacheListener {
+
+    @Autowired(required = false)
+    UserCache userCache;
+
+    @Autowired(required = false)
+    UsernameFilter usernameFilter;
+
+    @PostPersist
+    public void onUserCreated(User user) {
+        if (usernameFilter != null) {
+            usernameFilter.put(user.getUsername());
+        }
+        onUserChanged(user);
+    }
+
+    @PostUpdate
+    @PostRemove
+    public void onUserChanged(User user) {
+        if (userCache != null) {
+            userCache.invalidate(user);
+        }
+    }
+}
@@ -1,24 +1,47 @@
 package com.showmaker.showmaker.user;
 
+import com.showmaker.showmaker.configuration.AppConfiguration;
+import com.showmaker.showmaker.error.BadRequestException;
+import com.showmaker.showmaker.file.UploadLimiter;
 import com.showmaker.showmaker.shared.CurrentUser;
+import com.showmaker.showmaker.shared.CursorCodec;
+import com.showmaker.showmaker.shared.CursorPage;
 import com.showmaker.showmaker.shared.GenericResponse;
 import com.showmaker.showmaker.user.vm.UserVM;
 import com.showmaker.showmaker.user.vm.UserUpdateVM;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.multipart.MultipartHttpServletRequest;
 
+import javax.servlet.http.HttpServletRequest;
 import javax.validation.Valid;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.List;
+import java.util.stream.Collectors;
 
 @RestController
 @RequestMapping("/api/1.0")
 public class UserController {
 
+    private static final CursorCodec USER_CURSOR = new CursorCodec("u1");
+
     @Autowired
     UserService userService;
 
+    @Autowired
+    UploadLimiter uploadLimiter;
+
+    @Autowired
+    AppConfiguration appConfiguration;
+
     @PostMapping("/users")
     GenericResponse createUser(@Valid @RequestBody User user) {
         userService.save(user);
@@ -26,9 +49,22 @@ public class UserController {
     }
 
     @GetMapping("/users")
-    Page<UserVM> getUsers(@CurrentUser User loggedInUser,
-            /* @PageableDefault(size = 10) */ Pageable pageable) {
-        return userService.getUsers(loggedInUser, pageable).map(UserVM::new);
+    ResponseEntity<?> getUsers(@CurrentUser User loggedInUser,
+            /* @PageableDefault(size = 10) */ Pageable pageable,
+                               @RequestParam(name = "cursor", required = false) String cursor) {
+        if (cursor != null) {
+            return ResponseEntity.ok(getUsersByCursor(loggedInUser, pageable, cursor));
+        }
+        Page<UserVM> users = userService.getUsers(loggedInUser, pageable).map(UserVM::new);
+        return ResponseEntity.ok(users);
+    }
+
+    private CursorPage<UserVM> getUsersByCursor(User loggedInUser, Pageable pageable, String cursor) {
+        long after = cursor.isEmpty() ? 0 : USER_CURSOR.decode(cursor);
+        Slice<UserProjection> slice = userService.getUsersSlice(loggedInUser, after, pageable.getPageSize());
+        List<UserVM> content = slice.getContent().stream().map(UserVM::new).collect(Collectors.toList());
+        String nextCursor = slice.hasNext() ? USER_CURSOR.encode(content.get(content.size() - 1).getId()) : null;
+        return new CursorPage<>(content, slice.getSize(), slice.hasNext(), nextCursor);
     }
 
     @GetMapping("/users/{username}")
@@ -44,4 +80,29 @@ public class UserController {
         return new UserVM(updatedUser);
     }
 
+    @PutMapping(value = "/users/{id:[0-9]+}/image",
+            consumes = {MediaType.IMAGE_PNG_VALUE, MediaType.IMAGE_JPEG_VALUE, MediaType.APPLICATION_OCTET_STREAM_VALUE})
+    @PreAuthorize("#id == principal.id")
+    UserVM updateUserImage(@PathVariable long id, HttpServletRequest request) throws IOException {
+        long maxSize = appConfiguration.getMaxProfileImageSize();
+        try (UploadLimiter.Reservation reservation = uploadLimiter.reserve(request.getContentLengthLong(), maxSize)) {
+            return new UserVM(userService.updateImage(id, request.getInputStream(), maxSize));
+        }
+    }
+
+    @PutMapping(value = "/users/{id:[0-9]+}/image", consumes = MediaType.MULTIPART_FORM_DATA_VALUE)
+    @PreAuthorize("#id == principal.id")
+    UserVM updateUserImage(@PathVariable long id, MultipartHttpServletRequest request) throws IOException {
+        long maxSize = appConfiguration.getMaxProfileImageSize();
+        try (UploadLimiter.Reservation reservation = uploadLimiter.reserve(request.getContentLengthLong(), maxSize)) {
+            MultipartFile image = request.getFile("image");
+            if (image == null) {
+                throw new BadRequestException("Missing image part");
+            }
+            try (InputStream content = image.getInputStream()) {
+                return new UserVM(userService.updateImage(id, content, maxSize));
+            }
+        }
+    }
+
 }
@@ -2,12 +2,34 @@ package com.showmaker.showmaker.user;
 
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.util.Collection;
+import java.util.List;
 
 public interface UserRepository extends JpaRepository<User, Long> {
 
     User findByUsername(String username);
 
-    Page<User> findByUsernameNot(String username, Pageable pageable);
+    boolean existsByUsername(String username);
+
+    @Query("select u.username from User u")
+    List<String> findAllUsernames();
+
+    @Query("select u.tokenVersion from User u where u.id = :id")
+    Integer findTokenVersionById(@Param("id") long id);
+
+    @Query("select distinct u.image from User u where u.image in :images")
+    List<String> findImagesIn(@Param("images") Collection<String> images);
+
+    Page<UserProjection> findByUsernameNot(String username, Pageable pageable);
+
+    Page<UserProjection> findAllBy(Pageable pageable);
+
+    Slice<UserProjection> findByIdGreaterThan(long id, Pageable pageable);
+
+    Slice<UserProjection> findByIdGreaterThanAndUsernameNot(long id, String username, Pageable pageable);
 }
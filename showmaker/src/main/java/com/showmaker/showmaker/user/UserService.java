@@ -3,12 +3,19 @@ package com.showmaker.showmaker.user;
 import com.showmaker.showmaker.error.NotFoundException;
 import com.showmaker.showmaker.file.FileService;
 import com.showmaker.showmaker.user.vm.UserUpdateVM;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
 import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.Sort;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.stereotype.Service;
 
 import java.io.IOException;
+import java.io.InputStream;
 
 @Service
 public class UserService {
@@ -16,13 +23,23 @@ public class UserService {
     UserRepository userRepository;
     PasswordEncoder passwordEncoder;
     FileService fileService;
+    UserCache userCache;
+    UsernameFilter usernameFilter;
 
-    public UserService(UserRepository userRepository,
-                       PasswordEncoder passwordEncoder, FileService fileService) {
+    public UserService(UserRepository userRepository, PasswordEncoder passwordEncoder,
+                       FileService fileService, UserCache userCache, UsernameFilter usernameFilter) {
         super();
         this.userRepository = userRepository;
         this.passwordEncoder = passwordEncoder;
         this.fileService = fileService;
+        this.userCache = userCache;
+        this.usernameFilter = usernameFilter;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    @Scheduled(initialDelay = 24 * 60 * 60 * 1000, fixedRate = 24 * 60 * 60 * 1000)
+    public void rebuildUsernameFilter() {
+        usernameFilter.rebuild(userRepository.count(), userRepository::findAllUsernames);
     }
 
     public User save(User user) {
@@ -31,21 +48,41 @@ public class UserService {
         return userRepository.save(user);
     }
 
-    public Page<User> getUsers(User loggedInUser, Pageable pageable) {
+    public Page<UserProjection> getUsers(User loggedInUser, Pageable pageable) {
         if (loggedInUser != null) {
             return userRepository.findByUsernameNot(loggedInUser.getUsername(), pageable);
         }
-        return userRepository.findAll(pageable);
+        return userRepository.findAllBy(pageable);
+    }
+
+    public Slice<UserProjection> getUsersSlice(User loggedInUser, long afterId, int size) {
+        Pageable pageable = PageRequest.of(0, size, Sort.by(Sort.Direction.ASC, "id"));
+        if (loggedInUser != null) {
+            return userRepository.findByIdGreaterThanAndUsernameNot(afterId, loggedInUser.getUsername(), pageable);
+        }
+        return userRepository.findByIdGreaterThan(afterId, pageable);
     }
 
     public User getByUsername(String username) {
-        User inDB = userRepository.findByUsername(username);
+        if (!usernameFilter.mightContain(username)) {
+            throw new NotFoundException(username + " not found");
+        }
+        User inDB = userCache.getByUsername(username, userRepository::findByUsername);
         if (inDB == null) {
+            usernameFilter.recordFalsePositive();
             throw new NotFoundException(username + " not found");
         }
         return inDB;
     }
 
+    public User getById(long id) {
+        User inDB = userCache.getById(id, key -> userRepository.findById(key).orElse(null));
+        if (inDB == null) {
+            throw new NotFoundException("user " + id + " not found");
+        }
+        return inDB;
+    }
+
     public User update(long id, UserUpdateVM userUpdateVM) {
         User inDB = userRepository.getOne(id);
         inDB.setDisplayName(userUpdateVM.getDisplayName());
@@ -62,4 +99,12 @@ public class UserService {
 
         return userRepository.save(inDB);
     }
+
+    public User updateImage(long id, InputStream image, long maxBytes) throws IOException {
+        User inDB = userRepository.getOne(id);
+        String savedImageName = fileService.saveProfileImage(image, maxBytes);
+        fileService.deleteProfileImage(inDB.getImage());
+        inDB.setImage(savedImageName);
+        return userRepository.save(inDB);
+    }
 }
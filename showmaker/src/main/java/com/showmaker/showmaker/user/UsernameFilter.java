@@ -0,0 +1,178 @@
+package com.showmaker.showmaker.user;
+
+import com.showmaker.showmaker.configuration.AppConfiguration;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Collection;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.function.Supplier;
+
+@Component
+public class UsernameFilter {
+
+    private final AppConfiguration appConfiguration;
+
+    private volatile Bits current;
+
+    private volatile Bits building;
+
+    private final Queue<String> added = new ConcurrentLinkedQueue<>();
+
+    private final Counter negatives;
+
+    private final Counter positives;
+
+    private final Counter falsePositives;
+
+    public UsernameFilter(AppConfiguration appConfiguration, MeterRegistry meterRegistry) {
+        super();
+        this.appConfiguration = appConfiguration;
+        this.negatives = checks(meterRegistry, "negative");
+        this.positives = checks(meterRegistry, "positive");
+        this.falsePositives = checks(meterRegistry, "false_positive");
+        Gauge.builder("showmaker.username.filter.expected.fpp", this, UsernameFilter::getExpectedFalsePositiveRate)
+                .description("Expected false positive rate of the username filter at its current fill")
+                .register(meterRegistry);
+        Gauge.builder("showmaker.username.filter.observed.fpp", this, UsernameFilter::getObservedFalsePositiveRate)
+                .description("Share of positive username filter answers not backed by a user")
+                .register(meterRegistry);
+    }
+
+    public void rebuild(long userCount, Supplier<Collection<String>> usernames) {
+        long expectedInsertions = Math.max(appConfiguration.getUsernameFilterExpectedInsertions(), userCount * 2);
+        Bits next = new Bits((int) Math.min(Math.max(expectedInsertions, 1), Integer.MAX_VALUE),
+                appConfiguration.getUsernameFilterFalsePositiveRate());
+        building = next;
+        for (String username : usernames.get()) {
+            next.put(username);
+        }
+        current = next;
+        building = null;
+        // users saved before the rebuild started may have committed after the snapshot was read
+        String username;
+        while ((username = added.poll()) != null) {
+            next.put(username);
+        }
+    }
+
+    public void put(String username) {
+        if (username == null) {
+            return;
+        }
+        added.add(username);
+        Bits bits = current;
+        if (bits != null) {
+            bits.put(username);
+        }
+        Bits pending = building;
+        if (pending != null) {
+            pending.put(username);
+        }
+    }
+
+    public boolean mightContain(String username) {
+        Bits bits = current;
+        if (bits == null || username == null) {
+            return true;
+        }
+        if (bits.mightContain(username)) {
+            positives.increment();
+            return true;
+        }
+        negatives.increment();
+        return false;
+    }
+
+    public void recordFalsePositive() {
+        if (current != null) {
+            falsePositives.increment();
+        }
+    }
+
+    public double getExpectedFalsePositiveRate() {
+        Bits bits = current;
+        return bits == null ? 0 : bits.expectedFalsePositiveRate();
+    }
+
+    public double getObservedFalsePositiveRate() {
+        double checked = positives.count() + negatives.count();
+        return checked == 0 ? 0 : falsePositives.count() / checked;
+    }
+
+    private static Counter checks(MeterRegistry meterRegistry, String result) {
+        return Counter.builder("showmaker.username.filter.checks").tag("result", result)
+                .description("Username existence checks answered by the username filter")
+                .register(meterRegistry);
+    }
+
+    private static final class Bits {
+
+        private final long bitCount;
+        private final int hashCount;
+        private final AtomicLongArray words;
+
+        Bits(int expectedInsertions, double falsePositiveRate) {
+            double p = Math.min(Math.max(falsePositiveRate, Double.MIN_VALUE), 0.5);
+            long bits = (long) Math.ceil(-expectedInsertions * Math.log(p) / (Math.log(2) * Math.log(2)));
+            this.words = new AtomicLongArray((int) Math.max(1, (bits + 63) >>> 6));
+            this.bitCount = words.length() * 64L;
+            this.hashCount = Math.max(1, (int) Math.round((double) bitCount / expectedInsertions * Math.log(2)));
+        }
+
+        void put(String username) {
+            long hash = hash(username);
+            int h1 = (int) hash;
+            int h2 = (int) (hash >>> 32);
+            for (int i = 1; i <= hashCount; i++) {
+                long index = ((h1 + i * h2) & Integer.MAX_VALUE) % bitCount;
+                int word = (int) (index >>> 6);
+                long mask = 1L << index;
+                long value;
+                do {
+                    value = words.get(word);
+                } while ((value & mask) == 0 && !words.compareAndSet(word, value, value | mask));
+            }
+        }
+
+        boolean mightContain(String username) {
+            long hash = hash(username);
+            int h1 = (int) hash;
+            int h2 = (int) (hash >>> 32);
+            for (int i = 1; i <= hashCount; i++) {
+                long index = ((h1 + i * h2) & Integer.MAX_VALUE) % bitCount;
+                if ((words.get((int) (index >>> 6)) & (1L << index)) == 0) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        double expectedFalsePositiveRate() {
+            long set = 0;
+            for (int i = 0; i < words.length(); i++) {
+                set += Long.bitCount(words.get(i));
+            }
+            return Math.pow((double) set / bitCount, hashCount);
+        }
+
+        private static long hash(String username) {
+            long hash = 0xcbf29ce484222325L;
+            for (byte b : username.getBytes(StandardCharsets.UTF_8)) {
+                hash ^= b;
+                hash *= 0x100000001b3L;
+            }
+            hash ^= hash >>> 33;
+            hash *= 0xff51afd7ed558ccdL;
+            hash ^= hash >>> 33;
+            hash *= 0xc4ceb9fe1a85ec53L;
+            hash ^= hash >>> 33;
+            return hash;
+        }
+    }
+}
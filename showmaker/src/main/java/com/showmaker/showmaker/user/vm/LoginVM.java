@@ -0,0 +1,21 @@
+package com.showmaker.showmaker.user.vm;
+
+import com.showmaker.showmaker.user.User;
+import lombok.Data;
+import lombok.EqualsAndHashCode;
+import lombok.NoArgsConstructor;
+
+@Data
+@EqualsAndHashCode(callSuper = true)
+@NoArgsConstructor
+public class LoginVM extends UserVM {
+
+    private String token;
+    private long expiresAt;
+
+    public LoginVM(User user, String token, long expiresAt) {
+        super(user);
+        this.setToken(token);
+        this.setExpiresAt(expiresAt);
+    }
+}
@@ -14,6 +14,6 @@ public class UserUpdateVM {
     private String displayName;
 
     @ProfileImage
-    private String image;
+    private byte[] image;
 
 }
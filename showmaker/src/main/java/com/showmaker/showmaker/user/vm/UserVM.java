@@ -1,6 +1,7 @@
 package com.showmaker.showmaker.user.vm;
 
 import com.showmaker.showmaker.user.User;
+import com.showmaker.showmaker.user.UserProjection;
 import lombok.Data;
 import lombok.NoArgsConstructor;
 
@@ -19,4 +20,15 @@ public class UserVM {
         this.setDisplayName(user.getDisplayName());
         this.setImage(user.getImage());
     }
+
+    public UserVM(UserProjection user) {
+        this(user.getId(), user.getUsername(), user.getDisplayName(), user.getImage());
+    }
+
+    public UserVM(long id, String username, String displayName, String image) {
+        this.setId(id);
+        this.setUsername(username);
+        this.setDisplayName(displayName);
+        this.setImage(image);
+    }
 }
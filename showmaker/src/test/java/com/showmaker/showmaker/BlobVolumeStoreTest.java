@@ -0,0 +1,212 @@
+package com.showmaker.showmaker;
+
+import com.showmaker.showmaker.configuration.AppConfiguration;
+import com.showmaker.showmaker.file.BlobVolumeStore;
+import com.showmaker.showmaker.file.LocalStorageBackend;
+import com.showmaker.showmaker.file.StorageBackend;
+import com.showmaker.showmaker.file.StoredObjectStream;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.apache.commons.io.FileUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class BlobVolumeStoreTest {
+
+    AppConfiguration appConfiguration;
+
+    BlobVolumeStore blobVolumeStore;
+
+    @Before
+    public void init() throws IOException {
+        appConfiguration = new AppConfiguration();
+        appConfiguration.setUploadPath("uploads-test");
+        appConfiguration.setVolumesFolder("volumes-test");
+        appConfiguration.setVolumeStorage(true);
+        blobVolumeStore = open();
+    }
+
+    @After
+    public void cleanup() throws IOException {
+        blobVolumeStore.close();
+        FileUtils.deleteDirectory(getVolumesDirectory());
+    }
+
+    @Test
+    public void get_whenBlobWasPut_returnsSameBytes() throws IOException {
+        blobVolumeStore.put("attachments", "abc", bytes("first image"));
+
+        assertThat(blobVolumeStore.get("attachments", "abc").get().getData()).isEqualTo(bytes("first image"));
+        assertThat(blobVolumeStore.contains("attachments", "abc")).isTrue();
+        assertThat(blobVolumeStore.contains("profile", "abc")).isFalse();
+    }
+
+    @Test
+    public void get_whenBlobWasDeleted_returnsEmpty() throws IOException {
+        blobVolumeStore.put("attachments", "abc", bytes("first image"));
+
+        assertThat(blobVolumeStore.delete("attachments", "abc")).isTrue();
+
+        assertThat(blobVolumeStore.get("attachments", "abc").isPresent()).isFalse();
+    }
+
+    @Test
+    public void open_whenVolumesExist_rebuildsIndexIncludingDeletes() throws IOException {
+        blobVolumeStore.put("attachments", "kept", bytes("kept image"));
+        blobVolumeStore.put("attachments", "removed", bytes("removed image"));
+        blobVolumeStore.delete("attachments", "removed");
+        blobVolumeStore.close();
+
+        blobVolumeStore = open();
+
+        assertThat(blobVolumeStore.get("attachments", "kept").get().getData()).isEqualTo(bytes("kept image"));
+        assertThat(blobVolumeStore.contains("attachments", "removed")).isFalse();
+    }
+
+    @Test
+    public void open_whenLastRecordIsTorn_keepsEarlierRecordsAndAppendsAfterThem() throws IOException {
+        blobVolumeStore.put("attachments", "complete", bytes("complete image"));
+        blobVolumeStore.put("attachments", "torn", bytes("torn image"));
+        blobVolumeStore.close();
+        File volume = getVolumesDirectory().listFiles()[0];
+        try (RandomAccessFile file = new RandomAccessFile(volume, "rw")) {
+            file.setLength(file.length() - 3);
+        }
+
+        blobVolumeStore = open();
+        blobVolumeStore.put("attachments", "after", bytes("after image"));
+
+        assertThat(blobVolumeStore.get("attachments", "complete").get().getData()).isEqualTo(bytes("complete image"));
+        assertThat(blobVolumeStore.contains("attachments", "torn")).isFalse();
+        assertThat(blobVolumeStore.get("attachments", "after").get().getData()).isEqualTo(bytes("after image"));
+    }
+
+    @Test
+    public void put_whenVolumeIsFull_rollsOverToNewVolume() throws IOException {
+        blobVolumeStore.close();
+        appConfiguration.setVolumeMaxBytes(100);
+        blobVolumeStore = open();
+
+        blobVolumeStore.put("attachments", "one", new byte[60]);
+        blobVolumeStore.put("attachments", "two", new byte[60]);
+
+        assertThat(blobVolumeStore.getVolumeCount()).isEqualTo(2);
+        assertThat(blobVolumeStore.get("attachments", "one").get().getData()).hasSize(60);
+        assertThat(blobVolumeStore.get("attachments", "two").get().getData()).hasSize(60);
+    }
+
+    @Test
+    public void compactVolumes_whenSealedVolumeIsMostlyDeleted_rewritesLiveBlobs() throws IOException {
+        blobVolumeStore.close();
+        appConfiguration.setVolumeMaxBytes(300);
+        blobVolumeStore = open();
+        blobVolumeStore.put("attachments", "live", new byte[100]);
+        blobVolumeStore.put("attachments", "dead", new byte[150]);
+        blobVolumeStore.put("attachments", "next", new byte[100]);
+        blobVolumeStore.delete("attachments", "dead");
+
+        int compacted = blobVolumeStore.compactVolumes();
+
+        assertThat(compacted).isEqualTo(1);
+        assertThat(blobVolumeStore.getDeadBytes()).isZero();
+        assertThat(blobVolumeStore.get("attachments", "live").get().getData()).hasSize(100);
+        assertThat(blobVolumeStore.contains("attachments", "dead")).isFalse();
+
+        blobVolumeStore.close();
+        blobVolumeStore = open();
+        assertThat(blobVolumeStore.get("attachments", "live").get().getData()).hasSize(100);
+        assertThat(blobVolumeStore.contains("attachments", "dead")).isFalse();
+    }
+
+    @Test
+    public void compactVolumes_whenNoOlderVolumeCanHoldDeletedBlob_dropsTombstone() throws IOException {
+        blobVolumeStore.close();
+        appConfiguration.setVolumeMaxBytes(300);
+        blobVolumeStore = open();
+        blobVolumeStore.put("attachments", "dead", new byte[100]);
+        blobVolumeStore.delete("attachments", "dead");
+        blobVolumeStore.put("attachments", "next", new byte[100]);
+
+        int compacted = blobVolumeStore.compactVolumes();
+
+        assertThat(compacted).isEqualTo(1);
+        assertThat(blobVolumeStore.getVolumeCount()).isEqualTo(1);
+        blobVolumeStore.close();
+        blobVolumeStore = open();
+        assertThat(blobVolumeStore.contains("attachments", "dead")).isFalse();
+        assertThat(blobVolumeStore.get("attachments", "next").get().getData()).hasSize(100);
+    }
+
+    @Test
+    public void compactVolumes_whenOlderVolumeHoldsDeletedBlob_keepsTombstone() throws IOException {
+        blobVolumeStore.close();
+        appConfiguration.setVolumeMaxBytes(400);
+        blobVolumeStore = open();
+        blobVolumeStore.put("attachments", "old", new byte[100]);
+        blobVolumeStore.put("attachments", "pad", new byte[200]);
+        blobVolumeStore.put("attachments", "gone", new byte[100]);
+        blobVolumeStore.delete("attachments", "old");
+        blobVolumeStore.delete("attachments", "gone");
+        blobVolumeStore.put("attachments", "next", new byte[200]);
+
+        int compacted = blobVolumeStore.compactVolumes();
+
+        assertThat(compacted).isEqualTo(1);
+        blobVolumeStore.close();
+        blobVolumeStore = open();
+        assertThat(blobVolumeStore.contains("attachments", "old")).isFalse();
+        assertThat(blobVolumeStore.contains("attachments", "gone")).isFalse();
+        assertThat(blobVolumeStore.get("attachments", "pad").get().getData()).hasSize(200);
+    }
+
+    @Test
+    public void accepts_whenBlobIsLargerThanLimit_returnsFalse() {
+        appConfiguration.setVolumeBlobMaxBytes(10);
+
+        assertThat(blobVolumeStore.accepts(10)).isTrue();
+        assertThat(blobVolumeStore.accepts(11)).isFalse();
+    }
+
+    @Test
+    public void get_whenBlobIsPackedBehindLocalBackend_returnsContentWithoutLocalFile() throws IOException {
+        blobVolumeStore.put("attachments", "abc", bytes("packed image"));
+        LocalStorageBackend storageBackend = new LocalStorageBackend(appConfiguration, blobVolumeStore);
+
+        StoredObjectStream stored = storageBackend.get("attachments", "abc").get();
+
+        assertThat(stored.getLength()).isEqualTo(bytes("packed image").length);
+        assertThat(stored.getContent()).hasSameContentAs(new ByteArrayInputStream(bytes("packed image")));
+        assertThat(storageBackend.getLocalFile("attachments", "abc")).isEmpty();
+    }
+
+    @Test
+    public void list_whenBlobsArePacked_returnsNamesOfFolderOnly() throws IOException {
+        blobVolumeStore.put("attachments", "abc", bytes("packed image"));
+        blobVolumeStore.put("profile", "def", bytes("packed avatar"));
+
+        assertThat(blobVolumeStore.list("attachments")).containsExactly("abc");
+    }
+
+    private BlobVolumeStore open() throws IOException {
+        BlobVolumeStore store = new BlobVolumeStore(appConfiguration, new SimpleMeterRegistry());
+        store.open();
+        return store;
+    }
+
+    private File getVolumesDirectory() {
+        return Paths.get(appConfiguration.getUploadPath(), appConfiguration.getVolumesFolder()).toFile();
+    }
+
+    private byte[] bytes(String value) {
+        return value.getBytes(StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,64 @@
+package com.showmaker.showmaker;
+
+import com.showmaker.showmaker.file.BlurHash;
+import org.junit.Test;
+
+import java.awt.image.BufferedImage;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class BlurHashTest {
+
+    @Test
+    public void encode_whenFourByThreeComponents_returnsTwentyEightCharacters() {
+        String hash = BlurHash.encode(solid(40, 30, 0x336699), 4, 3);
+
+        assertThat(hash).hasSize(28);
+        assertThat(hash).startsWith("L");
+    }
+
+    @Test
+    public void encode_whenColoursDiffer_returnsDifferentHashes() {
+        assertThat(BlurHash.encode(solid(40, 30, 0x336699), 4, 3))
+                .isNotEqualTo(BlurHash.encode(solid(40, 30, 0x996633), 4, 3));
+    }
+
+    @Test
+    public void encode_whenComponentsChange_encodesSizeFlag() {
+        BufferedImage image = solid(10, 10, 0xffffff);
+
+        assertThat(BlurHash.encode(image, 3, 4)).startsWith("T");
+        assertThat(BlurHash.encode(image, 1, 1)).hasSize(6);
+    }
+
+    @Test
+    public void encode_whenImageHasSharpEdge_encodesLargerMaximumThanSolidImage() {
+        BufferedImage image = new BufferedImage(32, 32, BufferedImage.TYPE_INT_RGB);
+        for (int x = 0; x < 32; x++) {
+            for (int y = 0; y < 32; y++) {
+                image.setRGB(x, y, x < 16 ? 0x000000 : 0xffffff);
+            }
+        }
+
+        String edge = BlurHash.encode(image, 4, 3);
+        String solid = BlurHash.encode(solid(32, 32, 0x808080), 4, 3);
+
+        String characters = "0123456789ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz#$%*+,-.:;=?@[]^_{|}~";
+        assertThat(characters.indexOf(edge.charAt(1))).isGreaterThan(characters.indexOf(solid.charAt(1)));
+    }
+
+    @Test
+    public void averageColor_whenImageIsSolidColour_returnsThatColour() {
+        assertThat(BlurHash.averageColor(solid(5, 5, 0x336699))).isEqualTo("#336699");
+    }
+
+    private BufferedImage solid(int width, int height, int rgb) {
+        BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                image.setRGB(x, y, rgb);
+            }
+        }
+        return image;
+    }
+}
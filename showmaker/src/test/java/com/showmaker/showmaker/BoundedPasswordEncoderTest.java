@@ -0,0 +1,78 @@
+package com.showmaker.showmaker;
+
+import com.showmaker.showmaker.configuration.AppConfiguration;
+import com.showmaker.showmaker.configuration.BoundedPasswordEncoder;
+import com.showmaker.showmaker.error.ServiceUnavailableException;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class BoundedPasswordEncoderTest {
+
+    BoundedPasswordEncoder passwordEncoder;
+
+    MeterRegistry meterRegistry;
+
+    @Before
+    public void init() {
+        AppConfiguration appConfiguration = new AppConfiguration();
+        appConfiguration.setPasswordHashThreads(1);
+        appConfiguration.setPasswordHashQueueCapacity(1);
+        appConfiguration.setPasswordHashTargetMillis(1);
+        meterRegistry = new SimpleMeterRegistry();
+        passwordEncoder = new BoundedPasswordEncoder(appConfiguration, meterRegistry);
+    }
+
+    @After
+    public void cleanup() {
+        passwordEncoder.shutdown();
+    }
+
+    @Test
+    public void encode_whenPasswordIsEncoded_matchesRawPassword() {
+        String hash = passwordEncoder.encode("P4ssword");
+        assertThat(passwordEncoder.matches("P4ssword", hash)).isTrue();
+        assertThat(passwordEncoder.matches("wrong", hash)).isFalse();
+    }
+
+    @Test
+    public void getStrength_whenTargetIsBelowMinimumCost_returnsDefaultBCryptStrength() {
+        assertThat(passwordEncoder.getStrength()).isEqualTo(10);
+    }
+
+    @Test
+    public void encode_whenQueueIsFull_rejectsWithServiceUnavailable() throws InterruptedException {
+        ExecutorService callers = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<String>> results = new ArrayList<>();
+            for (int i = 0; i < 8; i++) {
+                results.add(callers.submit(() -> passwordEncoder.encode("P4ssword")));
+            }
+            int rejectedCalls = 0;
+            for (Future<String> result : results) {
+                try {
+                    result.get();
+                } catch (ExecutionException e) {
+                    assertThat(e.getCause()).isInstanceOf(ServiceUnavailableException.class);
+                    rejectedCalls++;
+                }
+            }
+            assertThat(rejectedCalls).isGreaterThan(0);
+            assertThat(meterRegistry.get("showmaker.password.hash.rejected").counter().count())
+                    .isEqualTo(rejectedCalls);
+        } finally {
+            callers.shutdownNow();
+        }
+    }
+}
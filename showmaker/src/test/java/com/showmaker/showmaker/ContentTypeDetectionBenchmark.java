@@ -0,0 +1,67 @@
+package com.showmaker.showmaker;
+
+import com.showmaker.showmaker.file.ImageTypeDetector;
+import org.apache.commons.io.FileUtils;
+import org.apache.tika.Tika;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.core.io.ClassPathResource;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ContentTypeDetectionBenchmark {
+
+    private static final int SNIFF_BYTES = 8 * 1024;
+
+    @Param({"test-png.png", "test-jpg.jpg", "test-gif.gif", "test-txt.txt"})
+    String fileName;
+
+    byte[] head;
+
+    Tika tika;
+
+    @Setup
+    public void setup() throws IOException {
+        byte[] file = FileUtils.readFileToByteArray(new ClassPathResource(fileName).getFile());
+        head = Arrays.copyOf(file, Math.min(file.length, SNIFF_BYTES));
+        tika = new Tika();
+    }
+
+    @Benchmark
+    public String tika() {
+        return tika.detect(head);
+    }
+
+    @Benchmark
+    public String signatureTable() {
+        String fileType = ImageTypeDetector.detect(head);
+        return fileType != null ? fileType : tika.detect(head);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(ContentTypeDetectionBenchmark.class.getSimpleName())
+                .addProfiler("gc")
+                .build()).run();
+    }
+}
@@ -2,16 +2,20 @@ package com.showmaker.showmaker;
 
 import com.showmaker.showmaker.file.FileAttachment;
 import com.showmaker.showmaker.file.FileAttachmentRepository;
+import com.showmaker.showmaker.file.FileAttachmentVM;
+import com.showmaker.showmaker.file.ImagePlaceholder;
 import com.showmaker.showmaker.show.Show;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
 import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.test.context.ActiveProfiles;
 import org.springframework.test.context.junit4.SpringRunner;
 
 import java.time.LocalDateTime;
+import java.util.Arrays;
 import java.util.List;
 
 import static org.assertj.core.api.Assertions.assertThat;
@@ -72,6 +76,101 @@ public class FileAttachmentRepositoryTest {
         assertThat(attachments.size()).isEqualTo(1);
     }
 
+    @Test
+    public void updateImage_whenAttachmentExists_storesRenditionsAndPlaceholder() {
+        FileAttachment attachment = getImageAttachment("image-1");
+        testEntityManager.persist(attachment);
+
+        fileAttachmentRepository.updateImage("image-1", "160,320", 800, 600, "#112233", "LKO2?U%2Tw=w]~RBVZRi};RPxuwH");
+        testEntityManager.clear();
+
+        FileAttachment inDB = fileAttachmentRepository.findById(attachment.getId()).get();
+        assertThat(inDB.getRenditions()).isEqualTo("160,320");
+        assertThat(inDB.getPlaceholder())
+                .isEqualTo(new ImagePlaceholder(800, 600, "#112233", "LKO2?U%2Tw=w]~RBVZRi};RPxuwH"));
+    }
+
+    @Test
+    public void findForPlaceholderBackfill_whenSomeImagesHavePlaceholder_returnsOnlyImagesWithout() {
+        FileAttachment withPlaceholder = getImageAttachment("image-1");
+        withPlaceholder.setPlaceholder(new ImagePlaceholder(10, 10, "#000000", "00"));
+        testEntityManager.persist(withPlaceholder);
+        FileAttachment withoutPlaceholder = testEntityManager.persist(getImageAttachment("image-2"));
+        FileAttachment document = getImageAttachment("document");
+        document.setFileType("application/pdf");
+        testEntityManager.persist(document);
+
+        List<FileAttachment> attachments = fileAttachmentRepository
+                .findByIdGreaterThanAndFileTypeStartingWithAndPlaceholderBlurHashIsNullOrderById(
+                        0, "image/", PageRequest.of(0, 10));
+
+        assertThat(attachments).extracting(FileAttachment::getId).containsExactly(withoutPlaceholder.getId());
+    }
+
+    @Test
+    public void findForPlaceholderBackfill_whenImageWasMarkedUnreadable_skipsIt() {
+        FileAttachment unreadable = testEntityManager.persist(getImageAttachment("image-1"));
+        FileAttachment pending = testEntityManager.persist(getImageAttachment("image-2"));
+        fileAttachmentRepository.updateImage("image-1", "", null, null, null, ImagePlaceholder.UNREADABLE);
+        testEntityManager.clear();
+
+        List<FileAttachment> attachments = fileAttachmentRepository
+                .findByIdGreaterThanAndFileTypeStartingWithAndPlaceholderBlurHashIsNullOrderById(
+                        0, "image/", PageRequest.of(0, 10));
+
+        assertThat(attachments).extracting(FileAttachment::getId).containsExactly(pending.getId());
+        FileAttachment inDB = testEntityManager.find(FileAttachment.class, unreadable.getId());
+        assertThat(new FileAttachmentVM(inDB).getPlaceholder()).isNull();
+    }
+
+    @Test
+    public void findOrphansAfterId_whenMoreOrphansThanPage_returnsNextPageInIdOrder() {
+        FileAttachment first = testEntityManager.persist(getOneHourOldFileAttachment());
+        FileAttachment second = testEntityManager.persist(getOneHourOldFileAttachment());
+        FileAttachment third = testEntityManager.persist(getOneHourOldFileAttachment());
+        Show show = testEntityManager.persist(TestUtil.createValidShow());
+        testEntityManager.persist(getOldFileAttachmentWithShow(show));
+        LocalDateTime oneHourAgo = LocalDateTime.now().minusHours(1);
+
+        List<FileAttachment> attachments = fileAttachmentRepository
+                .findByIdGreaterThanAndDateBeforeAndShowIsNullOrderById(
+                        first.getId(), oneHourAgo, PageRequest.of(0, 5));
+
+        assertThat(attachments).extracting(FileAttachment::getId).containsExactly(second.getId(), third.getId());
+    }
+
+    @Test
+    public void deleteOrphansByIdIn_whenSomeAttachmentsHaveShow_deletesOnlyOrphans() {
+        FileAttachment orphan = testEntityManager.persist(getOneHourOldFileAttachment());
+        Show show = testEntityManager.persist(TestUtil.createValidShow());
+        FileAttachment linked = testEntityManager.persist(getOldFileAttachmentWithShow(show));
+
+        int deleted = fileAttachmentRepository.deleteOrphansByIdIn(Arrays.asList(orphan.getId(), linked.getId()));
+        testEntityManager.clear();
+
+        assertThat(deleted).isEqualTo(1);
+        assertThat(fileAttachmentRepository.findById(orphan.getId())).isEmpty();
+        assertThat(fileAttachmentRepository.findById(linked.getId())).isPresent();
+    }
+
+    @Test
+    public void findNamesIn_whenSomeNamesHaveAttachments_returnsOnlyThoseNames() {
+        testEntityManager.persist(getImageAttachment("image-1"));
+        testEntityManager.persist(getImageAttachment("image-1"));
+        testEntityManager.persist(getImageAttachment("image-2"));
+
+        List<String> names = fileAttachmentRepository.findNamesIn(Arrays.asList("image-1", "image-2", "stray"));
+
+        assertThat(names).containsExactlyInAnyOrder("image-1", "image-2");
+    }
+
+    private FileAttachment getImageAttachment(String name) {
+        FileAttachment fileAttachment = getFileAttachmentWithinOneHour();
+        fileAttachment.setName(name);
+        fileAttachment.setFileType("image/png");
+        return fileAttachment;
+    }
+
     private FileAttachment getOneHourOldFileAttachment() {
         LocalDateTime date = LocalDateTime.now().minusHours(1).minusSeconds(1);
         FileAttachment fileAttachment = new FileAttachment();
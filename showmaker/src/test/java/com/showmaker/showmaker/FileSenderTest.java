@@ -0,0 +1,243 @@
+package com.showmaker.showmaker;
+
+import com.showmaker.showmaker.configuration.AppConfiguration;
+import com.showmaker.showmaker.error.ServiceUnavailableException;
+import com.showmaker.showmaker.file.FileSender;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.http.CacheControl;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import javax.servlet.ServletOutputStream;
+import javax.servlet.WriteListener;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class FileSenderTest {
+
+    AppConfiguration appConfiguration;
+
+    FileSender fileSender;
+
+    Path file;
+
+    byte[] content;
+
+    @Before
+    public void init() throws IOException {
+        appConfiguration = new AppConfiguration();
+        appConfiguration.setLargeTransferBytes(100);
+        appConfiguration.setMaxLargeTransfers(1);
+        fileSender = new FileSender(appConfiguration, new SimpleMeterRegistry());
+        content = new byte[1000];
+        for (int i = 0; i < content.length; i++) {
+            content[i] = (byte) i;
+        }
+        file = Files.createTempFile("file-sender", ".bin");
+        Files.write(file, content);
+    }
+
+    @After
+    public void cleanup() throws IOException {
+        Files.deleteIfExists(file);
+    }
+
+    @Test
+    public void send_whenRangeIsRequested_sendsPartialContent() throws IOException {
+        MockHttpServletRequest request = request("bytes=10-19");
+        MockHttpServletResponse response = new MockHttpServletResponse();
+
+        long sent = send(request, response);
+
+        assertThat(sent).isEqualTo(10);
+        assertThat(response.getStatus()).isEqualTo(206);
+        assertThat(response.getHeader("Content-Range")).isEqualTo("bytes 10-19/1000");
+        assertThat(response.getContentLengthLong()).isEqualTo(10);
+        assertThat(response.getContentAsByteArray()).isEqualTo(Arrays.copyOfRange(content, 10, 20));
+    }
+
+    @Test
+    public void send_whenSuffixRangeIsRequested_sendsLastBytes() throws IOException {
+        MockHttpServletResponse response = new MockHttpServletResponse();
+
+        send(request("bytes=-5"), response);
+
+        assertThat(response.getHeader("Content-Range")).isEqualTo("bytes 995-999/1000");
+        assertThat(response.getContentAsByteArray()).isEqualTo(Arrays.copyOfRange(content, 995, 1000));
+    }
+
+    @Test
+    public void send_whenRangeStartsAfterEnd_respondsRangeNotSatisfiable() throws IOException {
+        MockHttpServletResponse response = new MockHttpServletResponse();
+
+        send(request("bytes=1000-"), response);
+
+        assertThat(response.getStatus()).isEqualTo(416);
+        assertThat(response.getHeader("Content-Range")).isEqualTo("bytes */1000");
+        assertThat(response.getContentAsByteArray()).isEmpty();
+    }
+
+    @Test
+    public void send_whenRangeNumberOverflows_respondsRangeNotSatisfiable() throws IOException {
+        MockHttpServletResponse response = new MockHttpServletResponse();
+
+        send(request("bytes=99999999999999999999-"), response);
+
+        assertThat(response.getStatus()).isEqualTo(416);
+        assertThat(response.getHeader("Content-Range")).isEqualTo("bytes */1000");
+    }
+
+    @Test
+    public void send_whenIfRangeDoesNotMatchEtag_sendsWholeFile() throws IOException {
+        MockHttpServletRequest request = request("bytes=10-19");
+        request.addHeader("If-Range", "\"other\"");
+        MockHttpServletResponse response = new MockHttpServletResponse();
+
+        send(request, response);
+
+        assertThat(response.getStatus()).isEqualTo(200);
+        assertThat(response.getHeader("Accept-Ranges")).isEqualTo("bytes");
+        assertThat(response.getContentAsByteArray()).isEqualTo(content);
+    }
+
+    @Test
+    public void send_whenIfRangeMatchesEtag_sendsPartialContent() throws IOException {
+        MockHttpServletRequest request = request("bytes=0-0");
+        request.addHeader("If-Range", "\"file\"");
+        MockHttpServletResponse response = new MockHttpServletResponse();
+
+        send(request, response);
+
+        assertThat(response.getStatus()).isEqualTo(206);
+        assertThat(response.getContentAsByteArray()).containsExactly(content[0]);
+    }
+
+    @Test
+    public void send_whenContainerSupportsSendfile_handsFileOverWithoutWritingBody() throws IOException {
+        MockHttpServletRequest request = request("bytes=100-");
+        request.setAttribute("org.apache.tomcat.sendfile.support", Boolean.TRUE);
+        MockHttpServletResponse response = new MockHttpServletResponse();
+
+        send(request, response);
+
+        assertThat(request.getAttribute("org.apache.tomcat.sendfile.filename"))
+                .isEqualTo(file.toAbsolutePath().toString());
+        assertThat(request.getAttribute("org.apache.tomcat.sendfile.start")).isEqualTo(100L);
+        assertThat(request.getAttribute("org.apache.tomcat.sendfile.end")).isEqualTo(1000L);
+        assertThat(response.getContentLengthLong()).isEqualTo(900);
+        assertThat(response.getContentAsByteArray()).isEmpty();
+    }
+
+    @Test
+    public void send_whenLargeTransferLimitIsReached_throwsServiceUnavailable() throws Exception {
+        CountDownLatch writing = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        CompletableFuture<Long> first = CompletableFuture.supplyAsync(() -> {
+            try {
+                return send(request(null), new BlockingResponse(writing, release));
+            } catch (IOException e) {
+                throw new RuntimeException(e);
+            }
+        });
+        assertThat(writing.await(5, TimeUnit.SECONDS)).isTrue();
+        try {
+            send(request(null), new MockHttpServletResponse());
+            throw new AssertionError("second large transfer was not rejected");
+        } catch (ServiceUnavailableException e) {
+            assertThat(e.getMessage()).contains("Too many downloads");
+        } finally {
+            release.countDown();
+        }
+        assertThat(first.get(5, TimeUnit.SECONDS)).isEqualTo(1000);
+
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        send(request(null), response);
+        assertThat(response.getContentAsByteArray()).isEqualTo(content);
+    }
+
+    @Test
+    public void send_whenTransferIsSmall_ignoresLargeTransferLimit() throws Exception {
+        CountDownLatch writing = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        CompletableFuture.runAsync(() -> {
+            try {
+                send(request(null), new BlockingResponse(writing, release));
+            } catch (IOException e) {
+                throw new RuntimeException(e);
+            }
+        });
+        assertThat(writing.await(5, TimeUnit.SECONDS)).isTrue();
+        try {
+            MockHttpServletResponse response = new MockHttpServletResponse();
+            send(request("bytes=0-9"), response);
+            assertThat(response.getStatus()).isEqualTo(206);
+        } finally {
+            release.countDown();
+        }
+    }
+
+    private long send(MockHttpServletRequest request, MockHttpServletResponse response) throws IOException {
+        return fileSender.send(file, "\"file\"", "application/octet-stream", CacheControl.noCache(),
+                request, response);
+    }
+
+    private MockHttpServletRequest request(String range) {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/images/attachments/file");
+        if (range != null) {
+            request.addHeader("Range", range);
+        }
+        return request;
+    }
+
+    static class BlockingResponse extends MockHttpServletResponse {
+
+        private final CountDownLatch writing;
+
+        private final CountDownLatch release;
+
+        BlockingResponse(CountDownLatch writing, CountDownLatch release) {
+            this.writing = writing;
+            this.release = release;
+        }
+
+        @Override
+        public ServletOutputStream getOutputStream() {
+            return new ServletOutputStream() {
+                @Override
+                public boolean isReady() {
+                    return true;
+                }
+
+                @Override
+                public void setWriteListener(WriteListener writeListener) {
+                }
+
+                @Override
+                public void write(int b) throws IOException {
+                    write(new byte[]{(byte) b}, 0, 1);
+                }
+
+                @Override
+                public void write(byte[] data, int offset, int length) throws IOException {
+                    writing.countDown();
+                    try {
+                        release.await(5, TimeUnit.SECONDS);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        throw new IOException(e);
+                    }
+                }
+            };
+        }
+    }
+}
@@ -1,9 +1,18 @@
 package com.showmaker.showmaker;
 
 import com.showmaker.showmaker.configuration.AppConfiguration;
+import com.showmaker.showmaker.error.PayloadTooLargeException;
+import com.showmaker.showmaker.file.BlobVolumeStore;
 import com.showmaker.showmaker.file.FileAttachment;
 import com.showmaker.showmaker.file.FileAttachmentRepository;
 import com.showmaker.showmaker.file.FileService;
+import com.showmaker.showmaker.file.ImageCache;
+import com.showmaker.showmaker.file.ImageRenditionService;
+import com.showmaker.showmaker.file.LocalStorageBackend;
+import com.showmaker.showmaker.file.StorageBackend;
+import com.showmaker.showmaker.file.StoredFileRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.apache.commons.codec.digest.DigestUtils;
 import org.apache.commons.io.FileUtils;
 import org.junit.After;
 import org.junit.Before;
@@ -12,15 +21,24 @@ import org.junit.runner.RunWith;
 import org.mockito.Mockito;
 import org.springframework.boot.test.mock.mockito.MockBean;
 import org.springframework.core.io.ClassPathResource;
+import org.springframework.data.domain.Pageable;
+import org.springframework.mock.web.MockMultipartFile;
 import org.springframework.test.context.ActiveProfiles;
 import org.springframework.test.context.junit4.SpringRunner;
 
 import java.io.File;
+import java.io.FileInputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Path;
 import java.time.LocalDateTime;
 import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.stream.Collectors;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.fail;
 
 @RunWith(SpringRunner.class)
 @ActiveProfiles("test")
@@ -30,15 +48,25 @@ public class FileServiceTest {
 
     AppConfiguration appConfiguration;
 
+    ImageCache imageCache;
+
     @MockBean
     FileAttachmentRepository fileAttachmentRepository;
 
+    @MockBean
+    StoredFileRepository storedFileRepository;
+
     @Before
     public void init() {
         appConfiguration = new AppConfiguration();
         appConfiguration.setUploadPath("uploads-test");
+        imageCache = new ImageCache(appConfiguration, new SimpleMeterRegistry());
 
-        fileService = new FileService(appConfiguration, fileAttachmentRepository);
+        fileService = new FileService(appConfiguration, fileAttachmentRepository,
+                Mockito.mock(ImageRenditionService.class), storedFileRepository,
+                new LocalStorageBackend(appConfiguration,
+                        new BlobVolumeStore(appConfiguration, new SimpleMeterRegistry())),
+                imageCache, new SimpleMeterRegistry());
 
         new File(appConfiguration.getUploadPath()).mkdir();
         new File(appConfiguration.getFullProfileImagesPath()).mkdir();
@@ -67,12 +95,7 @@ public class FileServiceTest {
         File target = new File(filePath);
         FileUtils.copyFile(source, target);
 
-        FileAttachment fileAttachment = new FileAttachment();
-        fileAttachment.setId(5);
-        fileAttachment.setName(fileName);
-
-        Mockito.when(fileAttachmentRepository.findByDateBeforeAndShowIsNull(Mockito.any(LocalDateTime.class)))
-                .thenReturn(Arrays.asList(fileAttachment));
+        mockOrphans(attachment(5, fileName));
         fileService.cleanupStorage();
         File storedImage = new File(filePath);
         assertThat(storedImage.exists()).isFalse();
@@ -87,14 +110,237 @@ public class FileServiceTest {
         File target = new File(filePath);
         FileUtils.copyFile(source, target);
 
-        FileAttachment fileAttachment = new FileAttachment();
-        fileAttachment.setId(5);
-        fileAttachment.setName(fileName);
+        mockOrphans(attachment(5, fileName));
+        fileService.cleanupStorage();
+        Mockito.verify(fileAttachmentRepository).deleteOrphansByIdIn(Arrays.asList(5L));
+
+    }
+
+    @Test
+    public void cleanupStorage_whenOrphansSpanSeveralBatches_deletesEachBatchInBulk() throws IOException {
+        appConfiguration.setCleanupBatchSize(2);
+        String[] names = {"orphan-1", "orphan-2", "orphan-3"};
+        File source = new ClassPathResource("profile-icon.png").getFile();
+        for (String name : names) {
+            FileUtils.copyFile(source, new File(appConfiguration.getFullAttachmentsPath() + "/" + name));
+        }
+        mockOrphans(attachment(1, names[0]), attachment(2, names[1]), attachment(3, names[2]));
+
+        int processed = fileService.cleanupStorage();
+
+        assertThat(processed).isEqualTo(3);
+        assertThat(new File(appConfiguration.getFullAttachmentsPath()).list()).isEmpty();
+        Mockito.verify(fileAttachmentRepository).deleteOrphansByIdIn(Arrays.asList(1L, 2L));
+        Mockito.verify(fileAttachmentRepository).deleteOrphansByIdIn(Arrays.asList(3L));
+        Mockito.verify(fileAttachmentRepository, Mockito.never()).deleteById(Mockito.anyLong());
+    }
+
+    @Test
+    public void cleanupStorage_whenAttachmentIsLinkedBeforeDelete_keepsItsFile() throws IOException {
+        File target = new File(appConfiguration.getFullAttachmentsPath() + "/linked-file");
+        FileUtils.copyFile(new ClassPathResource("profile-icon.png").getFile(), target);
+        FileAttachment linked = attachment(5, "linked-file");
+        mockOrphans(linked);
+        Mockito.when(fileAttachmentRepository.deleteOrphansByIdIn(Mockito.anyCollection())).thenReturn(0);
+        Mockito.when(fileAttachmentRepository.findAllById(Mockito.anyIterable()))
+                .thenReturn(Collections.singletonList(linked));
 
-        Mockito.when(fileAttachmentRepository.findByDateBeforeAndShowIsNull(Mockito.any(LocalDateTime.class)))
-                .thenReturn(Arrays.asList(fileAttachment));
         fileService.cleanupStorage();
-        Mockito.verify(fileAttachmentRepository).deleteById(5L);
 
+        assertThat(target.exists()).isTrue();
+    }
+
+    private void mockOrphans(FileAttachment... orphans) {
+        Mockito.when(fileAttachmentRepository.findByIdGreaterThanAndDateBeforeAndShowIsNullOrderById(
+                Mockito.anyLong(), Mockito.any(LocalDateTime.class), Mockito.any(Pageable.class)))
+                .thenAnswer(invocation -> {
+                    long after = invocation.getArgument(0);
+                    Pageable pageable = invocation.getArgument(2);
+                    return Arrays.stream(orphans)
+                            .filter(orphan -> orphan.getId() > after)
+                            .limit(pageable.getPageSize())
+                            .collect(Collectors.toList());
+                });
+        Mockito.when(fileAttachmentRepository.deleteOrphansByIdIn(Mockito.anyCollection()))
+                .thenAnswer(invocation -> ((Collection<?>) invocation.getArgument(0)).size());
+    }
+
+    private FileAttachment attachment(long id, String name) {
+        FileAttachment fileAttachment = new FileAttachment();
+        fileAttachment.setId(id);
+        fileAttachment.setName(name);
+        return fileAttachment;
+    }
+
+    @Test
+    public void saveAttachment_whenStreamIsProvided_storesFileWithDetectedType() throws IOException {
+        Mockito.when(fileAttachmentRepository.save(Mockito.any(FileAttachment.class)))
+                .thenAnswer(invocation -> invocation.getArgument(0));
+        File source = new ClassPathResource("profile-icon.png").getFile();
+        FileAttachment saved;
+        try (InputStream content = new FileInputStream(source)) {
+            saved = fileService.saveAttachment(content, source.length());
+        }
+        File stored = new File(appConfiguration.getFullAttachmentsPath() + "/" + saved.getName());
+        assertThat(saved.getFileType()).isEqualTo("image/png");
+        assertThat(FileUtils.contentEquals(source, stored)).isTrue();
+    }
+
+    @Test
+    public void saveAttachment_whenStreamIsLargerThanLimit_removesPartialFile() throws IOException {
+        File source = new ClassPathResource("profile-icon.png").getFile();
+        try (InputStream content = new FileInputStream(source)) {
+            fileService.saveAttachment(content, source.length() - 1);
+            fail("expected PayloadTooLargeException");
+        } catch (PayloadTooLargeException e) {
+            assertThat(new File(appConfiguration.getFullAttachmentsPath()).list()).isEmpty();
+        }
+    }
+
+    @Test
+    public void saveAttachment_whenMultipartCannotBeRead_savesNoAttachment() throws IOException {
+        MockMultipartFile file = Mockito.spy(new MockMultipartFile("file", new byte[0]));
+        Mockito.doThrow(new IOException("client aborted")).when(file).getInputStream();
+        try {
+            fileService.saveAttachment(file);
+            fail("expected IOException");
+        } catch (IOException e) {
+            Mockito.verify(fileAttachmentRepository, Mockito.never()).save(Mockito.any(FileAttachment.class));
+        }
+    }
+
+    @Test
+    public void saveAttachment_whenSameContentIsUploadedTwice_storesOneFileNamedByContentHash() throws IOException {
+        Mockito.when(fileAttachmentRepository.save(Mockito.any(FileAttachment.class)))
+                .thenAnswer(invocation -> invocation.getArgument(0));
+        File source = new ClassPathResource("profile-icon.png").getFile();
+
+        FileAttachment first = saveAttachment(source);
+        String path = appConfiguration.getAttachmentsFolder() + "/" + first.getName();
+        Mockito.when(storedFileRepository.incrementRefCount(path)).thenReturn(1);
+        FileAttachment second = saveAttachment(source);
+
+        assertThat(second.getName()).isEqualTo(first.getName());
+        assertThat(first.getName()).isEqualTo(DigestUtils.sha256Hex(FileUtils.readFileToByteArray(source)));
+        assertThat(new File(appConfiguration.getFullAttachmentsPath()).list()).containsExactly(first.getName());
+        Mockito.verify(storedFileRepository).insertFirstReference(path);
+        Mockito.verify(storedFileRepository, Mockito.times(2)).incrementRefCount(path);
+    }
+
+    @Test
+    public void saveAttachment_whenStorageWriteFails_doesNotCountReference() throws IOException {
+        StorageBackend storageBackend = Mockito.mock(StorageBackend.class);
+        Mockito.when(storageBackend.exists(Mockito.anyString(), Mockito.anyString())).thenReturn(false);
+        Mockito.doThrow(new IOException("disk full")).when(storageBackend)
+                .put(Mockito.anyString(), Mockito.anyString(), Mockito.any(Path.class));
+        fileService = new FileService(appConfiguration, fileAttachmentRepository,
+                Mockito.mock(ImageRenditionService.class), storedFileRepository, storageBackend, imageCache,
+                new SimpleMeterRegistry());
+        File source = new ClassPathResource("profile-icon.png").getFile();
+
+        try (InputStream content = new FileInputStream(source)) {
+            fileService.saveAttachment(content, source.length());
+            fail("expected IOException");
+        } catch (IOException e) {
+            Mockito.verify(storedFileRepository, Mockito.never()).incrementRefCount(Mockito.anyString());
+            Mockito.verify(storedFileRepository, Mockito.never()).insertFirstReference(Mockito.anyString());
+            assertThat(new File(appConfiguration.getFullAttachmentsPath()).list()).isEmpty();
+        }
+    }
+
+    @Test
+    public void deleteAttachmentImage_whenFileHasOtherReferences_keepsFile() throws IOException {
+        String fileName = "shared-file";
+        File target = new File(appConfiguration.getFullAttachmentsPath() + "/" + fileName);
+        FileUtils.copyFile(new ClassPathResource("profile-icon.png").getFile(), target);
+        String path = appConfiguration.getAttachmentsFolder() + "/" + fileName;
+        Mockito.when(storedFileRepository.decrementRefCount(path)).thenReturn(1);
+        Mockito.when(storedFileRepository.deleteUnreferenced(path)).thenReturn(0);
+
+        fileService.deleteAttachmentImage(fileName);
+
+        assertThat(target.exists()).isTrue();
+    }
+
+    @Test
+    public void deleteAttachmentImage_whenLastReferenceIsRemoved_deletesFile() throws IOException {
+        String fileName = "shared-file";
+        File target = new File(appConfiguration.getFullAttachmentsPath() + "/" + fileName);
+        FileUtils.copyFile(new ClassPathResource("profile-icon.png").getFile(), target);
+        String path = appConfiguration.getAttachmentsFolder() + "/" + fileName;
+        Mockito.when(storedFileRepository.decrementRefCount(path)).thenReturn(1);
+        Mockito.when(storedFileRepository.deleteUnreferenced(path)).thenReturn(1);
+
+        fileService.deleteAttachmentImage(fileName);
+
+        assertThat(target.exists()).isFalse();
+    }
+
+    @Test
+    public void deleteAttachmentImage_whenImageIsCached_evictsItFromCache() throws IOException {
+        imageCache.get(appConfiguration.getAttachmentsFolder(), "cached-file",
+                () -> new ImageCache.CachedImage(new byte[16], "image/png"));
+
+        fileService.deleteAttachmentImage("cached-file");
+
+        assertThat(imageCache.getWeightedSize()).isZero();
+    }
+
+    @Test
+    public void saveAttachment_whenVolumeStorageIsEnabled_storesSmallFileInVolume() throws IOException {
+        Mockito.when(fileAttachmentRepository.save(Mockito.any(FileAttachment.class)))
+                .thenAnswer(invocation -> invocation.getArgument(0));
+        BlobVolumeStore blobVolumeStore = openVolumeStore();
+        fileService = new FileService(appConfiguration, fileAttachmentRepository,
+                Mockito.mock(ImageRenditionService.class), storedFileRepository,
+                new LocalStorageBackend(appConfiguration, blobVolumeStore), imageCache, new SimpleMeterRegistry());
+        File source = new ClassPathResource("profile-icon.png").getFile();
+        try {
+            FileAttachment saved = saveAttachment(source);
+
+            assertThat(new File(appConfiguration.getFullAttachmentsPath()).list()).isEmpty();
+            assertThat(blobVolumeStore.get(appConfiguration.getAttachmentsFolder(), saved.getName()).get().getData())
+                    .isEqualTo(FileUtils.readFileToByteArray(source));
+        } finally {
+            closeVolumeStore(blobVolumeStore);
+        }
+    }
+
+    @Test
+    public void moveToVolume_whenFileExistsInFolder_packsFileAndRemovesIt() throws IOException {
+        BlobVolumeStore blobVolumeStore = openVolumeStore();
+        fileService = new FileService(appConfiguration, fileAttachmentRepository,
+                Mockito.mock(ImageRenditionService.class), storedFileRepository,
+                new LocalStorageBackend(appConfiguration, blobVolumeStore), imageCache, new SimpleMeterRegistry());
+        File target = new File(appConfiguration.getFullProfileImagesPath() + "/old-image");
+        FileUtils.copyFile(new ClassPathResource("profile-icon.png").getFile(), target);
+        try {
+            boolean packed = fileService.moveToVolume(appConfiguration.getProfileImagesFolder(), "old-image");
+
+            assertThat(packed).isTrue();
+            assertThat(target.exists()).isFalse();
+            assertThat(blobVolumeStore.contains(appConfiguration.getProfileImagesFolder(), "old-image")).isTrue();
+        } finally {
+            closeVolumeStore(blobVolumeStore);
+        }
+    }
+
+    private BlobVolumeStore openVolumeStore() throws IOException {
+        appConfiguration.setVolumeStorage(true);
+        appConfiguration.setVolumesFolder("volumes-test");
+        BlobVolumeStore blobVolumeStore = new BlobVolumeStore(appConfiguration, new SimpleMeterRegistry());
+        blobVolumeStore.open();
+        return blobVolumeStore;
+    }
+
+    private void closeVolumeStore(BlobVolumeStore blobVolumeStore) throws IOException {
+        blobVolumeStore.close();
+        FileUtils.deleteDirectory(new File(appConfiguration.getUploadPath() + "/volumes-test"));
+    }
+
+    private FileAttachment saveAttachment(File source) throws IOException {
+        try (InputStream content = new FileInputStream(source)) {
+            return fileService.saveAttachment(content, source.length());
+        }
     }
 }
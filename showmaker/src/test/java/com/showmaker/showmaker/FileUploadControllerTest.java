@@ -3,6 +3,11 @@ package com.showmaker.showmaker;
 import com.showmaker.showmaker.configuration.AppConfiguration;
 import com.showmaker.showmaker.file.FileAttachment;
 import com.showmaker.showmaker.file.FileAttachmentRepository;
+import com.showmaker.showmaker.file.StoredFileRepository;
+import com.showmaker.showmaker.file.UploadLimiter;
+import com.showmaker.showmaker.file.UploadSessionRepository;
+import com.showmaker.showmaker.file.UploadSessionService;
+import com.showmaker.showmaker.file.UploadSessionVM;
 import com.showmaker.showmaker.user.UserRepository;
 import com.showmaker.showmaker.user.UserService;
 import org.apache.commons.io.FileUtils;
@@ -22,6 +27,7 @@ import org.springframework.util.MultiValueMap;
 
 import java.io.File;
 import java.io.IOException;
+import java.util.Arrays;
 
 import static org.assertj.core.api.Assertions.assertThat;
 
@@ -47,12 +53,28 @@ public class FileUploadControllerTest {
     @Autowired
     AppConfiguration appConfiguration;
 
+    @Autowired
+    UploadLimiter uploadLimiter;
+
+    @Autowired
+    StoredFileRepository storedFileRepository;
+
+    @Autowired
+    UploadSessionRepository uploadSessionRepository;
+
+    @Autowired
+    UploadSessionService uploadSessionService;
+
     @Before
     public void init() throws IOException {
         userRepository.deleteAll();
         fileAttachmentRepository.deleteAll();
+        storedFileRepository.deleteAll();
+        uploadSessionRepository.deleteAll();
         testRestTemplate.getRestTemplate().getInterceptors().clear();
         FileUtils.cleanDirectory(new File(appConfiguration.getFullAttachmentsPath()));
+        FileUtils.deleteDirectory(new File(appConfiguration.getUploadPath() + "/"
+                + appConfiguration.getUploadSessionsFolder()));
     }
 
     @Test
@@ -116,6 +138,228 @@ public class FileUploadControllerTest {
         assertThat(storedFile.getFileType()).isEqualTo("image/png");
     }
 
+    @Test
+    public void uploadFile_withImageStreamFromAuthorizedUser_fileAttachmentStoredWithFileType() throws IOException {
+        userService.save(TestUtil.createValidUser("user1"));
+        authenticate("user1");
+        ResponseEntity<FileAttachment> response = uploadFile(getStreamRequestEntity(), FileAttachment.class);
+        File source = new ClassPathResource("profile-icon.png").getFile();
+        File stored = new File(appConfiguration.getFullAttachmentsPath() + "/" + response.getBody().getName());
+        assertThat(response.getBody().getFileType()).isEqualTo("image/png");
+        assertThat(FileUtils.contentEquals(source, stored)).isTrue();
+    }
+
+    @Test
+    public void uploadFile_withImageLargerThanLimit_receivePayloadTooLarge() {
+        userService.save(TestUtil.createValidUser("user1"));
+        authenticate("user1");
+        long maxAttachmentSize = appConfiguration.getMaxAttachmentSize();
+        appConfiguration.setMaxAttachmentSize(100);
+        try {
+            ResponseEntity<Object> response = uploadFile(getStreamRequestEntity(), Object.class);
+            assertThat(response.getStatusCode()).isEqualTo(HttpStatus.PAYLOAD_TOO_LARGE);
+            assertThat(fileAttachmentRepository.count()).isEqualTo(0);
+        } finally {
+            appConfiguration.setMaxAttachmentSize(maxAttachmentSize);
+        }
+    }
+
+    @Test
+    public void uploadFile_whenUploadCompletes_releasesInFlightBytes() {
+        userService.save(TestUtil.createValidUser("user1"));
+        authenticate("user1");
+        uploadFile(getRequestEntity(), FileAttachment.class);
+        uploadFile(getStreamRequestEntity(), FileAttachment.class);
+        assertThat(uploadLimiter.getInFlightBytes()).isEqualTo(0);
+    }
+
+    @Test
+    public void uploadSession_whenChunksAreAppendedAndCompleted_receiveStoredFileAttachment() throws IOException {
+        userService.save(TestUtil.createValidUser("user1"));
+        authenticate("user1");
+        byte[] image = FileUtils.readFileToByteArray(new ClassPathResource("profile-icon.png").getFile());
+        UploadSessionVM session = createSession(image.length).getBody();
+
+        appendChunk(session.getId(), 0, Arrays.copyOfRange(image, 0, 1000), UploadSessionVM.class);
+        ResponseEntity<UploadSessionVM> appended = appendChunk(session.getId(), 1000,
+                Arrays.copyOfRange(image, 1000, image.length), UploadSessionVM.class);
+        ResponseEntity<FileAttachment> response = completeSession(session.getId(), FileAttachment.class);
+
+        assertThat(appended.getBody().getReceived()).isEqualTo(image.length);
+        assertThat(response.getStatusCode()).isEqualTo(HttpStatus.OK);
+        assertThat(response.getBody().getFileType()).isEqualTo("image/png");
+        File stored = new File(appConfiguration.getFullAttachmentsPath() + "/" + response.getBody().getName());
+        assertThat(FileUtils.readFileToByteArray(stored)).isEqualTo(image);
+        assertThat(fileAttachmentRepository.count()).isEqualTo(1);
+        assertThat(uploadSessionRepository.count()).isEqualTo(0);
+    }
+
+    @Test
+    public void uploadSession_whenResumed_receiveReceivedOffset() {
+        userService.save(TestUtil.createValidUser("user1"));
+        authenticate("user1");
+        String id = createSession(100).getBody().getId();
+        appendChunk(id, 0, new byte[40], UploadSessionVM.class);
+
+        ResponseEntity<UploadSessionVM> response = testRestTemplate.getForEntity(
+                API_1_0_SHOWS_UPLOAD + "/sessions/" + id, UploadSessionVM.class);
+
+        assertThat(response.getBody().getReceived()).isEqualTo(40);
+        assertThat(response.getBody().getSize()).isEqualTo(100);
+    }
+
+    @Test
+    public void uploadSession_whenChunkOffsetDoesNotMatch_receiveConflict() {
+        userService.save(TestUtil.createValidUser("user1"));
+        authenticate("user1");
+        String id = createSession(100).getBody().getId();
+
+        ResponseEntity<Object> response = appendChunk(id, 50, new byte[10], Object.class);
+
+        assertThat(response.getStatusCode()).isEqualTo(HttpStatus.CONFLICT);
+    }
+
+    @Test
+    public void uploadSession_whenChunkExceedsDeclaredSize_receiveBadRequest() {
+        userService.save(TestUtil.createValidUser("user1"));
+        authenticate("user1");
+        String id = createSession(10).getBody().getId();
+
+        ResponseEntity<Object> response = appendChunk(id, 0, new byte[11], Object.class);
+
+        assertThat(response.getStatusCode()).isEqualTo(HttpStatus.BAD_REQUEST);
+    }
+
+    @Test
+    public void uploadSession_whenCompletedBeforeAllBytesArrive_receiveConflict() {
+        userService.save(TestUtil.createValidUser("user1"));
+        authenticate("user1");
+        String id = createSession(100).getBody().getId();
+        appendChunk(id, 0, new byte[40], UploadSessionVM.class);
+
+        ResponseEntity<Object> response = completeSession(id, Object.class);
+
+        assertThat(response.getStatusCode()).isEqualTo(HttpStatus.CONFLICT);
+        assertThat(fileAttachmentRepository.count()).isEqualTo(0);
+    }
+
+    @Test
+    public void uploadSession_whenSizeIsAboveLimit_receivePayloadTooLarge() {
+        userService.save(TestUtil.createValidUser("user1"));
+        authenticate("user1");
+
+        ResponseEntity<UploadSessionVM> response = createSession(appConfiguration.getMaxAttachmentSize() + 1);
+
+        assertThat(response.getStatusCode()).isEqualTo(HttpStatus.PAYLOAD_TOO_LARGE);
+    }
+
+    @Test
+    public void uploadSession_whenUserHasTooManyOpenSessions_receiveTooManyRequests() {
+        userService.save(TestUtil.createValidUser("user1"));
+        authenticate("user1");
+        int maxSessions = appConfiguration.getMaxUploadSessionsPerUser();
+        appConfiguration.setMaxUploadSessionsPerUser(1);
+        try {
+            createSession(100);
+
+            ResponseEntity<UploadSessionVM> response = createSession(100);
+
+            assertThat(response.getStatusCode()).isEqualTo(HttpStatus.TOO_MANY_REQUESTS);
+            assertThat(uploadSessionRepository.count()).isEqualTo(1);
+        } finally {
+            appConfiguration.setMaxUploadSessionsPerUser(maxSessions);
+        }
+    }
+
+    @Test
+    public void uploadSession_whenUserWouldReserveTooManyBytes_receiveTooManyRequests() {
+        userService.save(TestUtil.createValidUser("user1"));
+        authenticate("user1");
+        long maxBytes = appConfiguration.getMaxUploadSessionBytesPerUser();
+        appConfiguration.setMaxUploadSessionBytesPerUser(150);
+        try {
+            createSession(100);
+
+            ResponseEntity<UploadSessionVM> response = createSession(100);
+
+            assertThat(response.getStatusCode()).isEqualTo(HttpStatus.TOO_MANY_REQUESTS);
+        } finally {
+            appConfiguration.setMaxUploadSessionBytesPerUser(maxBytes);
+        }
+    }
+
+    @Test
+    public void uploadSession_whenSessionBelongsToAnotherUser_receiveNotFound() {
+        userService.save(TestUtil.createValidUser("user1"));
+        userService.save(TestUtil.createValidUser("user2"));
+        authenticate("user1");
+        String id = createSession(100).getBody().getId();
+        testRestTemplate.getRestTemplate().getInterceptors().clear();
+        authenticate("user2");
+
+        ResponseEntity<Object> response = appendChunk(id, 0, new byte[10], Object.class);
+
+        assertThat(response.getStatusCode()).isEqualTo(HttpStatus.NOT_FOUND);
+    }
+
+    @Test
+    public void uploadSession_fromUnauthorizedUser_receiveUnauthorized() {
+        ResponseEntity<UploadSessionVM> response = createSession(100);
+
+        assertThat(response.getStatusCode()).isEqualTo(HttpStatus.UNAUTHORIZED);
+    }
+
+    @Test
+    public void expireSessions_whenSessionIsIdle_removesSessionAndPartialFile() {
+        userService.save(TestUtil.createValidUser("user1"));
+        authenticate("user1");
+        String id = createSession(100).getBody().getId();
+        File sessions = new File(appConfiguration.getUploadPath() + "/" + appConfiguration.getUploadSessionsFolder());
+        long timeout = appConfiguration.getUploadSessionTimeoutMinutes();
+        appConfiguration.setUploadSessionTimeoutMinutes(-1);
+        try {
+            assertThat(uploadSessionService.expireSessions()).isEqualTo(1);
+        } finally {
+            appConfiguration.setUploadSessionTimeoutMinutes(timeout);
+        }
+
+        assertThat(uploadSessionRepository.existsById(id)).isFalse();
+        assertThat(sessions.list()).isEmpty();
+    }
+
+    @Test
+    public void expireSessions_whenPartialFileHasNoSession_removesIt() throws IOException {
+        File orphan = new File(appConfiguration.getUploadPath() + "/" + appConfiguration.getUploadSessionsFolder(),
+                "0123abcd.part");
+        FileUtils.writeByteArrayToFile(orphan, new byte[10]);
+        long timeout = appConfiguration.getUploadSessionTimeoutMinutes();
+        appConfiguration.setUploadSessionTimeoutMinutes(-1);
+        try {
+            assertThat(uploadSessionService.expireSessions()).isEqualTo(1);
+        } finally {
+            appConfiguration.setUploadSessionTimeoutMinutes(timeout);
+        }
+
+        assertThat(orphan.exists()).isFalse();
+    }
+
+    private ResponseEntity<UploadSessionVM> createSession(long size) {
+        return testRestTemplate.postForEntity(API_1_0_SHOWS_UPLOAD + "/sessions?size=" + size, null,
+                UploadSessionVM.class);
+    }
+
+    private <T> ResponseEntity<T> appendChunk(String id, long offset, byte[] chunk, Class<T> responseType) {
+        HttpHeaders headers = new HttpHeaders();
+        headers.setContentType(MediaType.APPLICATION_OCTET_STREAM);
+        return testRestTemplate.exchange(API_1_0_SHOWS_UPLOAD + "/sessions/" + id + "?offset=" + offset,
+                HttpMethod.POST, new HttpEntity<>(chunk, headers), responseType);
+    }
+
+    private <T> ResponseEntity<T> completeSession(String id, Class<T> responseType) {
+        return testRestTemplate.postForEntity(API_1_0_SHOWS_UPLOAD + "/sessions/" + id + "/complete", null,
+                responseType);
+    }
+
     public <T> ResponseEntity<T> uploadFile(HttpEntity<?> requestEntity, Class<T> responseType) {
         return testRestTemplate.exchange(API_1_0_SHOWS_UPLOAD, HttpMethod.POST, requestEntity, responseType);
     }
@@ -131,6 +375,12 @@ public class FileUploadControllerTest {
         return new HttpEntity<>(body, headers);
     }
 
+    private HttpEntity<ClassPathResource> getStreamRequestEntity() {
+        HttpHeaders headers = new HttpHeaders();
+        headers.setContentType(MediaType.APPLICATION_OCTET_STREAM);
+        return new HttpEntity<>(new ClassPathResource("profile-icon.png"), headers);
+    }
+
     private void authenticate(String username) {
         testRestTemplate.getRestTemplate().getInterceptors()
                 .add(new BasicAuthenticationInterceptor(username, "P4ssword"));
@@ -0,0 +1,251 @@
+package com.showmaker.showmaker;
+
+import com.showmaker.showmaker.configuration.AppConfiguration;
+import com.showmaker.showmaker.file.BlobVolumeStore;
+import com.showmaker.showmaker.file.FileAttachment;
+import com.showmaker.showmaker.file.FileAttachmentRepository;
+import com.showmaker.showmaker.file.ImagePlaceholder;
+import com.showmaker.showmaker.file.ImageRenditionService;
+import com.showmaker.showmaker.file.LocalStorageBackend;
+import com.showmaker.showmaker.file.StorageBackend;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.apache.commons.io.FileUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mockito;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.data.domain.Pageable;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class ImageRenditionServiceTest {
+
+    ImageRenditionService imageRenditionService;
+
+    AppConfiguration appConfiguration;
+
+    FileAttachmentRepository fileAttachmentRepository;
+
+    LocalStorageBackend storageBackend;
+
+    @Before
+    public void init() {
+        appConfiguration = new AppConfiguration();
+        appConfiguration.setUploadPath("uploads-test");
+        fileAttachmentRepository = Mockito.mock(FileAttachmentRepository.class);
+        storageBackend = new LocalStorageBackend(appConfiguration,
+                new BlobVolumeStore(appConfiguration, new SimpleMeterRegistry()));
+        imageRenditionService = new ImageRenditionService(appConfiguration, fileAttachmentRepository,
+                storageBackend, new SimpleMeterRegistry());
+
+        new File(appConfiguration.getFullAttachmentsPath()).mkdirs();
+    }
+
+    @After
+    public void cleanup() throws IOException {
+        imageRenditionService.shutdown();
+        FileUtils.cleanDirectory(new File(appConfiguration.getFullAttachmentsPath()));
+        FileUtils.deleteDirectory(new File(appConfiguration.getUploadPath() + "/renditions"));
+    }
+
+    @Test
+    public void renderAttachment_whenImageIsWiderThanAllWidths_createsEveryRendition() throws IOException {
+        writeImage("wide.png", 1000, 500);
+
+        List<Integer> widths = imageRenditionService.renderAttachment("wide.png");
+
+        assertThat(widths).containsExactly(160, 320, 640);
+        String folder = imageRenditionService.resolveFolder(appConfiguration.getAttachmentsFolder(), "wide.png", 100);
+        BufferedImage small = ImageIO.read(Paths.get(appConfiguration.getUploadPath(), folder, "wide.png").toFile());
+        assertThat(small.getWidth()).isEqualTo(160);
+        assertThat(small.getHeight()).isEqualTo(80);
+    }
+
+    @Test
+    public void renderAttachment_whenImageIsNarrow_skipsWidthsLargerThanOriginal() throws IOException {
+        writeImage("narrow.png", 400, 400);
+
+        List<Integer> widths = imageRenditionService.renderAttachment("narrow.png");
+
+        assertThat(widths).containsExactly(160, 320);
+    }
+
+    @Test
+    public void renderAttachment_whenImageIsGif_storesPlaceholderWithoutRenditions() throws IOException {
+        BufferedImage image = new BufferedImage(1000, 500, BufferedImage.TYPE_INT_RGB);
+        ImageIO.write(image, "gif", Paths.get(appConfiguration.getFullAttachmentsPath(), "wide.gif").toFile());
+
+        List<Integer> widths = imageRenditionService.renderAttachment("wide.gif");
+
+        assertThat(widths).isEmpty();
+        assertThat(imageRenditionService.resolveFolder(appConfiguration.getAttachmentsFolder(), "wide.gif", 100))
+                .isEqualTo(appConfiguration.getAttachmentsFolder());
+        Mockito.verify(fileAttachmentRepository).updateImage(Mockito.eq("wide.gif"), Mockito.eq(""),
+                Mockito.eq(1000), Mockito.eq(500), Mockito.anyString(), Mockito.anyString());
+    }
+
+    @Test
+    public void renderAttachment_whenRenditionsAreCreated_storesWidthsOnAttachment() throws IOException {
+        writeImage("wide.png", 1000, 500);
+
+        imageRenditionService.renderAttachment("wide.png");
+
+        Mockito.verify(fileAttachmentRepository).updateImage(Mockito.eq("wide.png"), Mockito.eq("160,320,640"),
+                Mockito.eq(1000), Mockito.eq(500), Mockito.anyString(), Mockito.anyString());
+    }
+
+    @Test
+    public void renderAttachment_whenImageIsSmallerThanAllWidths_storesPlaceholderOnly() throws IOException {
+        BufferedImage image = new BufferedImage(100, 50, BufferedImage.TYPE_INT_RGB);
+        fill(image, 0xff0000);
+        ImageIO.write(image, "png", Paths.get(appConfiguration.getFullAttachmentsPath(), "red.png").toFile());
+
+        imageRenditionService.renderAttachment("red.png");
+
+        Mockito.verify(fileAttachmentRepository).updateImage(Mockito.eq("red.png"), Mockito.eq(""),
+                Mockito.eq(100), Mockito.eq(50), Mockito.eq("#ff0000"), Mockito.startsWith("L"));
+    }
+
+    @Test
+    public void backfillPlaceholders_whenAttachmentsLackPlaceholder_rendersEachOnce() throws IOException {
+        writeImage("first.png", 200, 100);
+        writeImage("second.png", 200, 100);
+        appConfiguration.setPlaceholderBackfillBatchSize(1);
+        Mockito.when(fileAttachmentRepository
+                .findByIdGreaterThanAndFileTypeStartingWithAndPlaceholderBlurHashIsNullOrderById(
+                        Mockito.anyLong(), Mockito.eq("image/"), Mockito.any(Pageable.class)))
+                .thenAnswer(invocation -> {
+                    long after = invocation.getArgument(0);
+                    if (after == 0) {
+                        return Collections.singletonList(attachment(1, "first.png"));
+                    }
+                    if (after == 1) {
+                        return Collections.singletonList(attachment(2, "second.png"));
+                    }
+                    return Collections.emptyList();
+                });
+
+        int processed = imageRenditionService.backfillPlaceholders();
+
+        assertThat(processed).isEqualTo(2);
+        Mockito.verify(fileAttachmentRepository).updateImage(Mockito.eq("first.png"), Mockito.anyString(),
+                Mockito.eq(200), Mockito.eq(100), Mockito.anyString(), Mockito.anyString());
+        Mockito.verify(fileAttachmentRepository).updateImage(Mockito.eq("second.png"), Mockito.anyString(),
+                Mockito.eq(200), Mockito.eq(100), Mockito.anyString(), Mockito.anyString());
+    }
+
+    @Test
+    public void renderAttachment_whenImageExceedsPixelBudget_createsNoRendition() throws IOException {
+        appConfiguration.setRenditionMaxPixels(1000);
+        writeImage("wide.png", 1000, 500);
+
+        List<Integer> widths = imageRenditionService.renderAttachment("wide.png");
+
+        assertThat(widths).isEmpty();
+        Mockito.verify(fileAttachmentRepository).updateImage("wide.png", "", null, null, null,
+                ImagePlaceholder.UNREADABLE);
+    }
+
+    @Test
+    public void renderAttachment_whenImageCannotBeDecoded_marksPlaceholderUnreadable() throws IOException {
+        byte[] corrupt = FileUtils.readFileToByteArray(new ClassPathResource("profile-icon.png").getFile());
+        Files.write(Paths.get(appConfiguration.getFullAttachmentsPath(), "corrupt.png"),
+                Arrays.copyOf(corrupt, 100));
+
+        List<Integer> widths = imageRenditionService.renderAttachment("corrupt.png");
+
+        assertThat(widths).isEmpty();
+        Mockito.verify(fileAttachmentRepository).updateImage("corrupt.png", "", null, null, null,
+                ImagePlaceholder.UNREADABLE);
+    }
+
+    @Test
+    public void renderAttachment_whenOriginalIsMissing_marksPlaceholderUnreadable() {
+        List<Integer> widths = imageRenditionService.renderAttachment("missing.png");
+
+        assertThat(widths).isEmpty();
+        Mockito.verify(fileAttachmentRepository).updateImage("missing.png", "", null, null, null,
+                ImagePlaceholder.UNREADABLE);
+    }
+
+    @Test
+    public void resolveFolder_whenNoRenditionExists_returnsOriginalFolder() throws IOException {
+        writeImage("wide.png", 1000, 500);
+
+        String resolved = imageRenditionService.resolveFolder(appConfiguration.getAttachmentsFolder(), "wide.png", 320);
+
+        assertThat(resolved).isEqualTo(appConfiguration.getAttachmentsFolder());
+    }
+
+    @Test
+    public void resolveFolder_whenRequestedWidthIsBetweenRenditions_returnsNextLargerRendition() throws IOException {
+        writeImage("wide.png", 1000, 500);
+        imageRenditionService.renderAttachment("wide.png");
+
+        String resolved = imageRenditionService.resolveFolder(appConfiguration.getAttachmentsFolder(), "wide.png", 200);
+
+        assertThat(resolved).isEqualTo(
+                ImageRenditionService.getRenditionFolder(appConfiguration.getAttachmentsFolder(), 320));
+    }
+
+    @Test
+    public void resolveFolder_whenCalledRepeatedly_checksStorageOnce() throws IOException {
+        StorageBackend countingBackend = Mockito.spy(storageBackend);
+        imageRenditionService = new ImageRenditionService(appConfiguration, fileAttachmentRepository,
+                countingBackend, new SimpleMeterRegistry());
+        writeImage("wide.png", 1000, 500);
+        imageRenditionService.renderAttachment("wide.png");
+
+        for (int i = 0; i < 5; i++) {
+            imageRenditionService.resolveFolder(appConfiguration.getAttachmentsFolder(), "wide.png", 200);
+        }
+
+        Mockito.verify(countingBackend, Mockito.times(appConfiguration.getRenditionWidths().size()))
+                .exists(Mockito.anyString(), Mockito.eq("wide.png"));
+    }
+
+    @Test
+    public void deleteRenditions_whenRenditionsExist_removesThem() throws IOException {
+        writeImage("wide.png", 1000, 500);
+        imageRenditionService.renderAttachment("wide.png");
+
+        imageRenditionService.deleteRenditions(appConfiguration.getAttachmentsFolder(), "wide.png");
+
+        String resolved = imageRenditionService.resolveFolder(appConfiguration.getAttachmentsFolder(), "wide.png", 100);
+        assertThat(resolved).isEqualTo(appConfiguration.getAttachmentsFolder());
+    }
+
+    private FileAttachment attachment(long id, String name) {
+        FileAttachment attachment = new FileAttachment();
+        attachment.setId(id);
+        attachment.setName(name);
+        attachment.setFileType("image/png");
+        return attachment;
+    }
+
+    private void fill(BufferedImage image, int rgb) {
+        for (int y = 0; y < image.getHeight(); y++) {
+            for (int x = 0; x < image.getWidth(); x++) {
+                image.setRGB(x, y, rgb);
+            }
+        }
+    }
+
+    private void writeImage(String name, int width, int height) throws IOException {
+        BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        File target = Paths.get(appConfiguration.getFullAttachmentsPath(), name).toFile();
+        ImageIO.write(image, "png", target);
+        assertThat(Files.exists(target.toPath())).isTrue();
+    }
+}
@@ -0,0 +1,49 @@
+package com.showmaker.showmaker;
+
+import com.showmaker.showmaker.file.ImageTypeDetector;
+import org.apache.commons.io.FileUtils;
+import org.junit.Test;
+import org.springframework.core.io.ClassPathResource;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class ImageTypeDetectorTest {
+
+    @Test
+    public void detect_whenPngFileProvided_returnsImagePng() throws IOException {
+        assertThat(ImageTypeDetector.detect(read("test-png.png"))).isEqualTo("image/png");
+    }
+
+    @Test
+    public void detect_whenJpgFileProvided_returnsImageJpeg() throws IOException {
+        assertThat(ImageTypeDetector.detect(read("test-jpg.jpg"))).isEqualTo("image/jpeg");
+    }
+
+    @Test
+    public void detect_whenGifFileProvided_returnsImageGif() throws IOException {
+        assertThat(ImageTypeDetector.detect(read("test-gif.gif"))).isEqualTo("image/gif");
+    }
+
+    @Test
+    public void detect_whenWebpHeaderProvided_returnsImageWebp() {
+        byte[] head = "RIFF\u0000\u0000\u0000\u0000WEBPVP8 ".getBytes(StandardCharsets.ISO_8859_1);
+        assertThat(ImageTypeDetector.detect(head)).isEqualTo("image/webp");
+    }
+
+    @Test
+    public void detect_whenTextFileProvided_returnsNull() throws IOException {
+        assertThat(ImageTypeDetector.detect(read("test-txt.txt"))).isNull();
+    }
+
+    @Test
+    public void detect_whenHeaderIsShorterThanSignature_returnsNull() throws IOException {
+        assertThat(ImageTypeDetector.detect(read("test-png.png"), 4)).isNull();
+    }
+
+    private byte[] read(String fileName) throws IOException {
+        return FileUtils.readFileToByteArray(new ClassPathResource(fileName).getFile());
+    }
+}
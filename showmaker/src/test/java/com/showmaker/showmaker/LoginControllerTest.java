@@ -11,6 +11,8 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.boot.test.web.client.TestRestTemplate;
 import org.springframework.core.ParameterizedTypeReference;
+import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpMethod;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
@@ -27,6 +29,8 @@ public class LoginControllerTest {
 
     private static final String API_1_0_LOGIN = "/api/1.0/login";
 
+    private static final String API_1_0_LOGOUT = "/api/1.0/logout";
+
     @Autowired
     TestRestTemplate testRestTemplate;
 
@@ -131,6 +135,90 @@ public class LoginControllerTest {
         assertThat(body.containsKey("password")).isFalse();
     }
 
+    @Test
+    public void postLogin_withValidCredentials_receiveToken() {
+        userService.save(TestUtil.createValidUser());
+        authenticate();
+        ResponseEntity<Map<String, Object>> response = login(new ParameterizedTypeReference<Map<String, Object>>() {});
+        assertThat((String) response.getBody().get("token")).isNotEmpty();
+    }
+
+    @Test
+    public void postRefresh_withValidToken_receiveOk() {
+        userService.save(TestUtil.createValidUser());
+        String token = obtainToken();
+        ResponseEntity<Object> response = postWithToken(API_1_0_LOGIN + "/refresh", token);
+        assertThat(response.getStatusCode()).isEqualTo(HttpStatus.OK);
+    }
+
+    @Test
+    public void postRefresh_withTamperedToken_receiveUnauthorized() {
+        userService.save(TestUtil.createValidUser());
+        String token = obtainToken();
+        ResponseEntity<Object> response = postWithToken(API_1_0_LOGIN + "/refresh", token + "x");
+        assertThat(response.getStatusCode()).isEqualTo(HttpStatus.UNAUTHORIZED);
+    }
+
+    @Test
+    public void postRefresh_withTokenIssuedBeforeLogout_receiveUnauthorized() {
+        userService.save(TestUtil.createValidUser());
+        String token = obtainToken();
+        postWithToken(API_1_0_LOGOUT, token);
+        ResponseEntity<Object> response = postWithToken(API_1_0_LOGIN + "/refresh", token);
+        assertThat(response.getStatusCode()).isEqualTo(HttpStatus.UNAUTHORIZED);
+    }
+
+    @Test
+    public void postLogout_withValidToken_tokenVersionIsIncreasedInDatabase() {
+        User inDB = userService.save(TestUtil.createValidUser());
+        postWithToken(API_1_0_LOGOUT, obtainToken());
+        assertThat(userRepository.findById(inDB.getId()).get().getTokenVersion()).isEqualTo(1);
+    }
+
+    @Test
+    public void postLogin_afterLogout_receiveTokenAcceptedForRefresh() {
+        userService.save(TestUtil.createValidUser());
+        postWithToken(API_1_0_LOGOUT, obtainToken());
+        ResponseEntity<Object> response = postWithToken(API_1_0_LOGIN + "/refresh", obtainToken());
+        assertThat(response.getStatusCode()).isEqualTo(HttpStatus.OK);
+    }
+
+    @Test
+    public void postRefresh_whenTokenVersionIsIncreasedInDatabase_receiveUnauthorized() {
+        User inDB = userService.save(TestUtil.createValidUser());
+        String token = obtainToken();
+        inDB = userRepository.findById(inDB.getId()).get();
+        inDB.setTokenVersion(inDB.getTokenVersion() + 1);
+        userRepository.save(inDB);
+        ResponseEntity<Object> response = postWithToken(API_1_0_LOGIN + "/refresh", token);
+        assertThat(response.getStatusCode()).isEqualTo(HttpStatus.UNAUTHORIZED);
+    }
+
+    @Test
+    public void postLogin_withValidToken_receiveLoggedInUsersDisplayNameAndImage() {
+        User inDB = userService.save(TestUtil.createValidUser());
+        HttpHeaders headers = new HttpHeaders();
+        headers.setBearerAuth(obtainToken());
+        ResponseEntity<Map<String, Object>> response = testRestTemplate.exchange(API_1_0_LOGIN, HttpMethod.POST,
+                new HttpEntity<>(headers), new ParameterizedTypeReference<Map<String, Object>>() {});
+        assertThat(response.getBody().get("displayName")).isEqualTo(inDB.getDisplayName());
+        assertThat(response.getBody().get("image")).isEqualTo(inDB.getImage());
+        assertThat(response.getBody().containsKey("password")).isFalse();
+    }
+
+    private String obtainToken() {
+        authenticate();
+        ResponseEntity<Map<String, Object>> response = login(new ParameterizedTypeReference<Map<String, Object>>() {});
+        testRestTemplate.getRestTemplate().getInterceptors().clear();
+        return (String) response.getBody().get("token");
+    }
+
+    private ResponseEntity<Object> postWithToken(String url, String token) {
+        HttpHeaders headers = new HttpHeaders();
+        headers.setBearerAuth(token);
+        return testRestTemplate.exchange(url, HttpMethod.POST, new HttpEntity<>(headers), Object.class);
+    }
+
     private void authenticate() {
         testRestTemplate.getRestTemplate().getInterceptors()
                 .add(new BasicAuthenticationInterceptor("test-user", "P4ssword"));
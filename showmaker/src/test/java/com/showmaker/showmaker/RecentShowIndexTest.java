@@ -0,0 +1,96 @@
+package com.showmaker.showmaker;
+
+import com.showmaker.showmaker.configuration.AppConfiguration;
+import com.showmaker.showmaker.show.RecentShowIndex;
+import com.showmaker.showmaker.show.ShowEvent;
+import com.showmaker.showmaker.show.ShowRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mockito;
+import org.springframework.data.domain.Pageable;
+
+import java.util.Collections;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class RecentShowIndexTest {
+
+    RecentShowIndex recentShowIndex;
+
+    MeterRegistry meterRegistry;
+
+    @Before
+    public void init() {
+        ShowRepository showRepository = Mockito.mock(ShowRepository.class);
+        Mockito.when(showRepository.findLatestShowIds(Mockito.any(Pageable.class)))
+                .thenReturn(Collections.emptyList());
+        AppConfiguration appConfiguration = new AppConfiguration();
+        appConfiguration.setRecentShowsCapacity(3);
+        meterRegistry = new SimpleMeterRegistry();
+
+        recentShowIndex = new RecentShowIndex(showRepository, appConfiguration, meterRegistry);
+        recentShowIndex.warmUp();
+    }
+
+    @Test
+    public void countAfter_whenIdIsInsideWindow_returnsCountOfNewerShows() {
+        created(1, "user1");
+        created(2, "user1");
+        created(3, "user2");
+
+        assertThat(recentShowIndex.countAfter(1, null).getAsLong()).isEqualTo(2);
+    }
+
+    @Test
+    public void countAfter_whenUsernameProvided_returnsCountOfNewerShowsOfUser() {
+        created(1, "user1");
+        created(2, "user1");
+        created(3, "user2");
+
+        assertThat(recentShowIndex.countAfter(1, "user1").getAsLong()).isEqualTo(1);
+    }
+
+    @Test
+    public void countAfter_whenIdIsOlderThanWindow_returnsEmpty() {
+        created(1, "user1");
+        created(2, "user1");
+        created(3, "user1");
+        created(4, "user1");
+        created(5, "user1");
+
+        assertThat(recentShowIndex.countAfter(1, null).isPresent()).isFalse();
+        assertThat(recentShowIndex.countAfter(2, null).getAsLong()).isEqualTo(3);
+    }
+
+    @Test
+    public void findIdsAfter_whenShowIsDeleted_returnsIdsWithoutDeletedShow() {
+        created(1, "user1");
+        created(2, "user1");
+        created(3, "user1");
+        recentShowIndex.onShowEvent(ShowEvent.deleted(2, "user1"));
+
+        assertThat(recentShowIndex.findIdsAfter(0, "user1").get()).containsExactly(1L, 3L);
+    }
+
+    @Test
+    public void countAfter_whenLookupsAreMade_recordsHitsAndMisses() {
+        created(1, "user1");
+        created(2, "user1");
+        created(3, "user1");
+        created(4, "user1");
+
+        recentShowIndex.countAfter(0, null);
+        recentShowIndex.countAfter(3, null);
+
+        assertThat(meterRegistry.get("showmaker.recent.shows.lookups").tag("result", "hit")
+                .counter().count()).isEqualTo(1);
+        assertThat(meterRegistry.get("showmaker.recent.shows.lookups").tag("result", "miss")
+                .counter().count()).isEqualTo(1);
+    }
+
+    private void created(long id, String username) {
+        recentShowIndex.onShowEvent(new ShowEvent(ShowEvent.Type.CREATED, id, username));
+    }
+}
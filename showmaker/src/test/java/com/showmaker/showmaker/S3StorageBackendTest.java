@@ -0,0 +1,206 @@
+package com.showmaker.showmaker;
+
+import com.showmaker.showmaker.configuration.AppConfiguration;
+import com.showmaker.showmaker.file.S3StorageBackend;
+import com.showmaker.showmaker.file.StorageBackend;
+import com.showmaker.showmaker.file.StoredObjectStream;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.apache.commons.io.IOUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class S3StorageBackendTest {
+
+    HttpServer server;
+
+    Map<String, byte[]> objects = new ConcurrentHashMap<>();
+
+    List<String> authorizations = new CopyOnWriteArrayList<>();
+
+    S3StorageBackend storageBackend;
+
+    @Before
+    public void init() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/", this::handle);
+        server.start();
+
+        AppConfiguration appConfiguration = new AppConfiguration();
+        appConfiguration.setS3Endpoint("http://127.0.0.1:" + server.getAddress().getPort());
+        appConfiguration.setS3Bucket("showmaker");
+        appConfiguration.setS3Prefix("test/");
+        appConfiguration.setS3AccessKey("access");
+        appConfiguration.setS3SecretKey("secret");
+        storageBackend = new S3StorageBackend(appConfiguration);
+    }
+
+    @After
+    public void cleanup() {
+        server.stop(0);
+    }
+
+    @Test
+    public void put_whenObjectIsStored_canBeReadBackAndDeleted() throws IOException {
+        Path content = Files.createTempFile("s3-test", ".tmp");
+        Files.write(content, bytes("stored image"));
+
+        storageBackend.put("attachments", "abc", content);
+
+        assertThat(Files.exists(content)).isFalse();
+        assertThat(objects).containsKey("/showmaker/test/attachments/abc");
+        assertThat(storageBackend.exists("attachments", "abc")).isTrue();
+        try (StoredObjectStream stored = storageBackend.get("attachments", "abc").get()) {
+            assertThat(stored.getLength()).isEqualTo(bytes("stored image").length);
+            assertThat(IOUtils.toByteArray(stored.getContent())).isEqualTo(bytes("stored image"));
+        }
+
+        assertThat(storageBackend.delete("attachments", "abc")).isTrue();
+        assertThat(storageBackend.exists("attachments", "abc")).isFalse();
+    }
+
+    @Test
+    public void get_whenObjectIsMissing_returnsEmpty() throws IOException {
+        Optional<StoredObjectStream> stored = storageBackend.get("attachments", "missing");
+
+        assertThat(stored.isPresent()).isFalse();
+    }
+
+    @Test
+    public void put_whenRequestIsSent_signsItWithAccessKeyScope() throws IOException {
+        Path content = Files.createTempFile("s3-test", ".tmp");
+        Files.write(content, bytes("stored image"));
+
+        storageBackend.put("profile", "abc", content);
+
+        assertThat(authorizations).hasSize(1);
+        assertThat(authorizations.get(0)).startsWith("AWS4-HMAC-SHA256 Credential=access/")
+                .contains("/us-east-1/s3/aws4_request")
+                .contains("SignedHeaders=content-type;host;x-amz-content-sha256;x-amz-date");
+    }
+
+    @Test
+    public void list_whenObjectsSpanSeveralPages_returnsEveryNameInFolder() throws IOException {
+        objects.put("/showmaker/test/attachments/a", bytes("a"));
+        objects.put("/showmaker/test/attachments/b", bytes("b"));
+        objects.put("/showmaker/test/attachments/c", bytes("c"));
+        objects.put("/showmaker/test/profile/d", bytes("d"));
+        List<List<String>> batches = new ArrayList<>();
+
+        storageBackend.list("attachments", 2, batches::add);
+
+        assertThat(batches).containsExactly(Arrays.asList("a", "b"), Collections.singletonList("c"));
+    }
+
+    @Test
+    public void move_whenObjectExists_copiesItAndDeletesSource() throws IOException {
+        objects.put("/showmaker/test/attachments/abc", bytes("stored image"));
+
+        storageBackend.move("attachments", "abc", "quarantine/attachments");
+
+        assertThat(objects).doesNotContainKey("/showmaker/test/attachments/abc");
+        assertThat(objects.get("/showmaker/test/quarantine/attachments/abc")).isEqualTo(bytes("stored image"));
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        authorizations.add(exchange.getRequestHeaders().getFirst("Authorization"));
+        String key = exchange.getRequestURI().getRawPath();
+        switch (exchange.getRequestMethod()) {
+            case "PUT":
+                String copySource = exchange.getRequestHeaders().getFirst("x-amz-copy-source");
+                if (copySource != null) {
+                    objects.put(key, objects.get(copySource));
+                } else {
+                    try (InputStream body = exchange.getRequestBody()) {
+                        objects.put(key, IOUtils.toByteArray(body));
+                    }
+                }
+                exchange.sendResponseHeaders(200, -1);
+                break;
+            case "GET":
+                if (exchange.getRequestURI().getRawQuery() != null) {
+                    sendList(exchange, key);
+                    break;
+                }
+            case "HEAD":
+                byte[] object = objects.get(key);
+                if (object == null) {
+                    exchange.sendResponseHeaders(404, -1);
+                    break;
+                }
+                exchange.getResponseHeaders().add("Last-Modified", "Wed, 21 Oct 2015 07:28:00 GMT");
+                if (exchange.getRequestMethod().equals("HEAD")) {
+                    exchange.getResponseHeaders().add("Content-Length", String.valueOf(object.length));
+                    exchange.sendResponseHeaders(200, -1);
+                    break;
+                }
+                exchange.sendResponseHeaders(200, object.length);
+                try (OutputStream body = exchange.getResponseBody()) {
+                    body.write(object);
+                }
+                break;
+            case "DELETE":
+                objects.remove(key);
+                exchange.sendResponseHeaders(204, -1);
+                break;
+            default:
+                exchange.sendResponseHeaders(405, -1);
+        }
+        exchange.close();
+    }
+
+    private void sendList(HttpExchange exchange, String bucket) throws IOException {
+        Map<String, String> query = new HashMap<>();
+        for (String parameter : exchange.getRequestURI().getQuery().split("&")) {
+            String[] pair = parameter.split("=", 2);
+            query.put(pair[0], pair[1]);
+        }
+        String prefix = bucket + "/" + query.get("prefix");
+        String after = query.getOrDefault("continuation-token", "");
+        int maxKeys = Integer.parseInt(query.get("max-keys"));
+        List<String> keys = objects.keySet().stream()
+                .filter(key -> key.startsWith(prefix) && key.compareTo(after) > 0)
+                .sorted()
+                .collect(Collectors.toList());
+        List<String> page = keys.subList(0, Math.min(maxKeys, keys.size()));
+        StringBuilder xml = new StringBuilder("<?xml version=\"1.0\" encoding=\"UTF-8\"?><ListBucketResult>");
+        for (String key : page) {
+            xml.append("<Contents><Key>").append(key.substring(bucket.length() + 1)).append("</Key></Contents>");
+        }
+        xml.append("<IsTruncated>").append(keys.size() > page.size()).append("</IsTruncated>");
+        if (keys.size() > page.size()) {
+            xml.append("<NextContinuationToken>").append(page.get(page.size() - 1)).append("</NextContinuationToken>");
+        }
+        xml.append("</ListBucketResult>");
+        byte[] body = bytes(xml.toString());
+        exchange.sendResponseHeaders(200, body.length);
+        try (OutputStream output = exchange.getResponseBody()) {
+            output.write(body);
+        }
+    }
+
+    private byte[] bytes(String value) {
+        return value.getBytes(StandardCharsets.UTF_8);
+    }
+}
@@ -1,28 +1,40 @@
 package com.showmaker.showmaker;
 
 import com.showmaker.showmaker.configuration.AppConfiguration;
+import com.showmaker.showmaker.configuration.TokenService;
 import com.showmaker.showmaker.error.ApiError;
 import com.showmaker.showmaker.file.FileAttachment;
 import com.showmaker.showmaker.file.FileAttachmentRepository;
+import com.showmaker.showmaker.file.StoredFileRepository;
 import com.showmaker.showmaker.file.FileService;
+import com.showmaker.showmaker.file.ImagePlaceholder;
+import com.showmaker.showmaker.file.ImageRenditionService;
+import com.showmaker.showmaker.shared.CursorPage;
 import com.showmaker.showmaker.shared.GenericResponse;
 import com.showmaker.showmaker.show.Show;
 import com.showmaker.showmaker.show.ShowRepository;
 import com.showmaker.showmaker.show.ShowService;
+import com.showmaker.showmaker.show.ShowTombstoneRepository;
+import com.showmaker.showmaker.show.vm.ShowSyncVM;
 import com.showmaker.showmaker.show.vm.ShowVM;
 import com.showmaker.showmaker.user.User;
 import com.showmaker.showmaker.user.UserRepository;
 import com.showmaker.showmaker.user.UserService;
 import org.apache.commons.io.FileUtils;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
 import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.boot.test.web.client.TestRestTemplate;
 import org.springframework.core.ParameterizedTypeReference;
 import org.springframework.core.io.ClassPathResource;
+import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpMethod;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
@@ -30,6 +42,8 @@ import org.springframework.http.client.support.BasicAuthenticationInterceptor;
 import org.springframework.mock.web.MockMultipartFile;
 import org.springframework.test.context.ActiveProfiles;
 import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
 import org.springframework.web.multipart.MultipartFile;
 
 import javax.persistence.EntityManager;
@@ -37,21 +51,29 @@ import javax.persistence.EntityManagerFactory;
 import javax.persistence.PersistenceUnit;
 import java.io.File;
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.TimeUnit;
 import java.util.stream.Collectors;
 import java.util.stream.IntStream;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
 
 @RunWith(SpringRunner.class)
 @SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
 @ActiveProfiles("test")
+@AutoConfigureMockMvc
 public class ShowControllerTest {
 
     private static final String API_1_0_SHOWS = "/api/1.0/shows";
 
+    @Autowired
+    TokenService tokenService;
+
     @Autowired
     TestRestTemplate testRestTemplate;
 
@@ -70,26 +92,46 @@ public class ShowControllerTest {
     @Autowired
     FileAttachmentRepository fileAttachmentRepository;
 
+    @Autowired
+    ShowTombstoneRepository showTombstoneRepository;
+
     @Autowired
     FileService fileService;
 
+    @Autowired
+    ImageRenditionService imageRenditionService;
+
+    @Autowired
+    StoredFileRepository storedFileRepository;
+
     @Autowired
     AppConfiguration appConfiguration;
 
+    @Autowired
+    MockMvc mockMvc;
+
     @PersistenceUnit
     private EntityManagerFactory entityManagerFactory;
 
+    private final List<MvcResult> streams = new ArrayList<>();
+
     @Before
     public void cleanup() throws IOException {
+        showTombstoneRepository.deleteAll();
         fileAttachmentRepository.deleteAll();
         showRepository.deleteAll();
         userRepository.deleteAll();
+        storedFileRepository.deleteAll();
         testRestTemplate.getRestTemplate().getInterceptors().clear();
         FileUtils.cleanDirectory(new File(appConfiguration.getFullAttachmentsPath()));
     }
 
     @After
     public void cleanupAfter() {
+        for (MvcResult stream : streams) {
+            stream.getRequest().getAsyncContext().complete();
+        }
+        streams.clear();
         fileAttachmentRepository.deleteAll();
         showRepository.deleteAll();
     }
@@ -253,6 +295,24 @@ public class ShowControllerTest {
         assertThat(storedShow.getUser().getUsername()).isEqualTo("user1");
     }
 
+    @Test
+    public void getShows_whenAttachmentPlaceholderIsReady_receivePlaceholderInShowVM() throws IOException {
+        userService.save(TestUtil.createValidUser("user1"));
+        authenticate("user1");
+        FileAttachment attachment = fileService.saveAttachment(createFile());
+        imageRenditionService.renderAttachment(attachment.getName());
+        Show show = TestUtil.createValidShow();
+        show.setAttachment(attachment);
+        postShow(show, ShowVM.class);
+
+        ResponseEntity<TestPage<ShowVM>> response =
+                getShows(new ParameterizedTypeReference<TestPage<ShowVM>>() {});
+        ImagePlaceholder placeholder = response.getBody().getContent().get(0).getAttachment().getPlaceholder();
+        assertThat(placeholder.getWidth()).isPositive();
+        assertThat(placeholder.getColor()).matches("#[0-9a-f]{6}");
+        assertThat(placeholder.getBlurHash()).isNotEmpty();
+    }
+
     @Test
     public void postShow_whenShowIsValidAndUserIsAuthorized_receiveShowVM() {
         userService.save(TestUtil.createValidUser("user1"));
@@ -262,6 +322,17 @@ public class ShowControllerTest {
         assertThat(response.getBody().getUser().getUsername()).isEqualTo("user1");
     }
 
+    @Test
+    public void postShow_whenShowIsValidAndUserHasToken_receiveShowVMWithAuthorDetails() {
+        User user = userService.save(TestUtil.createValidUser("user1"));
+        String token = tokenService.issue(user, tokenService.getExpiresAt());
+        HttpHeaders headers = new HttpHeaders();
+        headers.setBearerAuth(token);
+        ResponseEntity<ShowVM> response = testRestTemplate.exchange(API_1_0_SHOWS, HttpMethod.POST,
+                new HttpEntity<>(TestUtil.createValidShow(), headers), ShowVM.class);
+        assertThat(response.getBody().getUser().getDisplayName()).isEqualTo(user.getDisplayName());
+    }
+
     @Test
     public void postShow_whenShowHasFileAttachmentAndUserIsAuthorized_fileAttachmentShowRelationIsUpdatedInDatabase() throws IOException {
         userService.save(TestUtil.createValidUser("user1"));
@@ -671,6 +742,231 @@ public class ShowControllerTest {
         assertThat(storedImage.exists()).isFalse();
     }
 
+    @Test
+    public void getShows_whenPageHasShowsWithAttachmentsFromManyUsers_loadsPageInBoundedStatements() throws IOException {
+        IntStream.rangeClosed(1, 5).forEach(i -> {
+            User user = userService.save(TestUtil.createValidUser("user" + i));
+            Show show = TestUtil.createValidShow();
+            try {
+                show.setAttachment(fileService.saveAttachment(createFile()));
+            } catch (IOException e) {
+                throw new IllegalStateException(e);
+            }
+            showService.save(user, show);
+            showService.save(user, TestUtil.createValidShow());
+        });
+
+        Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        statistics.setStatisticsEnabled(true);
+        statistics.clear();
+        try {
+            ResponseEntity<TestPage<ShowVM>> response =
+                    getShows(new ParameterizedTypeReference<TestPage<ShowVM>>() {});
+            assertThat(response.getBody().getContent().size()).isEqualTo(10);
+            assertThat(statistics.getPrepareStatementCount()).isLessThanOrEqualTo(2);
+        } finally {
+            statistics.setStatisticsEnabled(false);
+        }
+    }
+
+    @Test
+    public void getNewShows_whenMoreShowsThanLimit_receiveOldestChunkWithContinuationId() {
+        User user = userService.save(TestUtil.createValidUser("user1"));
+        Show first = showService.save(user, TestUtil.createValidShow());
+        showService.save(user, TestUtil.createValidShow());
+        Show third = showService.save(user, TestUtil.createValidShow());
+        showService.save(user, TestUtil.createValidShow());
+
+        int maxNewShows = appConfiguration.getMaxNewShows();
+        appConfiguration.setMaxNewShows(2);
+        try {
+            ResponseEntity<List<ShowVM>> response =
+                    getNewShows(first.getId(), new ParameterizedTypeReference<List<ShowVM>>() {});
+            assertThat(response.getBody().size()).isEqualTo(2);
+            assertThat(response.getBody().get(0).getId()).isEqualTo(third.getId());
+            assertThat(response.getHeaders().getFirst("X-Has-More")).isEqualTo("true");
+            assertThat(response.getHeaders().getFirst("X-Continuation-Id")).isEqualTo(String.valueOf(third.getId()));
+        } finally {
+            appConfiguration.setMaxNewShows(maxNewShows);
+        }
+    }
+
+    @Test
+    public void getNewShows_whenShowsFitInLimit_receiveHasMoreFalse() {
+        User user = userService.save(TestUtil.createValidUser("user1"));
+        Show first = showService.save(user, TestUtil.createValidShow());
+        showService.save(user, TestUtil.createValidShow());
+
+        ResponseEntity<List<ShowVM>> response =
+                getNewShows(first.getId(), new ParameterizedTypeReference<List<ShowVM>>() {});
+        assertThat(response.getHeaders().getFirst("X-Has-More")).isEqualTo("false");
+        assertThat(response.getHeaders().containsKey("X-Continuation-Id")).isFalse();
+    }
+
+    @Test
+    public void getNewShows_whenThereAreShows_readsRowsWithoutLoadingEntities() {
+        User user = userService.save(TestUtil.createValidUser("user1"));
+        Show first = showService.save(user, TestUtil.createValidShow());
+        showService.save(user, TestUtil.createValidShow());
+        showService.save(user, TestUtil.createValidShow());
+
+        Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        statistics.setStatisticsEnabled(true);
+        statistics.clear();
+        try {
+            ResponseEntity<List<ShowVM>> response =
+                    getNewShows(first.getId(), new ParameterizedTypeReference<List<ShowVM>>() {});
+            assertThat(response.getBody().size()).isEqualTo(2);
+            assertThat(response.getBody().get(0).getUser().getUsername()).isEqualTo("user1");
+            assertThat(statistics.getEntityLoadCount()).isEqualTo(0);
+        } finally {
+            statistics.setStatisticsEnabled(false);
+        }
+    }
+
+    @Test
+    public void getOldShowsByCursor_whenThereAreShows_receiveSliceWithNextCursor() {
+        User user = userService.save(TestUtil.createValidUser("user1"));
+        IntStream.rangeClosed(1, 4).forEach(i -> showService.save(user, TestUtil.createValidShow()));
+        Show fifth = showService.save(user, TestUtil.createValidShow());
+
+        ResponseEntity<CursorPage<ShowVM>> response =
+                getOldShowsByCursor(fifth.getId(), "", 3, new ParameterizedTypeReference<CursorPage<ShowVM>>() {});
+        assertThat(response.getBody().getContent().size()).isEqualTo(3);
+        assertThat(response.getBody().isNext()).isTrue();
+        assertThat(response.getBody().getCursor()).isNotNull();
+    }
+
+    @Test
+    public void getOldShowsByCursor_whenCursorIsFollowed_receiveRemainingShowsWithoutNext() {
+        User user = userService.save(TestUtil.createValidUser("user1"));
+        IntStream.rangeClosed(1, 4).forEach(i -> showService.save(user, TestUtil.createValidShow()));
+        Show fifth = showService.save(user, TestUtil.createValidShow());
+
+        ResponseEntity<CursorPage<ShowVM>> first =
+                getOldShowsByCursor(fifth.getId(), "", 3, new ParameterizedTypeReference<CursorPage<ShowVM>>() {});
+        ResponseEntity<CursorPage<ShowVM>> second = getOldShowsByCursor(fifth.getId(),
+                first.getBody().getCursor(), 3, new ParameterizedTypeReference<CursorPage<ShowVM>>() {});
+        assertThat(second.getBody().getContent().size()).isEqualTo(1);
+        assertThat(second.getBody().isNext()).isFalse();
+        assertThat(second.getBody().getCursor()).isNull();
+    }
+
+    @Test
+    public void getOldShowsByCursor_whenCursorIsInvalid_receiveBadRequest() {
+        ResponseEntity<Object> response =
+                getOldShowsByCursor(5, "not-a-cursor", 3, new ParameterizedTypeReference<Object>() {});
+        assertThat(response.getStatusCode()).isEqualTo(HttpStatus.BAD_REQUEST);
+    }
+
+    @Test
+    public void syncShows_whenWatermarkIsNotProvided_receiveResetWithWatermark() {
+        ResponseEntity<ShowSyncVM> response = syncShows(null);
+        assertThat(response.getBody().isReset()).isTrue();
+        assertThat(response.getBody().getWatermark()).isNotNull();
+    }
+
+    @Test
+    public void syncShows_whenShowsAreCreatedAndDeletedAfterWatermark_receiveNewShowsAndDeletedIds() {
+        User user = userService.save(TestUtil.createValidUser("user1"));
+        Show existing = showService.save(user, TestUtil.createValidShow());
+        String watermark = syncShows(null).getBody().getWatermark();
+
+        Show created = showService.save(user, TestUtil.createValidShow());
+        showService.deleteShow(existing.getId());
+
+        ShowSyncVM sync = syncShows(watermark).getBody();
+        assertThat(sync.isReset()).isFalse();
+        assertThat(sync.getShows()).extracting(ShowVM::getId).containsExactly(created.getId());
+        assertThat(sync.getDeleted()).containsExactly(existing.getId());
+    }
+
+    @Test
+    public void syncShows_whenSyncedTwiceWithoutChanges_receiveEmptyChanges() {
+        User user = userService.save(TestUtil.createValidUser("user1"));
+        String watermark = syncShows(null).getBody().getWatermark();
+        showService.deleteShow(showService.save(user, TestUtil.createValidShow()).getId());
+
+        String next = syncShows(watermark).getBody().getWatermark();
+        ShowSyncVM sync = syncShows(next).getBody();
+        assertThat(sync.getShows()).isEmpty();
+        assertThat(sync.getDeleted()).isEmpty();
+    }
+
+    @Test
+    public void syncShows_whenWatermarkIsInvalid_receiveBadRequest() {
+        ResponseEntity<Object> response = testRestTemplate.getForEntity(API_1_0_SHOWS + "/sync?since=abc", Object.class);
+        assertThat(response.getStatusCode()).isEqualTo(HttpStatus.BAD_REQUEST);
+    }
+
+    private ResponseEntity<ShowSyncVM> syncShows(String since) {
+        String path = API_1_0_SHOWS + "/sync" + (since == null ? "" : "?since=" + since);
+        return testRestTemplate.getForEntity(path, ShowSyncVM.class);
+    }
+
+    @Test
+    public void streamShows_whenClientSubscribes_receiveInitialCountEvent() throws Exception {
+        User user = userService.save(TestUtil.createValidUser("user1"));
+        Show first = showService.save(user, TestUtil.createValidShow());
+        showService.save(user, TestUtil.createValidShow());
+
+        MvcResult result = openStream("?after=" + first.getId());
+
+        assertThat(awaitStreamContent(result, "event:count")).contains("\"count\":1");
+    }
+
+    @Test
+    public void streamShows_whenNewShowIsSaved_receiveShowEventWithId() throws Exception {
+        User user = userService.save(TestUtil.createValidUser("user1"));
+        MvcResult result = openStream("?after=0");
+
+        Show show = showService.save(user, TestUtil.createValidShow());
+
+        assertThat(awaitStreamContent(result, "\"id\":" + show.getId())).contains("event:show");
+    }
+
+    @Test
+    public void streamShows_whenShowOfAnotherUserIsSaved_receiveNoShowEvent() throws Exception {
+        User user1 = userService.save(TestUtil.createValidUser("user1"));
+        User user2 = userService.save(TestUtil.createValidUser("user2"));
+        MvcResult result = openStream("?after=0&username=user1");
+
+        showService.save(user2, TestUtil.createValidShow());
+        Show show = showService.save(user1, TestUtil.createValidShow());
+
+        assertThat(awaitStreamContent(result, "\"id\":" + show.getId())).containsOnlyOnce("event:show");
+    }
+
+    @Test
+    public void streamShows_whenShowIsDeleted_receiveDeleteEvent() throws Exception {
+        User user = userService.save(TestUtil.createValidUser("user1"));
+        Show first = showService.save(user, TestUtil.createValidShow());
+        Show show = showService.save(user, TestUtil.createValidShow());
+        MvcResult result = openStream("?after=" + first.getId());
+
+        showService.deleteShow(show.getId());
+
+        assertThat(awaitStreamContent(result, "event:delete")).contains("\"count\":0");
+    }
+
+    private MvcResult openStream(String query) throws Exception {
+        MvcResult result = mockMvc.perform(get(API_1_0_SHOWS + "/stream" + query))
+                .andExpect(request().asyncStarted()).andReturn();
+        streams.add(result);
+        return result;
+    }
+
+    private String awaitStreamContent(MvcResult result, String expected) throws Exception {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        String content = result.getResponse().getContentAsString();
+        while (!content.contains(expected) && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+            content = result.getResponse().getContentAsString();
+        }
+        assertThat(content).contains(expected);
+        return content;
+    }
+
     public <T> ResponseEntity<T> deleteShow(long showId, Class<T> responseType) {
         return testRestTemplate.exchange(API_1_0_SHOWS + "/" + showId, HttpMethod.DELETE, null, responseType);
     }
@@ -708,6 +1004,12 @@ public class ShowControllerTest {
         return testRestTemplate.exchange(path, HttpMethod.GET, null, responseType);
     }
 
+    public <T> ResponseEntity<T> getOldShowsByCursor(long showId, String cursor, int size,
+                                                     ParameterizedTypeReference<T> responseType) {
+        String path = API_1_0_SHOWS + "/" + showId + "?direction=before&size=" + size + "&cursor=" + cursor;
+        return testRestTemplate.exchange(path, HttpMethod.GET, null, responseType);
+    }
+
     public <T> ResponseEntity<T> getShowsOfUser(String username, ParameterizedTypeReference<T> responseType) {
         String path = "/api/1.0/users/" + username + "/shows";
         return testRestTemplate.exchange(path, HttpMethod.GET, null, responseType);
@@ -1,6 +1,9 @@
 package com.showmaker.showmaker;
 
 import com.showmaker.showmaker.configuration.AppConfiguration;
+import com.showmaker.showmaker.file.ImageCache;
+import com.showmaker.showmaker.file.ImageRenditionService;
+import io.micrometer.core.instrument.MeterRegistry;
 import org.apache.commons.io.FileUtils;
 import org.junit.After;
 import org.junit.Test;
@@ -9,15 +12,26 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
 import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.client.TestRestTemplate;
 import org.springframework.core.io.ClassPathResource;
+import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
 import org.springframework.test.context.ActiveProfiles;
 import org.springframework.test.context.junit4.SpringRunner;
 import org.springframework.test.web.servlet.MockMvc;
 import org.springframework.test.web.servlet.MvcResult;
 import org.springframework.test.web.servlet.RequestBuilder;
 
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
 import java.io.File;
 import java.io.IOException;
+import java.util.Arrays;
+import java.util.Random;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
@@ -37,6 +51,18 @@ public class StaticResourceTest {
     @Autowired
     MockMvc mockMvc;
 
+    @Autowired
+    TestRestTemplate testRestTemplate;
+
+    @Autowired
+    MeterRegistry meterRegistry;
+
+    @Autowired
+    ImageRenditionService imageRenditionService;
+
+    @Autowired
+    ImageCache imageCache;
+
     @Test
     public void checkStaticFolder_whenAppIsInitialized_uploadFolderMustExist() {
         File uploadFolder = new File(appConfiguration.getUploadPath());
@@ -104,9 +130,196 @@ public class StaticResourceTest {
         assertThat(cacheControl).containsIgnoringCase("max-age=31536000");
     }
 
+    @Test
+    public void getImageRendition_whenRenditionIsNotReady_receiveOriginalWithShortCache() throws Exception {
+        writeImage(appConfiguration.getFullAttachmentsPath() + "/wide.png", 800, 400);
+
+        MvcResult result = mockMvc.perform(get("/images/" + appConfiguration.getAttachmentsFolder() + "/320/wide.png"))
+                .andExpect(status().isOk()).andReturn();
+        BufferedImage image = ImageIO.read(new ByteArrayInputStream(result.getResponse().getContentAsByteArray()));
+        assertThat(image.getWidth()).isEqualTo(800);
+        assertThat(result.getResponse().getHeader("Cache-Control")).contains("max-age=60");
+    }
+
+    @Test
+    public void getImageRendition_whenRenditionIsReady_receiveRenditionWithLongCache() throws Exception {
+        writeImage(appConfiguration.getFullAttachmentsPath() + "/wide.png", 800, 400);
+        imageRenditionService.render(appConfiguration.getAttachmentsFolder(), "wide.png");
+
+        MvcResult result = mockMvc.perform(get("/images/" + appConfiguration.getAttachmentsFolder() + "/300/wide.png"))
+                .andExpect(status().isOk()).andReturn();
+        BufferedImage image = ImageIO.read(new ByteArrayInputStream(result.getResponse().getContentAsByteArray()));
+        assertThat(image.getWidth()).isEqualTo(320);
+        assertThat(result.getResponse().getContentType()).isEqualTo("image/png");
+        assertThat(result.getResponse().getHeader("Cache-Control")).contains("max-age=31536000");
+    }
+
+    @Test
+    public void getImageRendition_whenProfileImageRenditionIsReady_receiveRendition() throws Exception {
+        writeImage(appConfiguration.getFullProfileImagesPath() + "/avatar.png", 400, 400);
+        imageRenditionService.render(appConfiguration.getProfileImagesFolder(), "avatar.png");
+
+        MvcResult result = mockMvc.perform(get("/images/" + appConfiguration.getProfileImagesFolder() + "/160/avatar.png"))
+                .andExpect(status().isOk()).andReturn();
+        BufferedImage image = ImageIO.read(new ByteArrayInputStream(result.getResponse().getContentAsByteArray()));
+        assertThat(image.getWidth()).isEqualTo(160);
+    }
+
+    @Test
+    public void getImageRendition_whenOriginalDoesNotExist_receiveNotFound() throws Exception {
+        mockMvc.perform(get("/images/" + appConfiguration.getAttachmentsFolder() + "/160/missing.png"))
+                .andExpect(status().isNotFound());
+    }
+
+    @Test
+    public void getImageRendition_whenFolderIsNotAnImageFolder_receiveNotFound() throws Exception {
+        mockMvc.perform(get("/images/renditions/160/wide.png"))
+                .andExpect(status().isNotFound());
+    }
+
+    @Test
+    public void getStaticFile_whenImageExists_receiveStrongEtagFromContentName() throws Exception {
+        copyProfileIcon(appConfiguration.getFullAttachmentsPath(), "abc123.png");
+
+        MvcResult result = mockMvc.perform(get("/images/" + appConfiguration.getAttachmentsFolder() + "/abc123.png"))
+                .andExpect(status().isOk()).andReturn();
+
+        assertThat(result.getResponse().getHeader("ETag")).isEqualTo("\"abc123.png\"");
+    }
+
+    @Test
+    public void getStaticFile_whenEtagMatches_receiveNotModified() throws Exception {
+        copyProfileIcon(appConfiguration.getFullAttachmentsPath(), "abc123.png");
+
+        MvcResult result = mockMvc.perform(get("/images/" + appConfiguration.getAttachmentsFolder() + "/abc123.png")
+                .header("If-None-Match", "\"abc123.png\""))
+                .andExpect(status().isNotModified()).andReturn();
+
+        assertThat(result.getResponse().getContentAsByteArray()).isEmpty();
+        assertThat(result.getResponse().getHeader("ETag")).isEqualTo("\"abc123.png\"");
+    }
+
+    @Test
+    public void getStaticFile_whenEtagMatchesButImageIsMissing_receiveNotFound() throws Exception {
+        mockMvc.perform(get("/images/" + appConfiguration.getAttachmentsFolder() + "/abc123.png")
+                .header("If-None-Match", "\"abc123.png\""))
+                .andExpect(status().isNotFound());
+    }
+
+    @Test
+    public void getStaticFile_whenImageWasServedBefore_receiveSameBytesFromCache() throws Exception {
+        File target = copyProfileIcon(appConfiguration.getFullProfileImagesPath(), "cached.png");
+        String url = "/images/" + appConfiguration.getProfileImagesFolder() + "/cached.png";
+        mockMvc.perform(get(url)).andExpect(status().isOk());
+        target.delete();
+
+        MvcResult result = mockMvc.perform(get(url)).andExpect(status().isOk()).andReturn();
+
+        assertThat(imageCache.getWeightedSize()).isGreaterThan(0);
+        assertThat(result.getResponse().getContentType()).isEqualTo("image/png");
+        assertThat(result.getResponse().getContentAsByteArray())
+                .isEqualTo(FileUtils.readFileToByteArray(new ClassPathResource("profile-icon.png").getFile()));
+    }
+
+    @Test
+    public void getStaticFile_whenImageIsLargerThanCacheEntryLimit_receiveItFromStorage() throws Exception {
+        long maxEntryBytes = appConfiguration.getImageCacheMaxEntryBytes();
+        copyProfileIcon(appConfiguration.getFullAttachmentsPath(), "large.png");
+        appConfiguration.setImageCacheMaxEntryBytes(10);
+        try {
+            mockMvc.perform(get("/images/" + appConfiguration.getAttachmentsFolder() + "/large.png"))
+                    .andExpect(status().isOk())
+                    .andExpect(content().contentType("image/png"));
+
+            assertThat(imageCache.getWeightedSize()).isZero();
+        } finally {
+            appConfiguration.setImageCacheMaxEntryBytes(maxEntryBytes);
+        }
+    }
+
+    @Test
+    public void getStaticFile_whenPathIsOutsideImageFolders_receiveNotFound() throws Exception {
+        mockMvc.perform(get("/images/" + appConfiguration.getVolumesFolder() + "/00000001.vol"))
+                .andExpect(status().isNotFound());
+    }
+
+    @Test
+    public void getStaticFile_whenRangeIsRequested_receivePartialContent() throws Exception {
+        File target = writeAttachment("movie.bin", 4096);
+
+        MvcResult result = mockMvc.perform(get("/images/" + appConfiguration.getAttachmentsFolder() + "/movie.bin")
+                .header("Range", "bytes=100-199"))
+                .andExpect(status().isPartialContent()).andReturn();
+
+        assertThat(result.getResponse().getHeader("Content-Range")).isEqualTo("bytes 100-199/4096");
+        assertThat(result.getResponse().getContentAsByteArray())
+                .isEqualTo(Arrays.copyOfRange(FileUtils.readFileToByteArray(target), 100, 200));
+    }
+
+    @Test
+    public void getStaticFile_whenRangeIsOutsideFile_receiveRangeNotSatisfiable() throws Exception {
+        writeAttachment("movie.bin", 4096);
+
+        MvcResult result = mockMvc.perform(get("/images/" + appConfiguration.getAttachmentsFolder() + "/movie.bin")
+                .header("Range", "bytes=5000-"))
+                .andExpect(status().isRequestedRangeNotSatisfiable()).andReturn();
+
+        assertThat(result.getResponse().getHeader("Content-Range")).isEqualTo("bytes */4096");
+    }
+
+    @Test
+    public void getStaticFile_whenIfRangeIsStale_receiveWholeFile() throws Exception {
+        writeAttachment("movie.bin", 4096);
+
+        MvcResult result = mockMvc.perform(get("/images/" + appConfiguration.getAttachmentsFolder() + "/movie.bin")
+                .header("Range", "bytes=100-199")
+                .header("If-Range", "\"older.bin\""))
+                .andExpect(status().isOk()).andReturn();
+
+        assertThat(result.getResponse().getHeader("Accept-Ranges")).isEqualTo("bytes");
+        assertThat(result.getResponse().getContentAsByteArray()).hasSize(4096);
+    }
+
+    @Test
+    public void getStaticFile_whenServedByContainer_receiveRequestedRange() throws Exception {
+        File target = writeAttachment("movie.bin", 3 * 1024 * 1024);
+        HttpHeaders headers = new HttpHeaders();
+        headers.set("Range", "bytes=1048576-1049599");
+
+        ResponseEntity<byte[]> response = testRestTemplate.exchange(
+                "/images/" + appConfiguration.getAttachmentsFolder() + "/movie.bin", HttpMethod.GET,
+                new HttpEntity<>(headers), byte[].class);
+
+        assertThat(response.getStatusCode()).isEqualTo(HttpStatus.PARTIAL_CONTENT);
+        assertThat(response.getBody())
+                .isEqualTo(Arrays.copyOfRange(FileUtils.readFileToByteArray(target), 1048576, 1049600));
+        assertThat(meterRegistry.counter("showmaker.images.transfers", "mode", "sendfile").count()).isPositive();
+    }
+
+    private File writeAttachment(String name, int length) throws IOException {
+        byte[] content = new byte[length];
+        new Random(length).nextBytes(content);
+        File target = new File(appConfiguration.getFullAttachmentsPath() + "/" + name);
+        FileUtils.writeByteArrayToFile(target, content);
+        return target;
+    }
+
+    private File copyProfileIcon(String directory, String name) throws IOException {
+        File target = new File(directory + "/" + name);
+        FileUtils.copyFile(new ClassPathResource("profile-icon.png").getFile(), target);
+        return target;
+    }
+
+    private void writeImage(String path, int width, int height) throws IOException {
+        ImageIO.write(new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB), "png", new File(path));
+    }
+
     @After
     public void cleanup() throws IOException {
+        imageCache.clear();
+        imageRenditionService.clearLookups();
         FileUtils.cleanDirectory(new File(appConfiguration.getFullProfileImagesPath()));
         FileUtils.cleanDirectory(new File(appConfiguration.getFullAttachmentsPath()));
+        FileUtils.deleteDirectory(new File(appConfiguration.getUploadPath() + "/renditions"));
     }
 }
@@ -0,0 +1,164 @@
+package com.showmaker.showmaker;
+
+import com.showmaker.showmaker.configuration.AppConfiguration;
+import com.showmaker.showmaker.file.BlobVolumeStore;
+import com.showmaker.showmaker.file.FileAttachmentRepository;
+import com.showmaker.showmaker.file.FileService;
+import com.showmaker.showmaker.file.ImageCache;
+import com.showmaker.showmaker.file.ImageRenditionService;
+import com.showmaker.showmaker.file.LocalStorageBackend;
+import com.showmaker.showmaker.file.ReconcileReport;
+import com.showmaker.showmaker.file.StorageReconciler;
+import com.showmaker.showmaker.file.StoredFile;
+import com.showmaker.showmaker.file.StoredFileRepository;
+import com.showmaker.showmaker.user.UserRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.apache.commons.io.FileUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mockito;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class StorageReconcilerTest {
+
+    AppConfiguration appConfiguration;
+
+    FileAttachmentRepository fileAttachmentRepository;
+
+    UserRepository userRepository;
+
+    StoredFileRepository storedFileRepository;
+
+    LocalStorageBackend storageBackend;
+
+    StorageReconciler storageReconciler;
+
+    @Before
+    public void init() {
+        appConfiguration = new AppConfiguration();
+        appConfiguration.setUploadPath("uploads-test");
+        appConfiguration.setQuarantineFolder("quarantine-test");
+        new File(appConfiguration.getFullProfileImagesPath()).mkdirs();
+        new File(appConfiguration.getFullAttachmentsPath()).mkdirs();
+
+        fileAttachmentRepository = Mockito.mock(FileAttachmentRepository.class);
+        userRepository = Mockito.mock(UserRepository.class);
+        storedFileRepository = Mockito.mock(StoredFileRepository.class);
+        mockReferences(fileAttachmentRepository.findNamesIn(Mockito.anyCollection()), "used-attachment");
+        mockReferences(userRepository.findImagesIn(Mockito.anyCollection()), "used-profile");
+
+        storageBackend = new LocalStorageBackend(appConfiguration,
+                new BlobVolumeStore(appConfiguration, new SimpleMeterRegistry()));
+        FileService fileService = new FileService(appConfiguration, fileAttachmentRepository,
+                Mockito.mock(ImageRenditionService.class), storedFileRepository,
+                storageBackend, new ImageCache(appConfiguration, new SimpleMeterRegistry()), new SimpleMeterRegistry());
+        storageReconciler = new StorageReconciler(appConfiguration, storageBackend, fileService,
+                fileAttachmentRepository, userRepository, new SimpleMeterRegistry());
+    }
+
+    @After
+    public void cleanup() throws IOException {
+        FileUtils.cleanDirectory(new File(appConfiguration.getFullProfileImagesPath()));
+        FileUtils.cleanDirectory(new File(appConfiguration.getFullAttachmentsPath()));
+        FileUtils.deleteDirectory(new File(appConfiguration.getUploadPath() + "/quarantine-test"));
+    }
+
+    @Test
+    public void reconcile_inReportMode_reportsStraysAndKeepsThem() throws IOException {
+        writeOldFile(appConfiguration.getFullAttachmentsPath(), "used-attachment");
+        File stray = writeOldFile(appConfiguration.getFullAttachmentsPath(), "stray-attachment");
+
+        ReconcileReport report = storageReconciler.reconcile();
+
+        assertThat(report.getScanned()).isEqualTo(2);
+        assertThat(report.getStrays()).isEqualTo(1);
+        assertThat(report.getStrayBytes()).isEqualTo(stray.length());
+        assertThat(report.getSample()).containsExactly(appConfiguration.getAttachmentsFolder() + "/stray-attachment");
+        assertThat(report.getRemoved()).isZero();
+        assertThat(stray.exists()).isTrue();
+    }
+
+    @Test
+    public void reconcile_inDeleteMode_deletesOnlyOldUnreferencedFiles() throws IOException {
+        appConfiguration.setReconcileMode(StorageReconciler.MODE_DELETE);
+        File used = writeOldFile(appConfiguration.getFullProfileImagesPath(), "used-profile");
+        File stray = writeOldFile(appConfiguration.getFullProfileImagesPath(), "stray-profile");
+        File leftover = writeOldFile(appConfiguration.getFullAttachmentsPath(), "upload.tmp");
+        File recent = new File(appConfiguration.getFullAttachmentsPath(), "recent-attachment");
+        FileUtils.writeStringToFile(recent, "recent", StandardCharsets.UTF_8);
+
+        ReconcileReport report = storageReconciler.reconcile();
+
+        assertThat(report.getRemoved()).isEqualTo(2);
+        assertThat(used.exists()).isTrue();
+        assertThat(recent.exists()).isTrue();
+        assertThat(stray.exists()).isFalse();
+        assertThat(leftover.exists()).isFalse();
+    }
+
+    @Test
+    public void reconcile_inQuarantineMode_movesStraysToQuarantineFolder() throws IOException {
+        appConfiguration.setReconcileMode(StorageReconciler.MODE_QUARANTINE);
+        File stray = writeOldFile(appConfiguration.getFullAttachmentsPath(), "stray-attachment");
+
+        storageReconciler.reconcile();
+
+        assertThat(stray.exists()).isFalse();
+        assertThat(new File(appConfiguration.getUploadPath() + "/quarantine-test/"
+                + appConfiguration.getAttachmentsFolder() + "/stray-attachment")).exists();
+    }
+
+    @Test
+    public void reconcile_whenFileIsReferencedBeforeRemoval_keepsIt() throws IOException {
+        appConfiguration.setReconcileMode(StorageReconciler.MODE_DELETE);
+        File stray = writeOldFile(appConfiguration.getFullAttachmentsPath(), "late-attachment");
+        Mockito.when(fileAttachmentRepository.findNamesIn(Mockito.anyCollection()))
+                .thenReturn(Collections.emptyList())
+                .thenReturn(Collections.singletonList("late-attachment"));
+
+        ReconcileReport report = storageReconciler.reconcile();
+
+        assertThat(report.getStrays()).isEqualTo(1);
+        assertThat(report.getRemoved()).isZero();
+        assertThat(stray.exists()).isTrue();
+    }
+
+    @Test
+    public void reconcile_whenFileIsReuploadedBeforeRemoval_keepsIt() throws IOException {
+        appConfiguration.setReconcileMode(StorageReconciler.MODE_DELETE);
+        File stray = writeOldFile(appConfiguration.getFullAttachmentsPath(), "reused-attachment");
+        String path = appConfiguration.getAttachmentsFolder() + "/reused-attachment";
+        Mockito.when(storedFileRepository.findById(path)).thenReturn(Optional.of(new StoredFile(path, 1)));
+
+        ReconcileReport report = storageReconciler.reconcile();
+
+        assertThat(report.getStrays()).isEqualTo(1);
+        assertThat(report.getRemoved()).isZero();
+        assertThat(stray.exists()).isTrue();
+        Mockito.verify(storedFileRepository, Mockito.never()).deleteUnreferenced(path);
+    }
+
+    private void mockReferences(Collection<String> call, String referenced) {
+        Mockito.when(call).thenAnswer(invocation -> ((Collection<?>) invocation.getArgument(0)).stream()
+                .filter(referenced::equals)
+                .collect(Collectors.toList()));
+    }
+
+    private File writeOldFile(String directory, String name) throws IOException {
+        File file = new File(directory, name);
+        FileUtils.writeStringToFile(file, "content of " + name, StandardCharsets.UTF_8);
+        file.setLastModified(System.currentTimeMillis() - TimeUnit.HOURS.toMillis(2));
+        return file;
+    }
+}
@@ -0,0 +1,69 @@
+package com.showmaker.showmaker;
+
+import com.showmaker.showmaker.file.StoredFile;
+import com.showmaker.showmaker.file.StoredFileRepository;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.junit4.SpringRunner;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@RunWith(SpringRunner.class)
+@DataJpaTest
+@ActiveProfiles("test")
+public class StoredFileRepositoryTest {
+
+    @Autowired
+    TestEntityManager testEntityManager;
+
+    @Autowired
+    StoredFileRepository storedFileRepository;
+
+    @Test
+    public void incrementRefCount_whenRowExists_addsOneInPlace() {
+        testEntityManager.persistAndFlush(new StoredFile("attachments/abc", 2));
+
+        int updated = storedFileRepository.incrementRefCount("attachments/abc");
+
+        testEntityManager.clear();
+        assertThat(updated).isEqualTo(1);
+        assertThat(storedFileRepository.findById("attachments/abc").get().getRefCount()).isEqualTo(3);
+    }
+
+    @Test
+    public void incrementRefCount_whenRowIsMissing_updatesNothing() {
+        assertThat(storedFileRepository.incrementRefCount("attachments/missing")).isZero();
+    }
+
+    @Test(expected = DataIntegrityViolationException.class)
+    public void insertFirstReference_whenRowExists_failsInsteadOfOverwriting() {
+        testEntityManager.persistAndFlush(new StoredFile("attachments/abc", 2));
+
+        storedFileRepository.insertFirstReference("attachments/abc");
+    }
+
+    @Test
+    public void deleteUnreferenced_whenCountIsStillPositive_keepsRow() {
+        testEntityManager.persistAndFlush(new StoredFile("attachments/abc", 2));
+
+        storedFileRepository.decrementRefCount("attachments/abc");
+
+        assertThat(storedFileRepository.deleteUnreferenced("attachments/abc")).isZero();
+        assertThat(storedFileRepository.existsById("attachments/abc")).isTrue();
+    }
+
+    @Test
+    public void deleteUnreferenced_whenLastReferenceIsReleased_removesRow() {
+        testEntityManager.persistAndFlush(new StoredFile("attachments/abc", 1));
+
+        storedFileRepository.decrementRefCount("attachments/abc");
+
+        assertThat(storedFileRepository.deleteUnreferenced("attachments/abc")).isEqualTo(1);
+        assertThat(storedFileRepository.existsById("attachments/abc")).isFalse();
+    }
+}
@@ -0,0 +1,48 @@
+package com.showmaker.showmaker;
+
+import com.showmaker.showmaker.configuration.AppConfiguration;
+import com.showmaker.showmaker.error.PayloadTooLargeException;
+import com.showmaker.showmaker.error.ServiceUnavailableException;
+import com.showmaker.showmaker.file.UploadLimiter;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class UploadLimiterTest {
+
+    UploadLimiter uploadLimiter;
+
+    @Before
+    public void init() {
+        AppConfiguration appConfiguration = new AppConfiguration();
+        appConfiguration.setMaxAttachmentSize(100);
+        appConfiguration.setMaxUploadBytesInFlight(150);
+        uploadLimiter = new UploadLimiter(appConfiguration, new SimpleMeterRegistry());
+    }
+
+    @Test(expected = PayloadTooLargeException.class)
+    public void reserve_whenContentLengthIsAboveMaxAttachmentSize_throwsPayloadTooLarge() {
+        uploadLimiter.reserve(101);
+    }
+
+    @Test(expected = ServiceUnavailableException.class)
+    public void reserve_whenInFlightLimitWouldBeExceeded_throwsServiceUnavailable() {
+        uploadLimiter.reserve(100);
+        uploadLimiter.reserve(60);
+    }
+
+    @Test
+    public void reserve_whenContentLengthIsUnknown_reservesMaxAttachmentSize() {
+        uploadLimiter.reserve(-1);
+        assertThat(uploadLimiter.getInFlightBytes()).isEqualTo(100);
+    }
+
+    @Test
+    public void reserve_afterReservationIsClosed_acceptsNewUpload() {
+        uploadLimiter.reserve(100).close();
+        uploadLimiter.reserve(100);
+        assertThat(uploadLimiter.getInFlightBytes()).isEqualTo(100);
+    }
+}
@@ -0,0 +1,99 @@
+package com.showmaker.showmaker;
+
+import com.showmaker.showmaker.configuration.AppConfiguration;
+import com.showmaker.showmaker.file.FileAttachment;
+import com.showmaker.showmaker.file.FileService;
+import com.showmaker.showmaker.file.UploadSession;
+import com.showmaker.showmaker.file.UploadSessionRepository;
+import com.showmaker.showmaker.file.UploadSessionService;
+import org.apache.commons.io.FileUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mockito;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Optional;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.fail;
+
+public class UploadSessionServiceTest {
+
+    AppConfiguration appConfiguration;
+
+    UploadSessionRepository uploadSessionRepository;
+
+    FileService fileService;
+
+    UploadSessionService uploadSessionService;
+
+    UploadSession uploadSession;
+
+    File part;
+
+    @Before
+    public void init() throws IOException {
+        appConfiguration = new AppConfiguration();
+        appConfiguration.setUploadPath("uploads-test");
+        appConfiguration.setUploadSessionsFolder("sessions-test");
+        uploadSessionRepository = Mockito.mock(UploadSessionRepository.class);
+        fileService = Mockito.mock(FileService.class);
+        uploadSessionService = new UploadSessionService(appConfiguration, uploadSessionRepository, fileService);
+
+        uploadSession = new UploadSession();
+        uploadSession.setId("abc123");
+        uploadSession.setOwnerId(1);
+        uploadSession.setSize(10);
+        uploadSession.setReceived(10);
+        Mockito.when(uploadSessionRepository.findById("abc123")).thenReturn(Optional.of(uploadSession));
+        part = new File(appConfiguration.getUploadPath() + "/sessions-test/abc123.part");
+        FileUtils.writeByteArrayToFile(part, new byte[10]);
+    }
+
+    @After
+    public void cleanup() throws IOException {
+        FileUtils.deleteDirectory(new File(appConfiguration.getUploadPath() + "/sessions-test"));
+    }
+
+    @Test
+    public void complete_whenStoringSucceeds_removesSession() throws IOException {
+        FileAttachment saved = new FileAttachment();
+        Mockito.when(fileService.saveAttachment(Mockito.any(Path.class))).thenReturn(saved);
+
+        assertThat(uploadSessionService.complete(1, "abc123")).isSameAs(saved);
+
+        Mockito.verify(uploadSessionRepository).delete(uploadSession);
+    }
+
+    @Test
+    public void complete_whenStoringFailsAndPartIsKept_keepsSessionForRetry() throws IOException {
+        Mockito.when(fileService.saveAttachment(Mockito.any(Path.class))).thenThrow(new IOException("disk full"));
+
+        try {
+            uploadSessionService.complete(1, "abc123");
+            fail("expected IOException");
+        } catch (IOException e) {
+            Mockito.verify(uploadSessionRepository, Mockito.never()).delete(Mockito.any(UploadSession.class));
+            assertThat(part.exists()).isTrue();
+        }
+    }
+
+    @Test
+    public void complete_whenStoringFailsAndPartIsGone_removesSession() throws IOException {
+        Mockito.when(fileService.saveAttachment(Mockito.any(Path.class))).thenAnswer(invocation -> {
+            Files.delete(invocation.getArgument(0));
+            throw new IOException("upload failed");
+        });
+
+        try {
+            uploadSessionService.complete(1, "abc123");
+            fail("expected IOException");
+        } catch (IOException e) {
+            Mockito.verify(uploadSessionRepository).delete(uploadSession);
+        }
+    }
+}
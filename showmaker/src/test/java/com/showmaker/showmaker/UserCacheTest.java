@@ -0,0 +1,110 @@
+package com.showmaker.showmaker;
+
+import com.showmaker.showmaker.configuration.AppConfiguration;
+import com.showmaker.showmaker.user.User;
+import com.showmaker.showmaker.user.UserCache;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class UserCacheTest {
+
+    UserCache userCache;
+
+    MeterRegistry meterRegistry;
+
+    AtomicInteger loads;
+
+    User stored;
+
+    @Before
+    public void init() {
+        meterRegistry = new SimpleMeterRegistry();
+        userCache = new UserCache(new AppConfiguration(), meterRegistry);
+        loads = new AtomicInteger();
+        stored = TestUtil.createValidUser("user1");
+        stored.setId(5);
+    }
+
+    @Test
+    public void getByUsername_whenCalledTwice_loadsUserOnce() {
+        userCache.getByUsername("user1", loader());
+        userCache.getByUsername("user1", loader());
+        assertThat(loads.get()).isEqualTo(1);
+    }
+
+    @Test
+    public void getById_afterUserLoadedByUsername_doesNotLoadUser() {
+        userCache.getByUsername("user1", loader());
+        User user = userCache.getById(5, id -> {
+            loads.incrementAndGet();
+            return stored;
+        });
+        assertThat(user.getUsername()).isEqualTo("user1");
+        assertThat(loads.get()).isEqualTo(1);
+    }
+
+    @Test
+    public void getById_whenUserIsInvalidatedWhileLoadingByUsername_loadsUserAgain() {
+        User evicted = new User();
+        evicted.setId(5);
+        userCache.getByUsername("user1", username -> {
+            loads.incrementAndGet();
+            userCache.invalidate(evicted);
+            return stored;
+        });
+        userCache.getById(5, id -> {
+            loads.incrementAndGet();
+            return stored;
+        });
+        assertThat(loads.get()).isEqualTo(2);
+    }
+
+    @Test
+    public void getByUsername_afterInvalidate_loadsUserAgain() {
+        userCache.getByUsername("user1", loader());
+        userCache.invalidate(stored);
+        userCache.getByUsername("user1", loader());
+        assertThat(loads.get()).isEqualTo(2);
+    }
+
+    @Test
+    public void getByUsername_whenReturnedUserIsModified_cachedUserIsNotChanged() {
+        userCache.getByUsername("user1", loader()).setDisplayName("changed");
+        assertThat(userCache.getByUsername("user1", loader()).getDisplayName()).isEqualTo(stored.getDisplayName());
+    }
+
+    @Test
+    public void getByUsername_whenUserDoesNotExist_returnsNullAndDoesNotCacheMiss() {
+        Function<String, User> missing = username -> {
+            loads.incrementAndGet();
+            return null;
+        };
+        assertThat(userCache.getByUsername("unknown", missing)).isNull();
+        userCache.getByUsername("unknown", missing);
+        assertThat(loads.get()).isEqualTo(2);
+    }
+
+    @Test
+    public void getByUsername_whenLookupsAreMade_recordsHitsAndMisses() {
+        userCache.getByUsername("user1", loader());
+        userCache.getByUsername("user1", loader());
+        assertThat(meterRegistry.get("cache.gets").tag("cache", "users.byUsername").tag("result", "hit")
+                .functionCounter().count()).isEqualTo(1);
+        assertThat(meterRegistry.get("cache.gets").tag("cache", "users.byUsername").tag("result", "miss")
+                .functionCounter().count()).isEqualTo(1);
+    }
+
+    private Function<String, User> loader() {
+        return username -> {
+            loads.incrementAndGet();
+            return stored;
+        };
+    }
+}
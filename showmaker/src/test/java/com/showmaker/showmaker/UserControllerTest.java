@@ -2,6 +2,8 @@ package com.showmaker.showmaker;
 
 import com.showmaker.showmaker.configuration.AppConfiguration;
 import com.showmaker.showmaker.error.ApiError;
+import com.showmaker.showmaker.file.StoredFileRepository;
+import com.showmaker.showmaker.shared.CursorPage;
 import com.showmaker.showmaker.shared.GenericResponse;
 import com.showmaker.showmaker.user.User;
 import com.showmaker.showmaker.user.UserRepository;
@@ -9,6 +11,8 @@ import com.showmaker.showmaker.user.UserService;
 import com.showmaker.showmaker.user.vm.UserVM;
 import com.showmaker.showmaker.user.vm.UserUpdateVM;
 import org.apache.commons.io.FileUtils;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
 import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
@@ -19,16 +23,24 @@ import org.springframework.boot.test.web.client.TestRestTemplate;
 import org.springframework.core.ParameterizedTypeReference;
 import org.springframework.core.io.ClassPathResource;
 import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpMethod;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.http.client.support.BasicAuthenticationInterceptor;
 import org.springframework.test.context.ActiveProfiles;
 import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.util.LinkedMultiValueMap;
+import org.springframework.util.MultiValueMap;
 
+import javax.persistence.EntityManagerFactory;
+import javax.persistence.PersistenceUnit;
 import java.io.File;
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.Base64;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.stream.Collectors;
@@ -55,9 +67,16 @@ public class UserControllerTest {
     @Autowired
     AppConfiguration appConfiguration;
 
+    @PersistenceUnit
+    EntityManagerFactory entityManagerFactory;
+
+    @Autowired
+    StoredFileRepository storedFileRepository;
+
     @Before
     public void cleanup() {
         userRepository.deleteAll();
+        storedFileRepository.deleteAll();
         testRestTemplate.getRestTemplate().getInterceptors().clear();
     }
 
@@ -347,6 +366,59 @@ public class UserControllerTest {
         assertThat(response.getBody().getTotalElements()).isEqualTo(2);
     }
 
+    @Test
+    public void getUsers_whenUsersAreListed_noUserEntityIsLoaded() {
+        IntStream.rangeClosed(1, 5).mapToObj(i -> "test-user-" + i)
+                .map(TestUtil::createValidUser)
+                .forEach(userRepository::save);
+        Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        statistics.setStatisticsEnabled(true);
+        statistics.clear();
+        try {
+            ResponseEntity<TestPage<UserVM>> response =
+                    getUsers(new ParameterizedTypeReference<TestPage<UserVM>>() {});
+            assertThat(response.getBody().getContent().size()).isEqualTo(5);
+            assertThat(statistics.getEntityLoadCount()).isEqualTo(0);
+        } finally {
+            statistics.setStatisticsEnabled(false);
+        }
+    }
+
+    @Test
+    public void getUsers_whenCursorIsFollowed_receiveEveryUserOnceInIdOrder() {
+        List<String> usernames = IntStream.rangeClosed(1, 5).mapToObj(i -> "test-user-" + i)
+                .collect(Collectors.toList());
+        usernames.stream().map(TestUtil::createValidUser).forEach(userRepository::save);
+
+        List<String> received = new ArrayList<>();
+        String cursor = "";
+        do {
+            String path = API_1_0_USERS + "?size=2&cursor=" + cursor;
+            CursorPage<UserVM> page = getUsers(path, new ParameterizedTypeReference<CursorPage<UserVM>>() {}).getBody();
+            page.getContent().forEach(user -> received.add(user.getUsername()));
+            cursor = page.getCursor();
+        } while (cursor != null);
+        assertThat(received).isEqualTo(usernames);
+    }
+
+    @Test
+    public void getUsers_whenCursorIsUsedByLoggedInUser_receiveUsersWithoutLoggedInUser() {
+        userService.save(TestUtil.createValidUser("user1"));
+        userService.save(TestUtil.createValidUser("user2"));
+        authenticate("user1");
+        String path = API_1_0_USERS + "?cursor=";
+        CursorPage<UserVM> page = getUsers(path, new ParameterizedTypeReference<CursorPage<UserVM>>() {}).getBody();
+        assertThat(page.getContent()).extracting(UserVM::getUsername).containsExactly("user2");
+        assertThat(page.isNext()).isFalse();
+    }
+
+    @Test
+    public void getUsers_whenCursorIsInvalid_receiveBadRequest() {
+        String path = API_1_0_USERS + "?cursor=invalid";
+        ResponseEntity<Object> response = getUsers(path, new ParameterizedTypeReference<Object>() {});
+        assertThat(response.getStatusCode()).isEqualTo(HttpStatus.BAD_REQUEST);
+    }
+
     @Test
     public void getUserByUsername_whenUserExist_receiveOk() {
         String username = "test-user";
@@ -433,6 +505,18 @@ public class UserControllerTest {
         assertThat(userInDB.getDisplayName()).isEqualTo(userUpdateVM.getDisplayName());
     }
 
+    @Test
+    public void getUserByUsername_afterUserIsUpdated_receiveUpdatedDisplayName() {
+        User user = userService.save(TestUtil.createValidUser("user1"));
+        getUser(user.getUsername(), UserVM.class);
+        authenticate(user.getUsername());
+        UserUpdateVM userUpdateVM = createValidUserUpdateVM();
+        putUser(user.getId(), new HttpEntity<>(userUpdateVM), Object.class);
+
+        ResponseEntity<UserVM> response = getUser(user.getUsername(), UserVM.class);
+        assertThat(response.getBody().getDisplayName()).isEqualTo(userUpdateVM.getDisplayName());
+    }
+
     @Test
     public void putUser_whenValidRequestBodyFromAuthorizedUser_receiveUserVMWithUpdatedDisplayName() {
         User user = userService.save(TestUtil.createValidUser("user1"));
@@ -452,8 +536,8 @@ public class UserControllerTest {
 
         ClassPathResource imageResource = new ClassPathResource("profile-icon.png");
         UserUpdateVM userUpdateVM = createValidUserUpdateVM();
-        String imageString = readFileToBase64("profile-icon.png");
-        userUpdateVM.setImage(imageString);
+        byte[] image = readFile("profile-icon.png");
+        userUpdateVM.setImage(image);
 
         HttpEntity<UserUpdateVM> requestEntity = new HttpEntity<>(userUpdateVM);
         ResponseEntity<UserVM> response = putUser(user.getId(), requestEntity, UserVM.class);
@@ -468,8 +552,8 @@ public class UserControllerTest {
 
         ClassPathResource imageResource = new ClassPathResource("profile-icon.png");
         UserUpdateVM userUpdateVM = createValidUserUpdateVM();
-        String imageString = readFileToBase64("profile-icon.png");
-        userUpdateVM.setImage(imageString);
+        byte[] image = readFile("profile-icon.png");
+        userUpdateVM.setImage(image);
 
         HttpEntity<UserUpdateVM> requestEntity = new HttpEntity<>(userUpdateVM);
         ResponseEntity<UserVM> response = putUser(user.getId(), requestEntity, UserVM.class);
@@ -525,8 +609,8 @@ public class UserControllerTest {
         User user = userService.save(TestUtil.createValidUser("user1"));
         authenticate(user.getUsername());
         UserUpdateVM userUpdateVM = createValidUserUpdateVM();
-        String imageString = readFileToBase64("test-jpg.jpg");
-        userUpdateVM.setImage(imageString);
+        byte[] image = readFile("test-jpg.jpg");
+        userUpdateVM.setImage(image);
 
         HttpEntity<UserUpdateVM> requestEntity = new HttpEntity<>(userUpdateVM);
         ResponseEntity<UserVM> response = putUser(user.getId(), requestEntity, UserVM.class);
@@ -539,8 +623,8 @@ public class UserControllerTest {
         User user = userService.save(TestUtil.createValidUser("user1"));
         authenticate(user.getUsername());
         UserUpdateVM userUpdateVM = createValidUserUpdateVM();
-        String imageString = readFileToBase64("test-gif.gif");
-        userUpdateVM.setImage(imageString);
+        byte[] image = readFile("test-gif.gif");
+        userUpdateVM.setImage(image);
 
         HttpEntity<UserUpdateVM> requestEntity = new HttpEntity<>(userUpdateVM);
         ResponseEntity<Object> response = putUser(user.getId(), requestEntity, Object.class);
@@ -553,8 +637,8 @@ public class UserControllerTest {
         User user = userService.save(TestUtil.createValidUser("user1"));
         authenticate(user.getUsername());
         UserUpdateVM userUpdateVM = createValidUserUpdateVM();
-        String imageString = readFileToBase64("test-txt.txt");
-        userUpdateVM.setImage(imageString);
+        byte[] image = readFile("test-txt.txt");
+        userUpdateVM.setImage(image);
 
         HttpEntity<UserUpdateVM> requestEntity = new HttpEntity<>(userUpdateVM);
         ResponseEntity<ApiError> response = putUser(user.getId(), requestEntity, ApiError.class);
@@ -568,13 +652,15 @@ public class UserControllerTest {
         User user = userService.save(TestUtil.createValidUser("user1"));
         authenticate(user.getUsername());
         UserUpdateVM userUpdateVM = createValidUserUpdateVM();
-        String imageString = readFileToBase64("test-jpg.jpg");
-        userUpdateVM.setImage(imageString);
+        byte[] image = readFile("test-jpg.jpg");
+        userUpdateVM.setImage(image);
 
         HttpEntity<UserUpdateVM> requestEntity = new HttpEntity<>(userUpdateVM);
         ResponseEntity<UserVM> response = putUser(user.getId(), requestEntity, UserVM.class);
 
-        putUser(user.getId(), requestEntity, UserVM.class);
+        UserUpdateVM secondUpdate = createValidUserUpdateVM();
+        secondUpdate.setImage(readFile("test-png.png"));
+        putUser(user.getId(), new HttpEntity<>(secondUpdate), UserVM.class);
 
         String storedImageName = response.getBody().getImage();
         String profilePicturePath = appConfiguration.getFullProfileImagesPath() + "/" + storedImageName;
@@ -582,12 +668,107 @@ public class UserControllerTest {
         assertThat(storedImage.exists()).isFalse();
     }
 
+    @Test
+    public void putUser_withSameImageForTwoUsers_storesImageOnceUntilLastReferenceIsRemoved() throws IOException {
+        User user1 = userService.save(TestUtil.createValidUser("user1"));
+        User user2 = userService.save(TestUtil.createValidUser("user2"));
+        UserUpdateVM userUpdateVM = createValidUserUpdateVM();
+        userUpdateVM.setImage(readFile("test-jpg.jpg"));
+        authenticate("user1");
+        String image1 = putUser(user1.getId(), new HttpEntity<>(userUpdateVM), UserVM.class).getBody().getImage();
+        testRestTemplate.getRestTemplate().getInterceptors().clear();
+        authenticate("user2");
+        String image2 = putUser(user2.getId(), new HttpEntity<>(userUpdateVM), UserVM.class).getBody().getImage();
+
+        UserUpdateVM secondUpdate = createValidUserUpdateVM();
+        secondUpdate.setImage(readFile("test-png.png"));
+        putUser(user2.getId(), new HttpEntity<>(secondUpdate), UserVM.class);
 
-    private String readFileToBase64(String fileName) throws IOException{
+        assertThat(image2).isEqualTo(image1);
+        assertThat(new File(appConfiguration.getFullProfileImagesPath() + "/" + image1).exists()).isTrue();
+    }
+
+
+    @Test
+    public void putUser_withBase64ImageInJsonBodyFromAuthorizedUser_imageIsStoredUnderProfileFolder() throws IOException {
+        User user = userService.save(TestUtil.createValidUser("user1"));
+        authenticate(user.getUsername());
+
+        Map<String, Object> body = new HashMap<>();
+        body.put("displayName", "newDisplayName");
+        body.put("image", readFileToBase64("profile-icon.png"));
+        ResponseEntity<UserVM> response = putUser(user.getId(), new HttpEntity<>(body), UserVM.class);
+
+        File storedImage = new File(appConfiguration.getFullProfileImagesPath() + "/" + response.getBody().getImage());
+        assertThat(FileUtils.contentEquals(storedImage, new ClassPathResource("profile-icon.png").getFile())).isTrue();
+    }
+
+    @Test
+    public void putUserImage_withPngBodyFromAuthorizedUser_imageIsStoredUnderProfileFolder() throws IOException {
+        User user = userService.save(TestUtil.createValidUser("user1"));
+        authenticate(user.getUsername());
+
+        ResponseEntity<UserVM> response = putUserImage(user.getId(), "profile-icon.png", MediaType.IMAGE_PNG, UserVM.class);
+
+        File storedImage = new File(appConfiguration.getFullProfileImagesPath() + "/" + response.getBody().getImage());
+        assertThat(FileUtils.contentEquals(storedImage, new ClassPathResource("profile-icon.png").getFile())).isTrue();
+        assertThat(userRepository.findByUsername("user1").getImage()).isEqualTo(response.getBody().getImage());
+    }
+
+    @Test
+    public void putUserImage_withUnsupportedFileFromAuthorizedUser_receiveBadRequestAndNothingIsStored() throws IOException {
+        User user = userService.save(TestUtil.createValidUser("user1"));
+        authenticate(user.getUsername());
+
+        ResponseEntity<Object> response = putUserImage(user.getId(), "test-gif.gif",
+                MediaType.APPLICATION_OCTET_STREAM, Object.class);
+
+        assertThat(response.getStatusCode()).isEqualTo(HttpStatus.BAD_REQUEST);
+        assertThat(new File(appConfiguration.getFullProfileImagesPath()).list()).isEmpty();
+    }
+
+    @Test
+    public void putUserImage_withMultipartImageFromAuthorizedUser_receiveUserVMWithImage() {
+        User user = userService.save(TestUtil.createValidUser("user1"));
+        authenticate(user.getUsername());
+
+        MultiValueMap<String, Object> body = new LinkedMultiValueMap<>();
+        body.add("image", new ClassPathResource("test-jpg.jpg"));
+        HttpHeaders headers = new HttpHeaders();
+        headers.setContentType(MediaType.MULTIPART_FORM_DATA);
+        String path = API_1_0_USERS + "/" + user.getId() + "/image";
+        ResponseEntity<UserVM> response = testRestTemplate.exchange(path, HttpMethod.PUT,
+                new HttpEntity<>(body, headers), UserVM.class);
+
+        assertThat(response.getBody().getImage()).isNotEqualTo("profile-image.png");
+    }
+
+    @Test
+    public void putUserImage_forAnotherUser_receiveForbidden() {
+        userService.save(TestUtil.createValidUser("user1"));
+        User another = userService.save(TestUtil.createValidUser("user2"));
+        authenticate("user1");
+
+        ResponseEntity<Object> response = putUserImage(another.getId(), "profile-icon.png", MediaType.IMAGE_PNG, Object.class);
+
+        assertThat(response.getStatusCode()).isEqualTo(HttpStatus.FORBIDDEN);
+    }
+
+    private <T> ResponseEntity<T> putUserImage(long id, String fileName, MediaType mediaType, Class<T> responseType) {
+        HttpHeaders headers = new HttpHeaders();
+        headers.setContentType(mediaType);
+        String path = API_1_0_USERS + "/" + id + "/image";
+        return testRestTemplate.exchange(path, HttpMethod.PUT,
+                new HttpEntity<>(new ClassPathResource(fileName), headers), responseType);
+    }
+
+    private byte[] readFile(String fileName) throws IOException{
         ClassPathResource imageResource = new ClassPathResource(fileName);
-        byte[] imageArr = FileUtils.readFileToByteArray(imageResource.getFile());
-        String imageString = Base64.getEncoder().encodeToString(imageArr);
-        return imageString;
+        return FileUtils.readFileToByteArray(imageResource.getFile());
+    }
+
+    private String readFileToBase64(String fileName) throws IOException{
+        return Base64.getEncoder().encodeToString(readFile(fileName));
     }
 
     private UserUpdateVM createValidUserUpdateVM() {
@@ -10,6 +10,9 @@ import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
 import org.springframework.test.context.ActiveProfiles;
 import org.springframework.test.context.junit4.SpringRunner;
 
+import java.util.Arrays;
+import java.util.List;
+
 import static org.assertj.core.api.Assertions.assertThat;
 
 @RunWith(SpringRunner.class)
@@ -36,4 +39,14 @@ public class UserRepositoryTest {
         User inDB = userRepository.findByUsername("user not exist");
         assertThat(inDB).isNull();
     }
+
+    @Test
+    public void findImagesIn_whenSomeImagesAreUsed_returnsOnlyUsedImages() {
+        testEntityManager.persist(TestUtil.createValidUser("user1"));
+        testEntityManager.persist(TestUtil.createValidUser("user2"));
+
+        List<String> images = userRepository.findImagesIn(Arrays.asList("profile-image.png", "stray.png"));
+
+        assertThat(images).containsExactly("profile-image.png");
+    }
 }
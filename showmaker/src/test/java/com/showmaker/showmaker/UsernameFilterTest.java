@@ -0,0 +1,85 @@
+package com.showmaker.showmaker;
+
+import com.showmaker.showmaker.configuration.AppConfiguration;
+import com.showmaker.showmaker.user.UsernameFilter;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class UsernameFilterTest {
+
+    UsernameFilter usernameFilter;
+
+    @Before
+    public void init() {
+        AppConfiguration appConfiguration = new AppConfiguration();
+        appConfiguration.setUsernameFilterExpectedInsertions(1000);
+        usernameFilter = new UsernameFilter(appConfiguration, new SimpleMeterRegistry());
+    }
+
+    @Test
+    public void mightContain_beforeRebuild_returnsTrue() {
+        assertThat(usernameFilter.mightContain("user1")).isTrue();
+    }
+
+    @Test
+    public void mightContain_forEveryRebuiltUsername_returnsTrue() {
+        List<String> usernames = usernames("user", 1000);
+        usernameFilter.rebuild(usernames.size(), () -> usernames);
+        assertThat(usernames).allMatch(usernameFilter::mightContain);
+    }
+
+    @Test
+    public void mightContain_forUnknownUsernames_falsePositiveRateIsLow() {
+        List<String> usernames = usernames("user", 1000);
+        usernameFilter.rebuild(usernames.size(), () -> usernames);
+        long falsePositives = usernames("crawler", 10000).stream().filter(usernameFilter::mightContain).count();
+        assertThat(falsePositives).isLessThan(300);
+        assertThat(usernameFilter.getExpectedFalsePositiveRate()).isLessThan(0.03);
+    }
+
+    @Test
+    public void mightContain_whenUsernameIsPutAfterRebuild_returnsTrue() {
+        usernameFilter.rebuild(0, Collections::emptyList);
+        usernameFilter.put("user1");
+        assertThat(usernameFilter.mightContain("user1")).isTrue();
+    }
+
+    @Test
+    public void mightContain_whenUsernameIsPutDuringRebuild_returnsTrue() {
+        usernameFilter.rebuild(1, () -> {
+            usernameFilter.put("user2");
+            return Arrays.asList("user1");
+        });
+        assertThat(usernameFilter.mightContain("user2")).isTrue();
+    }
+
+    @Test
+    public void mightContain_whenUsernamePutBeforeRebuildIsMissingFromSnapshot_returnsTrue() {
+        usernameFilter.rebuild(0, Collections::emptyList);
+        usernameFilter.put("user2");
+        usernameFilter.rebuild(1, () -> Arrays.asList("user1"));
+        assertThat(usernameFilter.mightContain("user2")).isTrue();
+    }
+
+    @Test
+    public void getObservedFalsePositiveRate_whenFalsePositiveRecorded_returnsShareOfChecks() {
+        usernameFilter.rebuild(1, () -> Arrays.asList("user1"));
+        usernameFilter.mightContain("user1");
+        usernameFilter.mightContain("user1");
+        usernameFilter.recordFalsePositive();
+        assertThat(usernameFilter.getObservedFalsePositiveRate()).isEqualTo(0.5);
+    }
+
+    private List<String> usernames(String prefix, int count) {
+        return IntStream.range(0, count).mapToObj(i -> prefix + i).collect(Collectors.toList());
+    }
+}